@@ -2,6 +2,7 @@ plugins {
     java
     id("org.springframework.boot") version "3.4.2"
     id("io.spring.dependency-management") version "1.1.7"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.github.monetadev"
@@ -36,6 +37,8 @@ extra["springAiVersion"] = "1.0.0-M8"
 dependencies {
     implementation ("org.springframework.boot:spring-boot-starter-data-jpa")
     implementation("org.springframework.boot:spring-boot-starter-security")
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
+    runtimeOnly("io.micrometer:micrometer-registry-prometheus")
     implementation("name.nkonev.multipart-spring-graphql:multipart-spring-graphql:1.5.+")
     //implementation("org.springframework.boot:spring-boot-starter-validation")
     implementation("com.netflix.graphql.dgs:graphql-dgs-spring-graphql-starter")
@@ -53,6 +56,7 @@ dependencies {
     implementation("org.springframework.session:spring-session-core")
     implementation("org.springframework.boot:spring-boot-starter-oauth2-authorization-server")
     implementation("org.apache.commons:commons-text:1.13.0")
+    implementation("com.github.ben-manes.caffeine:caffeine")
     compileOnly("org.projectlombok:lombok")
     developmentOnly("org.springframework.boot:spring-boot-devtools")
     runtimeOnly("org.postgresql:postgresql")
@@ -0,0 +1,56 @@
+package com.github.monetadev.backend.service.ai;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.service.ai.impl.StPromptTemplateRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.ai.template.st.StTemplateRenderer;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building a {@link PromptTemplate} from its classpath resource per call, as the AI services used to,
+ * with rendering a template precompiled by {@link StPromptTemplateRegistry}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromptTemplateRenderBenchmark {
+    private static final String TEMPLATE = "quiz/gen/system.st";
+    private static final Map<String, Object> VARIABLES = Map.of(
+            "k", 10,
+            "types", "MULTIPLE_CHOICE, TRUE_FALSE, SHORT_ANSWER"
+    );
+
+    private PromptTemplateRegistry registry;
+
+    @Setup
+    public void setup() {
+        registry = new StPromptTemplateRegistry(new AiProperties());
+    }
+
+    @Benchmark
+    public String perCallPromptTemplate() {
+        return PromptTemplate.builder()
+                .renderer(StTemplateRenderer.builder().startDelimiterToken('¶').endDelimiterToken('¶').build())
+                .resource(new ClassPathResource("ai/" + TEMPLATE))
+                .build()
+                .render(VARIABLES);
+    }
+
+    @Benchmark
+    public String precompiledRegistry() {
+        return registry.render(TEMPLATE, VARIABLES);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String precompiledRegistryContended() {
+        return registry.render(TEMPLATE, VARIABLES);
+    }
+}
@@ -0,0 +1,201 @@
+package com.github.monetadev.backend.service.ai.chunking;
+
+import com.github.monetadev.backend.service.ai.reader.Chunker;
+import com.github.monetadev.backend.service.ai.reader.StreamingTikaReader;
+import com.github.monetadev.backend.service.ai.reader.TextSink;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.openai.OpenAiEmbeddingModel;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Compares the chunking strategies over the bundled corpus in {@code chunking/corpus}, for a range of chunk sizes.
+ * <p>
+ * The measured time is that of chunking the already extracted corpus. During setup, each configuration also prints
+ * its embedding cost, the tokens sent to the embedding model, and its recall@{@value #TOP_K} over the questions in
+ * {@code chunking/queries.tsv}: a question counts as recalled when one of the most similar chunks contains its
+ * answer phrase. Similarity uses OpenAI embeddings when {@code OPENAI_API_KEY} is set, and a hashed bag of words
+ * otherwise, which only approximates the ranking of the real model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkingBenchmark {
+    private static final int TOP_K = 5;
+    private static final int MAX_CHUNKS = 10000;
+    private static final Map<String, ChunkingStrategy> STRATEGIES = Map.of(
+            TokenChunkingStrategy.NAME, new TokenChunkingStrategy(),
+            ParagraphChunkingStrategy.NAME, new ParagraphChunkingStrategy(),
+            SlidingWindowChunkingStrategy.NAME, new SlidingWindowChunkingStrategy());
+
+    @Param({TokenChunkingStrategy.NAME, ParagraphChunkingStrategy.NAME, SlidingWindowChunkingStrategy.NAME})
+    public String strategy;
+
+    @Param({"256", "512", "800", "1024"})
+    public int chunkSize;
+
+    private ChunkingStrategy chunkingStrategy;
+    private ChunkLimits limits;
+    private List<RecordedText> corpus;
+
+    @Setup
+    public void setup() throws IOException {
+        chunkingStrategy = STRATEGIES.get(strategy);
+        limits = new ChunkLimits(chunkSize, chunkSize / 5, MAX_CHUNKS);
+        StreamingTikaReader reader = new StreamingTikaReader();
+        corpus = new ArrayList<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources("classpath:chunking/corpus/*")) {
+            RecordedText text = new RecordedText();
+            reader.extract(resource, text);
+            corpus.add(text);
+        }
+
+        List<Document> chunks = new ArrayList<>();
+        corpus.forEach(text -> chunk(text, chunks::add));
+        TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+        long embeddedTokens = chunks.stream()
+                .mapToLong(chunk -> tokenCountEstimator.estimate(chunk.getText()))
+                .sum();
+        double recall = recall(chunks, readQueries(), similarity());
+        System.out.printf("%n%s/%d: %d chunks, %d embedded tokens, recall@%d %.3f, %.0f tokens per recalled question%n",
+                strategy, chunkSize, chunks.size(), embeddedTokens, TOP_K, recall,
+                recall > 0 ? embeddedTokens / recall : Double.POSITIVE_INFINITY);
+    }
+
+    @Benchmark
+    public int chunkCorpus() {
+        int[] chunks = new int[1];
+        corpus.forEach(text -> chunk(text, chunk -> chunks[0]++));
+        return chunks[0];
+    }
+
+    private void chunk(RecordedText text, Consumer<Document> sink) {
+        Chunker chunker = chunkingStrategy.open(limits, Map.of(), sink);
+        text.replay(chunker);
+        chunker.finish();
+    }
+
+    private static double recall(List<Document> chunks, List<Question> questions, Similarity similarity) {
+        List<float[]> chunkVectors = chunks.stream().map(chunk -> similarity.embed(chunk.getText())).toList();
+        long recalled = questions.stream()
+                .filter(question -> {
+                    float[] query = similarity.embed(question.query());
+                    Integer[] order = new Integer[chunks.size()];
+                    Arrays.setAll(order, i -> i);
+                    Arrays.sort(order, Comparator.comparingDouble(i -> -dot(query, chunkVectors.get(i))));
+                    return Arrays.stream(order)
+                            .limit(TOP_K)
+                            .anyMatch(i -> chunks.get(i).getText().toLowerCase(Locale.ROOT)
+                                    .contains(question.answer().toLowerCase(Locale.ROOT)));
+                })
+                .count();
+        return (double) recalled / questions.size();
+    }
+
+    private static List<Question> readQueries() throws IOException {
+        List<Question> questions = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ClassPathResource("chunking/queries.tsv").getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] columns = line.split("\t", 2);
+                questions.add(new Question(columns[0], columns[1]));
+            }
+        }
+        return questions;
+    }
+
+    private static Similarity similarity() {
+        String apiKey = System.getenv("OPENAI_API_KEY");
+        if (apiKey == null || apiKey.isBlank()) {
+            return ChunkingBenchmark::hashedBagOfWords;
+        }
+        EmbeddingModel model = new OpenAiEmbeddingModel(OpenAiApi.builder().apiKey(apiKey).build());
+        // Chunks of neighbouring configurations repeat, and so do the questions.
+        Map<String, float[]> embeddings = new ConcurrentHashMap<>();
+        return text -> embeddings.computeIfAbsent(text, model::embed);
+    }
+
+    // Term frequencies hashed into a fixed number of dimensions, normalized to unit length.
+    private static float[] hashedBagOfWords(String text) {
+        float[] vector = new float[1024];
+        for (String word : text.toLowerCase(Locale.ROOT).split("\\W+")) {
+            if (word.length() > 2) {
+                vector[Math.floorMod(word.hashCode(), vector.length)] += 1;
+            }
+        }
+        double norm = Math.sqrt(dot(vector, vector));
+        for (int i = 0; i < vector.length && norm > 0; i++) {
+            vector[i] /= (float) norm;
+        }
+        return vector;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private interface Similarity {
+        float[] embed(String text);
+    }
+
+    private record Question(String query, String answer) {
+    }
+
+    /**
+     * Extracted text kept as the sequence of calls the reader made, so that chunking can be measured without
+     * parsing the documents again.
+     */
+    private static final class RecordedText implements TextSink {
+        private final List<Consumer<TextSink>> events = new ArrayList<>();
+
+        @Override
+        public void text(char[] characters, int start, int length) {
+            char[] copy = Arrays.copyOfRange(characters, start, start + length);
+            events.add(sink -> sink.text(copy, 0, copy.length));
+        }
+
+        @Override
+        public void boundary() {
+            events.add(TextSink::boundary);
+        }
+
+        @Override
+        public void heading() {
+            events.add(TextSink::heading);
+        }
+
+        private void replay(TextSink sink) {
+            for (Consumer<TextSink> event : events) {
+                if (sink.isFull()) {
+                    return;
+                }
+                event.accept(sink);
+            }
+        }
+    }
+}
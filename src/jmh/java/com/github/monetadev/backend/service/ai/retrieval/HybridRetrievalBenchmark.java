@@ -0,0 +1,174 @@
+package com.github.monetadev.backend.service.ai.retrieval;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.service.ai.metrics.AiMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.openai.OpenAiEmbeddingModel;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares vector-only retrieval with hybrid retrieval over an existing chunk table, using the production
+ * threshold and topK of flashcard set generation.
+ * <p>
+ * Each probe is a short keyword query built from the longest words of a randomly sampled chunk, resembling the
+ * queries students type, and counts as recalled when the sampled chunk is among the results. Query embeddings
+ * are computed once during setup, so the measured latency is that of the stores alone. Requires
+ * {@code BENCHMARK_DB_URL}, {@code BENCHMARK_DB_USER}, {@code BENCHMARK_DB_PASSWORD} and {@code OPENAI_API_KEY}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HybridRetrievalBenchmark {
+    private static final int PROBES = 200;
+    private static final int TOP_K = 12;
+    private static final double SIMILARITY_THRESHOLD = 0.75;
+
+    private SingleConnectionDataSource dataSource;
+    private DocumentRetriever vectorOnly;
+    private DocumentRetriever hybrid;
+    private DocumentRetrieverFactory vectorOnlyFactory;
+    private DocumentRetrieverFactory hybridFactory;
+    private List<Probe> probes;
+    private int next;
+
+    @Setup
+    public void setup() {
+        dataSource = new SingleConnectionDataSource(
+                System.getenv("BENCHMARK_DB_URL"),
+                System.getenv("BENCHMARK_DB_USER"),
+                System.getenv("BENCHMARK_DB_PASSWORD"),
+                true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        jdbcTemplate.execute("SELECT setseed(0.42)");
+        probes = jdbcTemplate.query(
+                "SELECT id, content FROM public.vector_store ORDER BY random() LIMIT ?",
+                (rs, rowNum) -> new Probe(keywords(rs.getString("content")), rs.getString("id")),
+                PROBES);
+        probes = probes.stream().filter(probe -> !probe.query().isBlank()).toList();
+
+        PrecomputedEmbeddingModel embeddingModel = new PrecomputedEmbeddingModel(
+                new OpenAiEmbeddingModel(OpenAiApi.builder().apiKey(System.getenv("OPENAI_API_KEY")).build()));
+        probes.forEach(probe -> embeddingModel.precompute(probe.query()));
+        PgVectorStore vectorStore = PgVectorStore.builder(jdbcTemplate, embeddingModel)
+                .initializeSchema(false)
+                .build();
+
+        AiProperties vectorOnlyProperties = new AiProperties();
+        vectorOnlyProperties.getRetrieval().setHybrid(false);
+        AiProperties hybridProperties = new AiProperties();
+        PgFullTextSearch fullTextSearch = new PgFullTextSearch(jdbcTemplate, new ObjectMapper(), hybridProperties, "public", "vector_store");
+        fullTextSearch.initializeSchema();
+
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("pgFullTextSearch", fullTextSearch);
+        AiMetrics metrics = new AiMetrics(new SimpleMeterRegistry());
+        vectorOnlyFactory = new DocumentRetrieverFactory(vectorStore, beanFactory.getBeanProvider(PgFullTextSearch.class), vectorOnlyProperties, metrics);
+        hybridFactory = new DocumentRetrieverFactory(vectorStore, beanFactory.getBeanProvider(PgFullTextSearch.class), hybridProperties, metrics);
+        vectorOnly = vectorOnlyFactory.create(null, TOP_K, SIMILARITY_THRESHOLD);
+        hybrid = hybridFactory.create(null, TOP_K, SIMILARITY_THRESHOLD);
+
+        System.out.printf("%nrecall@%d over %d probes: vector-only %.3f, hybrid %.3f%n",
+                TOP_K, probes.size(), recall(vectorOnly), recall(hybrid));
+    }
+
+    @TearDown
+    public void tearDown() {
+        vectorOnlyFactory.shutdown();
+        hybridFactory.shutdown();
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public List<Document> vectorOnly() {
+        return vectorOnly.retrieve(new Query(nextProbe().query()));
+    }
+
+    @Benchmark
+    public List<Document> hybrid() {
+        return hybrid.retrieve(new Query(nextProbe().query()));
+    }
+
+    private Probe nextProbe() {
+        Probe probe = probes.get(next);
+        next = (next + 1) % probes.size();
+        return probe;
+    }
+
+    private double recall(DocumentRetriever retriever) {
+        long hits = probes.stream()
+                .filter(probe -> retriever.retrieve(new Query(probe.query())).stream()
+                        .anyMatch(document -> document.getId().equals(probe.chunkId())))
+                .count();
+        return (double) hits / probes.size();
+    }
+
+    private static String keywords(String content) {
+        return Arrays.stream(content.split("\\W+"))
+                .filter(word -> word.length() >= 5)
+                .distinct()
+                .sorted(Comparator.comparingInt(String::length).reversed())
+                .limit(3)
+                .reduce((a, b) -> a + " " + b)
+                .orElse("");
+    }
+
+    private record Probe(String query, String chunkId) {
+    }
+
+    /**
+     * Serves query embeddings computed ahead of time, keeping the embedding API out of the measurement.
+     */
+    private static final class PrecomputedEmbeddingModel implements EmbeddingModel {
+        private final EmbeddingModel delegate;
+        private final Map<String, float[]> embeddings = new ConcurrentHashMap<>();
+
+        private PrecomputedEmbeddingModel(EmbeddingModel delegate) {
+            this.delegate = delegate;
+        }
+
+        private void precompute(String text) {
+            embeddings.computeIfAbsent(text, delegate::embed);
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> results = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                String text = request.getInstructions().get(i);
+                results.add(new Embedding(embeddings.computeIfAbsent(text, delegate::embed), i));
+            }
+            return new EmbeddingResponse(results);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embeddings.computeIfAbsent(document.getText(), delegate::embed);
+        }
+
+        @Override
+        public int dimensions() {
+            return delegate.dimensions();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.github.monetadev.backend.service.ai.vectorstore;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures deleting the chunks of a file and searching the chunks of a user, both through the filter expressions
+ * of the vector store, with and without the indexes of {@link PgMetadataIndexes}.
+ * <p>
+ * Runs against a synthetic chunk table of {@value #TABLE}, laid out like the production table with an HNSW index
+ * on the embeddings: {@value #CHUNKS_PER_FILE} chunks per file and {@value #FILES_PER_USER} files per user. The
+ * table is filled once and reused while its size matches, which takes several minutes at a million chunks.
+ * Embeddings are random and short, as only the filtering is of interest. Deletes are rolled back, so the table
+ * stays intact. Requires {@code BENCHMARK_DB_URL}, {@code BENCHMARK_DB_USER} and {@code BENCHMARK_DB_PASSWORD}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MetadataFilterBenchmark {
+    private static final String SCHEMA = "public";
+    private static final String TABLE = "metadata_filter_benchmark";
+    private static final int DIMENSIONS = 32;
+    private static final int CHUNKS_PER_FILE = 20;
+    private static final int FILES_PER_USER = 10;
+    private static final int TOP_K = 12;
+    private static final int PROBES = 1000;
+
+    @Param({"1000000"})
+    public int chunks;
+
+    @Param({"false", "true"})
+    public boolean indexed;
+
+    private SingleConnectionDataSource dataSource;
+    private PgVectorStore vectorStore;
+    private List<String> fileIds;
+    private List<String> userIds;
+    private int next;
+
+    @Setup
+    public void setup() throws SQLException {
+        dataSource = new SingleConnectionDataSource(
+                System.getenv("BENCHMARK_DB_URL"),
+                System.getenv("BENCHMARK_DB_USER"),
+                System.getenv("BENCHMARK_DB_PASSWORD"),
+                true);
+        dataSource.setAutoCommit(false);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        fill(jdbcTemplate);
+        jdbcTemplate.queryForList(
+                        "SELECT indexname FROM pg_indexes WHERE schemaname = ? AND indexname LIKE ?",
+                        String.class, SCHEMA, TABLE + "\\_metadata\\_%")
+                .forEach(index -> jdbcTemplate.execute("DROP INDEX " + SCHEMA + "." + index));
+        if (indexed) {
+            new PgMetadataIndexes(jdbcTemplate, new AiProperties(), SCHEMA, TABLE).initializeSchema();
+        }
+        jdbcTemplate.execute("ANALYZE " + SCHEMA + "." + TABLE);
+        dataSource.getConnection().commit();
+
+        vectorStore = PgVectorStore.builder(jdbcTemplate, new RandomEmbeddingModel())
+                .schemaName(SCHEMA)
+                .vectorTableName(TABLE)
+                .dimensions(DIMENSIONS)
+                .initializeSchema(false)
+                .build();
+
+        Random random = new Random(42);
+        int files = chunks / CHUNKS_PER_FILE;
+        fileIds = new ArrayList<>(PROBES);
+        userIds = new ArrayList<>(PROBES);
+        for (int i = 0; i < PROBES; i++) {
+            int file = random.nextInt(files);
+            fileIds.add(id("file", file));
+            userIds.add(id("user", file / FILES_PER_USER));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public List<Document> filteredSearch() {
+        return vectorStore.similaritySearch(SearchRequest.builder()
+                .query("probe")
+                .topK(TOP_K)
+                .similarityThresholdAll()
+                .filterExpression(new FilterExpressionBuilder().eq("userId", userIds.get(nextProbe())).build())
+                .build());
+    }
+
+    @Benchmark
+    public void deleteFile() throws SQLException {
+        vectorStore.delete(new FilterExpressionBuilder().eq("id", fileIds.get(nextProbe())).build());
+        dataSource.getConnection().rollback();
+    }
+
+    private int nextProbe() {
+        int probe = next;
+        next = (next + 1) % PROBES;
+        return probe;
+    }
+
+    private void fill(JdbcTemplate jdbcTemplate) throws SQLException {
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS vector");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + SCHEMA + "." + TABLE + " (" +
+                "id uuid PRIMARY KEY, content text, metadata json, embedding vector(" + DIMENSIONS + "))");
+        Long existing = jdbcTemplate.queryForObject("SELECT count(*) FROM " + SCHEMA + "." + TABLE, Long.class);
+        if (existing != null && existing == chunks) {
+            return;
+        }
+        jdbcTemplate.execute("TRUNCATE " + SCHEMA + "." + TABLE);
+        // Ids are digests of the file and user numbers, so probes can be built without reading them back. The
+        // correlated subquery draws a new embedding for every row.
+        jdbcTemplate.update("INSERT INTO " + SCHEMA + "." + TABLE + " (id, content, metadata, embedding) " +
+                        "SELECT gen_random_uuid(), 'chunk ' || i, " +
+                        "json_build_object('id', md5('file' || f)::uuid, 'userId', md5('user' || f / ?)::uuid, " +
+                        "'md5Sum', md5('content' || f), 'originalFilename', 'file-' || f || '.pdf'), " +
+                        "ARRAY(SELECT random() FROM generate_series(1, ?) WHERE i >= 0)::real[]::vector " +
+                        "FROM generate_series(0, ? - 1) AS i, LATERAL (SELECT i / ? AS f) AS file",
+                FILES_PER_USER, DIMENSIONS, chunks, CHUNKS_PER_FILE);
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + TABLE + "_embedding_idx ON " + SCHEMA + "." + TABLE +
+                " USING HNSW (embedding vector_cosine_ops)");
+        dataSource.getConnection().commit();
+    }
+
+    private static String id(String kind, int number) {
+        String hex = md5Hex(kind + number);
+        return UUID.fromString(hex.replaceFirst("(.{8})(.{4})(.{4})(.{4})(.{12})", "$1-$2-$3-$4-$5")).toString();
+    }
+
+    private static String md5Hex(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Embeds every text as a random unit vector, which keeps the embedding API out of the measurement.
+     */
+    private static final class RandomEmbeddingModel implements EmbeddingModel {
+        private final Random random = new Random(7);
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> results = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                results.add(new Embedding(randomVector(), i));
+            }
+            return new EmbeddingResponse(results);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return randomVector();
+        }
+
+        @Override
+        public int dimensions() {
+            return DIMENSIONS;
+        }
+
+        private float[] randomVector() {
+            float[] vector = new float[DIMENSIONS];
+            double norm = 0;
+            for (int i = 0; i < DIMENSIONS; i++) {
+                vector[i] = (float) random.nextGaussian();
+                norm += vector[i] * vector[i];
+            }
+            for (int i = 0; i < DIMENSIONS; i++) {
+                vector[i] /= (float) Math.sqrt(norm);
+            }
+            return vector;
+        }
+    }
+}
@@ -1,24 +1,168 @@
 package com.github.monetadev.backend.config;
 
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.service.ai.PromptTemplateRegistry;
+import com.github.monetadev.backend.service.ai.metrics.AiMetrics;
+import com.github.monetadev.backend.service.ai.metrics.AiUseCase;
+import com.github.monetadev.backend.service.ai.model.HedgingChatModel;
+import com.github.monetadev.backend.service.ai.model.LlmCallScheduler;
+import com.github.monetadev.backend.service.ai.model.SchedulingChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.InMemoryChatMemory;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.ResponseFormat;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
+import java.util.List;
 
+/**
+ * Every use case gets its own {@link ChatClient} with default options fixed at startup. A built client is
+ * immutable and safe to share, so services never construct clients or mutate a shared builder per request;
+ * request-specific system prompts are passed per call instead. Each client's provider model is instrumented with
+ * the client's {@link AiUseCase} beneath the {@link LlmCallScheduler}, so call latency excludes the wait for
+ * admission, which the scheduler records itself.
+ */
 @Configuration
 public class ChatModelConfig {
-    @Bean
-    public ChatClient chatClient(@Qualifier("openAiChatModel") ChatModel chatModel) {
+    public static final String CHAT_CLIENT = "chatClient";
+    public static final String REWRITE_CHAT_CLIENT = "rewriteChatClient";
+    public static final String SET_GENERATION_CHAT_CLIENT = "setGenerationChatClient";
+    public static final String QUIZ_GENERATION_CHAT_CLIENT = "quizGenerationChatClient";
+    public static final String GRADING_CHAT_CLIENT = "gradingChatClient";
+    public static final String CHAT_MODEL = "chatModel";
+    public static final String REWRITE_CHAT_MODEL = "rewriteChatModel";
+
+    private final ChatModel openAiChatModel;
+    private final LlmCallScheduler scheduler;
+    private final AiProperties aiProperties;
+    private final AiMetrics metrics;
+
+    public ChatModelConfig(@Qualifier("openAiChatModel") ChatModel openAiChatModel,
+                           LlmCallScheduler scheduler,
+                           AiProperties aiProperties,
+                           AiMetrics metrics) {
+        this.openAiChatModel = openAiChatModel;
+        this.scheduler = scheduler;
+        this.aiProperties = aiProperties;
+        this.metrics = metrics;
+    }
+
+    /**
+     * The OpenAI model for consumers outside these clients. Calls wait for admission by the
+     * {@link LlmCallScheduler}, so that one user cannot exhaust the provider's rate limit for everyone else.
+     */
+    @Bean(CHAT_MODEL)
+    @Primary
+    public ChatModel chatModel() {
+        return scheduled(openAiChatModel);
+    }
+
+    /**
+     * Rewrites are cheap enough for the local Ollama model. When routing is enabled they go to whichever of
+     * OpenAI and Ollama currently answers faster, hedged onto the other one when slow.
+     */
+    @Bean(REWRITE_CHAT_MODEL)
+    public ChatModel rewriteChatModel(@Qualifier("ollamaChatModel") ObjectProvider<ChatModel> ollamaChatModel,
+                                      MeterRegistry meterRegistry) {
+        AiProperties.Routing routing = aiProperties.getRouting();
+        ChatModel openAi = model(AiUseCase.REWRITE);
+        ChatModel ollama = ollamaChatModel.getIfAvailable();
+        if (!routing.isEnabled() || ollama == null) {
+            return openAi;
+        }
+        return new HedgingChatModel(List.of(
+                HedgingChatModel.route("openai", openAi, routing),
+                HedgingChatModel.route("ollama", metrics.instrument(ollama, AiUseCase.REWRITE), routing.getOllamaModel(), routing)
+        ), routing, meterRegistry);
+    }
+
+    /**
+     * Answers users chatting about a flashcard set, remembering each conversation. Retrieval is added per call,
+     * as it is scoped to the user.
+     */
+    @Bean(CHAT_CLIENT)
+    public ChatClient chatClient(ChatMemory chatMemory, PromptTemplateRegistry promptTemplates) {
+        return ChatClient.builder(model(AiUseCase.CHAT))
+                .defaultSystem(promptTemplates.getContent("set/agent/system.st"))
+                .defaultOptions(ChatOptions.builder()
+                        .temperature(0.0)
+                        .topP(0.8)
+                        .build())
+                .defaultAdvisors(new MessageChatMemoryAdvisor(chatMemory))
+                .build();
+    }
+
+    /**
+     * Condenses reference material and rewrites user queries before retrieval.
+     */
+    @Bean(REWRITE_CHAT_CLIENT)
+    public ChatClient rewriteChatClient(@Qualifier(REWRITE_CHAT_MODEL) ChatModel chatModel) {
         return ChatClient.builder(chatModel)
+                .defaultOptions(OpenAiChatOptions.builder()
+                        .model("gpt-4.1-nano")
+                        .temperature(0.0)
+                        .topP(0.4)
+                        .build())
                 .build();
     }
 
-    @Bean
-    public ChatMemory chatMemory() {
-        return new InMemoryChatMemory();
+    @Bean(SET_GENERATION_CHAT_CLIENT)
+    public ChatClient setGenerationChatClient(PromptTemplateRegistry promptTemplates) {
+        return ChatClient.builder(model(AiUseCase.SET_GENERATION))
+                .defaultOptions(OpenAiChatOptions.builder()
+                        .responseFormat(jsonSchema(promptTemplates.getContent("set/schema.json")))
+                        .build())
+                .build();
+    }
+
+    @Bean(QUIZ_GENERATION_CHAT_CLIENT)
+    public ChatClient quizGenerationChatClient(PromptTemplateRegistry promptTemplates) {
+        return ChatClient.builder(model(AiUseCase.QUIZ_GENERATION))
+                .defaultOptions(OpenAiChatOptions.builder()
+                        .model("gpt-4.1")
+                        .temperature(0.3)
+                        .responseFormat(jsonSchema(promptTemplates.getContent("quiz/gen/schema.json")))
+                        .build())
+                .build();
+    }
+
+    @Bean(GRADING_CHAT_CLIENT)
+    public ChatClient gradingChatClient(PromptTemplateRegistry promptTemplates) {
+        return ChatClient.builder(model(AiUseCase.GRADE))
+                .defaultOptions(OpenAiChatOptions.builder()
+                        .model("gpt-4.1")
+                        .temperature(0.25)
+                        .responseFormat(jsonSchema(promptTemplates.getContent("quiz/grade/schema.json")))
+                        .build())
+                .build();
+    }
+
+    /**
+     * The OpenAI model of a use case, timed without the wait for admission.
+     */
+    private ChatModel model(AiUseCase useCase) {
+        return scheduled(metrics.instrument(openAiChatModel, useCase));
+    }
+
+    private ChatModel scheduled(ChatModel chatModel) {
+        if (!aiProperties.getLlmScheduler().isEnabled()) {
+            return chatModel;
+        }
+        return new SchedulingChatModel(chatModel, scheduler);
+    }
+
+    private static ResponseFormat jsonSchema(String schema) {
+        return ResponseFormat.builder()
+                .type(ResponseFormat.Type.JSON_SCHEMA)
+                .jsonSchema(schema)
+                .build();
     }
 }
@@ -0,0 +1,35 @@
+package com.github.monetadev.backend.config;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.service.ai.embedding.CachingEmbeddingModel;
+import com.github.monetadev.backend.service.ai.embedding.PrecomputedEmbeddingModel;
+import com.github.monetadev.backend.service.ai.metrics.AiMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * The vector store and every other consumer of a plain {@link EmbeddingModel} receive the caching model, so
+ * repeated retrieval queries are embedded once, behind the model that answers queries with pinned embeddings.
+ * Only calls that reach the provider are recorded by {@link AiMetrics}.
+ */
+@Configuration
+public class EmbeddingModelConfig {
+    public static final String EMBEDDING_MODEL = "embeddingModel";
+
+    @Bean(EMBEDDING_MODEL)
+    @Primary
+    public PrecomputedEmbeddingModel embeddingModel(@Qualifier("openAiEmbeddingModel") EmbeddingModel embeddingModel,
+                                                    AiProperties aiProperties,
+                                                    AiMetrics metrics,
+                                                    MeterRegistry meterRegistry) {
+        EmbeddingModel instrumented = metrics.instrument(embeddingModel);
+        if (!aiProperties.getEmbeddingCache().isEnabled()) {
+            return new PrecomputedEmbeddingModel(instrumented);
+        }
+        return new PrecomputedEmbeddingModel(new CachingEmbeddingModel(instrumented, aiProperties.getEmbeddingCache(), meterRegistry));
+    }
+}
@@ -3,8 +3,12 @@ package com.github.monetadev.backend.config;
 import com.github.monetadev.backend.config.prop.FileProperties;
 import com.github.monetadev.backend.security.jwt.JwtAuthenticationFilter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.autoconfigure.web.server.ManagementServerProperties;
+import org.springframework.boot.actuate.health.HealthEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -21,11 +25,15 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 public class SecurityConfig {
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
     private final FileProperties fileProperties;
+    private final ManagementServerProperties managementServerProperties;
 
     @Autowired
-    public SecurityConfig(JwtAuthenticationFilter jwtAuthenticationFilter, FileProperties fileProperties) {
+    public SecurityConfig(JwtAuthenticationFilter jwtAuthenticationFilter,
+                          FileProperties fileProperties,
+                          ManagementServerProperties managementServerProperties) {
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
         this.fileProperties = fileProperties;
+        this.managementServerProperties = managementServerProperties;
     }
 
     @Bean
@@ -38,12 +46,21 @@ public class SecurityConfig {
                         .requestMatchers("/graphql").permitAll()
                         .requestMatchers("/graphiql").permitAll()
                         .requestMatchers("/" + fileProperties.getProfilePictureDirName() + "/**").permitAll()
+                        .requestMatchers(EndpointRequest.to(HealthEndpoint.class)).permitAll()
+                        // Metrics are only served on the management port, which users cannot reach.
+                        .requestMatchers(EndpointRequest.toAnyEndpoint()).access((authentication, context) ->
+                                new AuthorizationDecision(isManagementPort(context.getRequest().getLocalPort())))
                         .anyRequest().authenticated())
                 .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
     }
 
+    private boolean isManagementPort(int port) {
+        Integer managementPort = managementServerProperties.getPort();
+        return managementPort != null && managementPort > 0 && managementPort == port;
+    }
+
 
     @Bean
     public PasswordEncoder passwordEncoder() {
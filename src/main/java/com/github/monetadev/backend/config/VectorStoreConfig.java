@@ -0,0 +1,28 @@
+package com.github.monetadev.backend.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.config.prop.StorageProperties;
+import com.github.monetadev.backend.service.ai.vectorstore.HnswVectorStore;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Selects the in-process vector store with {@code spring.ai.vectorstore.type=hnsw}, which also switches off the
+ * pgvector auto-configuration and every component that queries its table directly.
+ */
+@Configuration
+@ConditionalOnProperty(name = VectorStoreConfig.TYPE_PROPERTY, havingValue = VectorStoreConfig.HNSW)
+public class VectorStoreConfig {
+    public static final String TYPE_PROPERTY = "spring.ai.vectorstore.type";
+    public static final String HNSW = "hnsw";
+    public static final String PGVECTOR = "pgvector";
+
+    @Bean
+    public HnswVectorStore vectorStore(EmbeddingModel embeddingModel, AiProperties aiProperties,
+                                       StorageProperties storageProperties, ObjectMapper objectMapper) {
+        return new HnswVectorStore(embeddingModel, aiProperties, storageProperties, objectMapper);
+    }
+}
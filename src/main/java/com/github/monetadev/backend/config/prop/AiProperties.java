@@ -0,0 +1,246 @@
+package com.github.monetadev.backend.config.prop;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "moneta.config.ai")
+public class AiProperties {
+    private Job job = new Job();
+    private SemanticCache semanticCache = new SemanticCache();
+    private Ingestion ingestion = new Ingestion();
+    private ChatMemory chatMemory = new ChatMemory();
+    private SetContextCache setContextCache = new SetContextCache();
+    private Prompts prompts = new Prompts();
+    private DocumentRewrite documentRewrite = new DocumentRewrite();
+    private ContextPacking contextPacking = new ContextPacking();
+    private Retrieval retrieval = new Retrieval();
+    private EmbeddingCache embeddingCache = new EmbeddingCache();
+    private Hnsw hnsw = new Hnsw();
+    private LlmScheduler llmScheduler = new LlmScheduler();
+    private Routing routing = new Routing();
+    private Chunking chunking = new Chunking();
+    private Reindex reindex = new Reindex();
+    private ExtractedTextCache extractedTextCache = new ExtractedTextCache();
+
+    @Getter
+    @Setter
+    public static class Job {
+        private int corePoolSize = 4;
+        private int maxPoolSize = 8;
+        private int queueCapacity = 64;
+        private Duration retention = Duration.ofMinutes(30);
+    }
+
+    @Getter
+    @Setter
+    public static class SemanticCache {
+        private boolean enabled = true;
+        /** Largest cosine distance between two queries that still counts as a hit. */
+        private double maxDistance = 0.05;
+        private Duration ttl = Duration.ofMinutes(10);
+        /** Users whose results are cached, the least recently active are dropped first. */
+        private long maxUsers = 1000;
+        /** Results cached per user, the oldest are dropped first. */
+        private int maxEntriesPerUser = 20;
+    }
+
+    @Getter
+    @Setter
+    public static class Ingestion {
+        /** Upper bound of estimated tokens sent to the embedding model in a single request. */
+        private int maxBatchTokens = 8000;
+        /** Number of batches of a single document that may be embedded at the same time. */
+        private int maxConcurrency = 4;
+    }
+
+    @Getter
+    @Setter
+    public static class ChatMemory {
+        /** Messages kept per conversation, older ones are dropped. */
+        private int maxMessages = 100;
+        /** Conversations held in the in-process tier. */
+        private long hotConversations = 1000;
+        /** Idle time after which a conversation leaves the in-process tier. */
+        private Duration hotIdleTimeout = Duration.ofMinutes(30);
+        /** Idle time after which a conversation is deleted altogether. */
+        private Duration retention = Duration.ofDays(7);
+        /** Pending messages that trigger a write before the flush interval elapses. */
+        private int flushBatchSize = 256;
+        private Duration flushInterval = Duration.ofMillis(500);
+        private boolean initializeSchema = true;
+    }
+
+    @Getter
+    @Setter
+    public static class SetContextCache {
+        /** Rendered flashcard sets kept for new chat conversations. */
+        private long maxEntries = 500;
+        private Duration ttl = Duration.ofHours(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Prompts {
+        /** Recompile templates whose resource changed since it was loaded, intended for development. */
+        private boolean hotReload = false;
+    }
+
+    @Getter
+    @Setter
+    public static class DocumentRewrite {
+        /** Condense shards of a reference document in parallel instead of the whole document in one call. */
+        private boolean mapReduce = true;
+        /** Upper bound of estimated document tokens sent in a single rewrite call. */
+        private int maxShardTokens = 16000;
+        /** Number of shards of a single document that may be rewritten at the same time. */
+        private int maxConcurrency = 4;
+    }
+
+    @Getter
+    @Setter
+    public static class ContextPacking {
+        /** Weight of relevance against novelty when ordering retrieved chunks, 1 disables diversification. */
+        private double lambda = 0.7;
+        /** Share of a chunk's words found in an already selected chunk above which it counts as a duplicate. */
+        private double duplicateOverlap = 0.8;
+        /** Upper bound of estimated context tokens in a flashcard set generation prompt. */
+        private int setGenerationTokens = 6000;
+        /** Upper bound of estimated context tokens in a quiz generation prompt. */
+        private int quizGenerationTokens = 4000;
+        /** Upper bound of estimated context tokens in a quiz grading prompt. */
+        private int gradingTokens = 4000;
+    }
+
+    @Getter
+    @Setter
+    public static class Retrieval {
+        /** Fuse full-text matches with vector matches instead of relying on vector similarity alone. */
+        private boolean hybrid = true;
+        /** Rank offset of reciprocal rank fusion, larger values flatten the advantage of top ranks. */
+        private int rrfK = 60;
+        /** Postgres text search configuration used to index and query chunk content. */
+        private String textSearchConfig = "english";
+        /** Create the full-text and metadata indexes of the chunk table on startup. */
+        private boolean initializeSchema = true;
+    }
+
+    @Getter
+    @Setter
+    public static class EmbeddingCache {
+        /** Reuse the embedding of a query text seen recently instead of calling the embedding model again. */
+        private boolean enabled = true;
+        private long maxEntries = 10000;
+        private Duration ttl = Duration.ofHours(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Hnsw {
+        /** Links per node and level of the graph, twice as many on the bottom level. */
+        private int m = 16;
+        /** Candidates considered while linking a new node. */
+        private int efConstruction = 128;
+        /** Candidates considered per search, higher values trade latency for recall. */
+        private int efSearch = 64;
+        /** Partitions with at most this many chunks are scanned exactly instead of traversing the graph. */
+        private int exactSearchThreshold = 2000;
+        /** Share of deleted nodes after which the graph of a partition is rebuilt. */
+        private double compactionRatio = 0.3;
+        private int initialCapacity = 256;
+        /** Directory of partition snapshots, relative to the data directory, empty to keep the store in memory only. */
+        private String snapshotDirectory = "vector-store";
+        private Duration snapshotInterval = Duration.ofSeconds(30);
+    }
+
+    @Getter
+    @Setter
+    public static class LlmScheduler {
+        private boolean enabled = true;
+        /** Model calls in flight at the same time, across all users. */
+        private int maxConcurrentCalls = 16;
+        /** Estimated prompt tokens a user may spend in a burst. */
+        private long bucketCapacity = 60000;
+        /** Estimated prompt tokens returned to every user's bucket per second. */
+        private long refillTokensPerSecond = 1000;
+        /** Time a call may wait for its turn before it is rejected. */
+        private Duration maxWait = Duration.ofMinutes(2);
+    }
+
+    @Getter
+    @Setter
+    public static class Routing {
+        /** Routes query rewrites between OpenAI and the local Ollama model, which must be running. */
+        private boolean enabled = false;
+        /** Ollama model used in place of the OpenAI model, the Ollama default when empty. */
+        private String ollamaModel;
+        /** Bounds of the hedge delay, which otherwise follows the p95 latency of the preferred model. */
+        private Duration minHedgeDelay = Duration.ofMillis(200);
+        private Duration maxHedgeDelay = Duration.ofSeconds(5);
+        /** Recent calls per model used to estimate its latency. */
+        private int latencyWindow = 200;
+        /** Calls a model must complete before routing by its latency. */
+        private int minSamples = 20;
+        /** Share of calls sent first to a model other than the preferred one, so that every model stays measured. */
+        private double explorationRate = 0.05;
+        /** Weight of the latest call in the moving error rate of a model. */
+        private double errorRateDecay = 0.1;
+    }
+
+    @Getter
+    @Setter
+    public static class Chunking {
+        /** Chunking strategy by MIME type, {@code type/*} keys match every subtype. */
+        private Map<String, String> strategies = new HashMap<>(Map.of(
+                "application/pdf", "paragraph",
+                "text/html", "paragraph",
+                "text/markdown", "paragraph",
+                "application/vnd.openxmlformats-officedocument.wordprocessingml.document", "paragraph"));
+        /** Strategy of types without an entry: token, paragraph or sliding-window. */
+        private String defaultStrategy = "token";
+        /** Tokens per chunk of documents embedded into the vector store. */
+        private int chunkSize = 800;
+        /** Tokens shared by consecutive chunks of the sliding-window strategy. */
+        private int overlap = 160;
+        private int maxChunks = 10000;
+        /** Chunks of a reference document read for a single flashcard set generation. */
+        private int referenceChunkSize = 1024;
+        private int referenceMaxChunks = 128;
+    }
+
+    @Getter
+    @Setter
+    public static class Reindex {
+        /** Re-embed files whose chunks were written by another chunking or embedding configuration. */
+        private boolean enabled = true;
+        /** Part of the embedding version, raise it to re-embed every file, even those embedded before versions were recorded. */
+        private int revision = 1;
+        /** Time between two passes over all files. */
+        private Duration interval = Duration.ofMinutes(30);
+        /** Files loaded from the database at a time. */
+        private int pageSize = 50;
+        /** Pause after each embedding request, which keeps re-indexing from competing with uploads. */
+        private Duration batchPause = Duration.ofMillis(500);
+    }
+
+    @Getter
+    @Setter
+    public static class ExtractedTextCache {
+        /** Keep the text extracted from a document on disk and read it from there when the same content is extracted again. */
+        private boolean enabled = true;
+        /** Directory of the compressed texts, relative to the data directory, empty to always extract again. */
+        private String directory = "extracted-text";
+        /** Upper bound of the compressed texts on disk, the least recently read are deleted beyond it. */
+        private long maxBytes = 1024L * 1024 * 1024;
+        /** Documents with more extracted characters are not cached. */
+        private long maxDocumentChars = 50_000_000;
+    }
+}
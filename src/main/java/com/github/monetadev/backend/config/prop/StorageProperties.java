@@ -5,11 +5,31 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 @Setter
 @Getter
 @Configuration
 @ConfigurationProperties(prefix = "moneta.config.storage")
 public class StorageProperties {
+    public static final String DEFAULT_PROJECT_FOLDER = ".monetadev";
+
     private String dataDirectory;
     private Integer storageCacheExpiry = 86400;
+
+    /**
+     * Resolves a path against the data directory, which defaults to {@value #DEFAULT_PROJECT_FOLDER} in the
+     * user's home. Absolute paths are returned as they are.
+     */
+    public Path resolve(String path) {
+        Path resolved = Paths.get(path);
+        if (resolved.isAbsolute()) {
+            return resolved;
+        }
+        String base = dataDirectory == null || dataDirectory.isEmpty()
+                ? Paths.get(System.getProperty("user.home"), DEFAULT_PROJECT_FOLDER).toString()
+                : dataDirectory;
+        return Paths.get(base).resolve(resolved);
+    }
 }
@@ -0,0 +1,7 @@
+package com.github.monetadev.backend.exception;
+
+public class DocumentExtractionException extends RuntimeException {
+    public DocumentExtractionException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.github.monetadev.backend.exception;
+
+public class EmbeddingIngestionException extends RuntimeException {
+    public EmbeddingIngestionException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.github.monetadev.backend.exception;
+
+public class GenerationJobNotFoundException extends RuntimeException {
+    public GenerationJobNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.github.monetadev.backend.exception;
+
+public class GenerationJobRejectedException extends RuntimeException {
+    public GenerationJobRejectedException(String message) {
+        super(message);
+    }
+}
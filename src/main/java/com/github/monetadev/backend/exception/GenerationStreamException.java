@@ -0,0 +1,7 @@
+package com.github.monetadev.backend.exception;
+
+public class GenerationStreamException extends RuntimeException {
+    public GenerationStreamException(String message) {
+        super(message);
+    }
+}
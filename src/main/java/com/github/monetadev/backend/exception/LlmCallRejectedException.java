@@ -0,0 +1,7 @@
+package com.github.monetadev.backend.exception;
+
+public class LlmCallRejectedException extends RuntimeException {
+    public LlmCallRejectedException(String message) {
+        super(message);
+    }
+}
@@ -1,11 +1,15 @@
 package com.github.monetadev.backend.graphql.controller;
 
+import com.github.monetadev.backend.graphql.type.ai.job.GenerationJob;
 import com.github.monetadev.backend.graphql.type.ai.set.FlashcardGenOptions;
+import com.github.monetadev.backend.graphql.type.ai.set.GeneratedFlashcard;
 import com.github.monetadev.backend.graphql.type.ai.set.GeneratedFlashcardSet;
 import com.github.monetadev.backend.service.ai.ChatAgentService;
 import com.github.monetadev.backend.service.ai.FlashcardSetGenerationService;
+import com.github.monetadev.backend.service.ai.GenerationJobService;
 import com.netflix.graphql.dgs.DgsComponent;
 import com.netflix.graphql.dgs.DgsMutation;
+import com.netflix.graphql.dgs.DgsQuery;
 import com.netflix.graphql.dgs.DgsSubscription;
 import com.netflix.graphql.dgs.InputArgument;
 import reactor.core.publisher.Flux;
@@ -16,10 +20,14 @@ import java.util.UUID;
 public class AiController {
     private final ChatAgentService chatAgentService;
     private final FlashcardSetGenerationService flashcardSetGenerationService;
+    private final GenerationJobService generationJobService;
 
-    public AiController(ChatAgentService chatAgentService, FlashcardSetGenerationService flashcardSetGenerationService) {
+    public AiController(ChatAgentService chatAgentService,
+                        FlashcardSetGenerationService flashcardSetGenerationService,
+                        GenerationJobService generationJobService) {
         this.chatAgentService = chatAgentService;
         this.flashcardSetGenerationService = flashcardSetGenerationService;
+        this.generationJobService = generationJobService;
     }
 
     @DgsSubscription
@@ -33,4 +41,24 @@ public class AiController {
     public GeneratedFlashcardSet generateFlashcardSet(@InputArgument FlashcardGenOptions options) {
         return flashcardSetGenerationService.generateFlashcardSet(options);
     }
+
+    @DgsSubscription
+    public Flux<GeneratedFlashcard> generateFlashcardSetStream(@InputArgument FlashcardGenOptions options) {
+        return flashcardSetGenerationService.streamFlashcardSet(options);
+    }
+
+    @DgsMutation
+    public GenerationJob generateFlashcardSetAsync(@InputArgument FlashcardGenOptions options) {
+        return generationJobService.submitFlashcardSetGeneration(options);
+    }
+
+    @DgsQuery
+    public GenerationJob jobStatus(@InputArgument UUID id) {
+        return generationJobService.findJobById(id);
+    }
+
+    @DgsSubscription
+    public Flux<GenerationJob> generationJobProgress(@InputArgument UUID id) {
+        return generationJobService.subscribeToJob(id);
+    }
 }
@@ -1,11 +1,13 @@
 package com.github.monetadev.backend.graphql.controller;
 
+import com.github.monetadev.backend.graphql.type.ai.job.GenerationJob;
 import com.github.monetadev.backend.graphql.type.input.quiz.QuizAttemptInput;
 import com.github.monetadev.backend.graphql.type.input.quiz.QuizGenOptions;
 import com.github.monetadev.backend.graphql.type.input.quiz.QuizInput;
 import com.github.monetadev.backend.graphql.type.pagination.PaginatedQuiz;
 import com.github.monetadev.backend.model.Quiz;
 import com.github.monetadev.backend.model.QuizAttempt;
+import com.github.monetadev.backend.service.ai.GenerationJobService;
 import com.github.monetadev.backend.service.ai.QuizGenerationService;
 import com.github.monetadev.backend.service.base.QuizService;
 import com.netflix.graphql.dgs.DgsComponent;
@@ -19,10 +21,12 @@ import java.util.UUID;
 public class QuizController {
     private final QuizService quizService;
     private final QuizGenerationService quizGenerationService;
+    private final GenerationJobService generationJobService;
 
-    public QuizController(QuizService quizService, QuizGenerationService quizGenerationService) {
+    public QuizController(QuizService quizService, QuizGenerationService quizGenerationService, GenerationJobService generationJobService) {
         this.quizService = quizService;
         this.quizGenerationService = quizGenerationService;
+        this.generationJobService = generationJobService;
     }
 
     @DgsQuery
@@ -35,9 +39,13 @@ public class QuizController {
         return quizGenerationService.generateQuiz(options);
     }
 
+    @DgsMutation
+    public GenerationJob generateQuizAsync(@InputArgument QuizGenOptions options) {
+        return generationJobService.submitQuizGeneration(options);
+    }
+
     @DgsMutation
     public QuizAttempt gradeQuiz(@InputArgument QuizAttemptInput quiz) {
-        System.out.println(quiz.toString());
         return quizGenerationService.gradeQuizFromInput(quiz);
     }
 
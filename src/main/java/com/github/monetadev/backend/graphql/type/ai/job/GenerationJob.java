@@ -0,0 +1,30 @@
+package com.github.monetadev.backend.graphql.type.ai.job;
+
+import com.github.monetadev.backend.graphql.type.ai.set.GeneratedFlashcardSet;
+import com.github.monetadev.backend.model.Quiz;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Immutable snapshot of an asynchronous generation job. A new snapshot is published
+ * every time the job changes stage or status.
+ */
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+public class GenerationJob {
+    UUID id;
+    UUID ownerId;
+    GenerationJobType type;
+    GenerationJobStatus status;
+    GenerationStage stage;
+    String error;
+    Quiz quiz;
+    GeneratedFlashcardSet flashcardSet;
+    OffsetDateTime createdAt;
+    OffsetDateTime updatedAt;
+}
@@ -0,0 +1,6 @@
+package com.github.monetadev.backend.graphql.type.ai.job;
+
+public enum GenerationJobType {
+    QUIZ,
+    FLASHCARD_SET
+}
@@ -0,0 +1,9 @@
+package com.github.monetadev.backend.graphql.type.ai.job;
+
+public enum GenerationStage {
+    QUEUED,
+    RETRIEVING,
+    REWRITING,
+    GENERATING,
+    PERSISTING
+}
@@ -0,0 +1,83 @@
+package com.github.monetadev.backend.graphql.type.file;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+/**
+ * A {@link MultipartFile} whose content has been copied to the heap, so it stays readable
+ * after the originating request (and its temporary upload file) has completed.
+ */
+public class InMemoryMultipartFile implements MultipartFile {
+    private final String name;
+    private final String originalFilename;
+    private final String contentType;
+    private final byte[] content;
+
+    private InMemoryMultipartFile(String name, String originalFilename, String contentType, byte[] content) {
+        this.name = name;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.content = content;
+    }
+
+    /**
+     * Copies the content of the supplied upload.
+     * @param file The upload to copy, may be null.
+     * @return A detached copy of the upload, or null if none was supplied.
+     * @throws IOException if the upload could not be read.
+     */
+    public static MultipartFile copyOf(MultipartFile file) throws IOException {
+        if (file == null || file instanceof InMemoryMultipartFile) {
+            return file;
+        }
+        return new InMemoryMultipartFile(file.getName(), file.getOriginalFilename(), file.getContentType(), file.getBytes());
+    }
+
+    @NotNull
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return content.length == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return content.length;
+    }
+
+    @NotNull
+    @Override
+    public byte[] getBytes() {
+        return content;
+    }
+
+    @NotNull
+    @Override
+    public InputStream getInputStream() {
+        return new ByteArrayInputStream(content);
+    }
+
+    @Override
+    public void transferTo(@NotNull java.io.File dest) throws IOException {
+        Files.write(dest.toPath(), content);
+    }
+}
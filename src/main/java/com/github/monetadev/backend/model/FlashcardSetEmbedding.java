@@ -0,0 +1,39 @@
+package com.github.monetadev.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.util.UUID;
+
+/**
+ * The embedding of a {@link FlashcardSet}, used as the query vector when retrieving documents for the set. Kept
+ * apart from the set, so that fetching sets does not load their vectors.
+ */
+@Data
+@EqualsAndHashCode(of = "id")
+@ToString(exclude = {"flashcardSet", "embedding"})
+@Entity
+public class FlashcardSetEmbedding {
+    @Id
+    @Column(name = "flashcard_set_id")
+    private UUID id;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "flashcard_set_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private FlashcardSet flashcardSet;
+
+    @Column(name = "embedding", nullable = false)
+    private float[] embedding;
+
+    /**
+     * Identifies the model and text the embedding was computed from, it is stale once either changed.
+     */
+    @Column(name = "digest", nullable = false, length = 64)
+    private String digest;
+}
@@ -0,0 +1,11 @@
+package com.github.monetadev.backend.repository;
+
+import com.github.monetadev.backend.model.FlashcardSetEmbedding;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface FlashcardSetEmbeddingRepository extends JpaRepository<FlashcardSetEmbedding, UUID> {
+}
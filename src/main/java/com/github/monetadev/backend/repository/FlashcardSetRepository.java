@@ -4,8 +4,11 @@ import com.github.monetadev.backend.model.FlashcardSet;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
@@ -15,4 +18,7 @@ public interface FlashcardSetRepository extends JpaRepository<FlashcardSet, UUID
     Page<FlashcardSet> findAllByIsPublicOrderByCreationDateDesc(Boolean isPublic, Pageable pageable);
 
     Page<FlashcardSet> findAllByIsPublicIsTrueAndTitleContainsIgnoreCaseOrDescriptionContainsIgnoreCase(String title, String description, Pageable pageable);
+
+    @Query("SELECT s.lastUpdated FROM FlashcardSet s WHERE s.id = :id")
+    Optional<OffsetDateTime> findLastUpdatedById(UUID id);
 }
@@ -0,0 +1,31 @@
+package com.github.monetadev.backend.service.ai;
+
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+public interface ContextPacker {
+    String DOCUMENT_SEPARATOR = "\n---\n";
+
+    /**
+     * Selects the retrieved documents that go into a prompt. Near-duplicate chunks are dropped, the rest are
+     * ordered by relevance and novelty, and documents are taken in that order while they fit the budget.
+     * @param candidates The retrieved documents, most relevant first.
+     * @param tokenBudget The upper bound of estimated tokens of the packed context, separators included.
+     * @return The selected documents, in packing order.
+     */
+    List<Document> select(List<Document> candidates, int tokenBudget);
+
+    /**
+     * Selects documents as in {@link #select(List, int)} and joins their formatted content.
+     * @param candidates The retrieved documents, most relevant first.
+     * @param tokenBudget The upper bound of estimated tokens of the packed context.
+     * @return The packed context, empty if no document was retrieved.
+     */
+    default String pack(List<Document> candidates, int tokenBudget) {
+        return select(candidates, tokenBudget).stream()
+                .map(Document::getFormattedContent)
+                .collect(Collectors.joining(DOCUMENT_SEPARATOR));
+    }
+}
@@ -1,10 +1,20 @@
 package com.github.monetadev.backend.service.ai;
 
 import com.github.monetadev.backend.model.File;
+import org.springframework.ai.document.Document;
 
+import java.util.List;
 import java.util.UUID;
 
 public interface DocumentEmbedService {
     String embedFile(File file);
+
+    /**
+     * Cuts a file into the chunks it is embedded as with the current configuration, without embedding them.
+     * @param file The file to chunk.
+     * @return The chunks, with the metadata they are stored with.
+     */
+    List<Document> chunkFile(File file);
+
     void deleteEmbeddingById(UUID id);
 }
@@ -0,0 +1,16 @@
+package com.github.monetadev.backend.service.ai;
+
+import com.github.monetadev.backend.graphql.type.ai.set.FlashcardGenOptions;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+public interface DocumentRewriteService {
+    /**
+     * Condenses the chunks of a reference document to the terms and excerpts relevant to a generation query.
+     * @param options The generation options, providing the query and generation type.
+     * @param chunks The chunks of the reference document, in document order.
+     * @return The condensed document, used as the source of the generation call.
+     */
+    String rewrite(FlashcardGenOptions options, List<Document> chunks);
+}
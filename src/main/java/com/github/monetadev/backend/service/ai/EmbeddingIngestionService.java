@@ -0,0 +1,54 @@
+package com.github.monetadev.backend.service.ai;
+
+import com.github.monetadev.backend.exception.EmbeddingIngestionException;
+import org.springframework.ai.document.Document;
+
+public interface EmbeddingIngestionService {
+    /**
+     * Opens an ingestion for the chunks of a single source document. Chunks added to the session are
+     * grouped into token-bounded batches, which are embedded and written to the vector store while
+     * further chunks are still being added.
+     * @param sourceId Identifier of the source document, used for logging and metrics.
+     * @return A new {@link Session}, which must be completed or aborted.
+     */
+    Session open(String sourceId);
+
+    /**
+     * Embeds and stores all supplied chunks.
+     * @param sourceId Identifier of the source document.
+     * @param chunks The chunks to embed.
+     * @return The number of stored chunks.
+     * @throws EmbeddingIngestionException if any batch failed; no chunk of the source is kept in that case.
+     */
+    default int ingest(String sourceId, Iterable<Document> chunks) throws EmbeddingIngestionException {
+        Session session = open(sourceId);
+        try {
+            chunks.forEach(session::add);
+        } catch (RuntimeException e) {
+            session.abort();
+            throw e;
+        }
+        return session.complete();
+    }
+
+    interface Session {
+        /**
+         * Queues a chunk, blocking while the maximum number of batches is already in flight.
+         * @param chunk The chunk to embed.
+         * @throws EmbeddingIngestionException if an earlier batch of this session failed.
+         */
+        void add(Document chunk) throws EmbeddingIngestionException;
+
+        /**
+         * Flushes the last batch and waits for all batches to be stored.
+         * @return The number of stored chunks.
+         * @throws EmbeddingIngestionException if any batch failed; already stored chunks are removed again.
+         */
+        int complete() throws EmbeddingIngestionException;
+
+        /**
+         * Stops the ingestion and removes every chunk stored so far.
+         */
+        void abort();
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.monetadev.backend.service.ai;
+
+import com.github.monetadev.backend.model.File;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Content-addressed index over the chunks in the vector store, keyed by the MD5 sum of the source file.
+ */
+public interface EmbeddingRegistry {
+    /**
+     * Metadata key holding the number of chunks of a file, recorded once all of them are stored.
+     */
+    String CHUNK_COUNT_METADATA_KEY = "chunkCount";
+
+    /**
+     * Finds a file whose content has been embedded completely. Files still being embedded, or whose ingestion
+     * stopped half-way, are not considered.
+     * @param md5Sum The MD5 sum of the file content.
+     * @return The id of an embedded file with identical content, empty if none exists.
+     */
+    Optional<UUID> findEmbeddedFileByHash(String md5Sum);
+
+    /**
+     * Duplicates the chunks of an embedded file for another file with identical content, reusing the
+     * stored vectors and only rewriting the ownership metadata.
+     * @param sourceFileId The id of the file whose chunks are reused.
+     * @param target The file the copied chunks will belong to.
+     * @param userId The {@link UUID} of the user owning the target file.
+     * @return The number of copied chunks, 0 if the source file is not marked complete or the number of its
+     * chunks differs from the recorded one, in which case nothing is copied.
+     */
+    int copyEmbeddings(UUID sourceFileId, File target, UUID userId);
+
+    /**
+     * Records that all chunks of a file are stored, under {@value #CHUNK_COUNT_METADATA_KEY}, which makes the
+     * file a source for {@link #copyEmbeddings(UUID, File, UUID)}.
+     * @param fileId The id of the file.
+     * @param chunkCount The number of chunks stored for the file.
+     * @return The number of marked chunks.
+     */
+    int markComplete(UUID fileId, int chunkCount);
+
+    /**
+     * Reads the embedding version recorded with the chunks of a file.
+     * @param fileId The id of the file.
+     * @return The version, an empty string for chunks written before versions were recorded, or empty if the
+     * file has no chunks.
+     */
+    Optional<String> findEmbeddingVersion(UUID fileId);
+
+    /**
+     * Replaces all chunks of a file at once with chunks embedded beforehand. Searches running meanwhile see
+     * either the old or the new chunks, never both or none.
+     * @param fileId The id of the file whose chunks are replaced.
+     * @param chunks The new chunks, at least one. They are marked complete as they are stored.
+     * @param embeddings The vectors of the new chunks, in the same order.
+     * @return The number of stored chunks, 0 if the file had no chunks left to replace, as when it was deleted
+     * in the meantime.
+     */
+    int replaceEmbeddings(UUID fileId, List<Document> chunks, List<float[]> embeddings);
+}
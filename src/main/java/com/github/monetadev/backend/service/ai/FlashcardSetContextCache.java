@@ -0,0 +1,30 @@
+package com.github.monetadev.backend.service.ai;
+
+import com.github.monetadev.backend.exception.FlashcardSetNotFoundException;
+
+import java.util.UUID;
+
+public interface FlashcardSetContextCache {
+    /**
+     * Returns the prompt context of a flashcard set, rendering it only if the set changed since it was last rendered.
+     * @param setId The {@link UUID} of the flashcard set.
+     * @return The rendered {@link FlashcardSetContext}.
+     * @throws FlashcardSetNotFoundException if no set exists with the given ID.
+     */
+    FlashcardSetContext getContext(UUID setId) throws FlashcardSetNotFoundException;
+
+    /**
+     * Discards the rendered context of a flashcard set, e.g. after it was updated or deleted.
+     * @param setId The {@link UUID} of the flashcard set.
+     */
+    void invalidate(UUID setId);
+
+    /**
+     * The parts of a chat prompt that depend only on the flashcard set.
+     * @param title The title of the set.
+     * @param description The description of the set.
+     * @param flashcards Every flashcard of the set, rendered and joined in order.
+     */
+    record FlashcardSetContext(String title, String description, String flashcards) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.monetadev.backend.service.ai;
+
+import com.github.monetadev.backend.graphql.type.ai.set.FlashcardGenOptions;
+import com.github.monetadev.backend.graphql.type.ai.set.GeneratedFlashcardSet;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+
+public interface FlashcardSetGenerationCache {
+    /**
+     * Returns a previously generated {@link GeneratedFlashcardSet} for a semantically equivalent request
+     * of the same user, or generates and caches a new one.
+     * @param userId The {@link UUID} of the requesting user.
+     * @param options The generation options; the query, generation type and number of flashcards form the key.
+     * @param generator Produces the result on a cache miss.
+     * @return The cached or freshly generated {@link GeneratedFlashcardSet}.
+     */
+    GeneratedFlashcardSet getOrGenerate(UUID userId, FlashcardGenOptions options, Supplier<GeneratedFlashcardSet> generator);
+
+    /**
+     * Discards every cached result of a user, e.g. after their documents have changed.
+     * @param userId The {@link UUID} of the user.
+     */
+    void invalidateUser(UUID userId);
+}
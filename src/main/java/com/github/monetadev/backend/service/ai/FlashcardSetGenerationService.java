@@ -1,8 +1,22 @@
 package com.github.monetadev.backend.service.ai;
 
 import com.github.monetadev.backend.graphql.type.ai.set.FlashcardGenOptions;
+import com.github.monetadev.backend.graphql.type.ai.set.GeneratedFlashcard;
 import com.github.monetadev.backend.graphql.type.ai.set.GeneratedFlashcardSet;
+import reactor.core.publisher.Flux;
 
 public interface FlashcardSetGenerationService {
-    GeneratedFlashcardSet generateFlashcardSet(FlashcardGenOptions options);
+    default GeneratedFlashcardSet generateFlashcardSet(FlashcardGenOptions options) {
+        return generateFlashcardSet(options, GenerationProgressListener.NONE);
+    }
+
+    GeneratedFlashcardSet generateFlashcardSet(FlashcardGenOptions options, GenerationProgressListener listener);
+
+    /**
+     * Generates a flashcard set like {@link #generateFlashcardSet(FlashcardGenOptions)}, but emits each
+     * {@link GeneratedFlashcard} as soon as the model has finished writing it.
+     * @param options The generation options.
+     * @return The generated flashcards, in order.
+     */
+    Flux<GeneratedFlashcard> streamFlashcardSet(FlashcardGenOptions options);
 }
@@ -0,0 +1,45 @@
+package com.github.monetadev.backend.service.ai;
+
+import com.github.monetadev.backend.exception.GenerationJobNotFoundException;
+import com.github.monetadev.backend.exception.GenerationJobRejectedException;
+import com.github.monetadev.backend.graphql.type.ai.job.GenerationJob;
+import com.github.monetadev.backend.graphql.type.ai.set.FlashcardGenOptions;
+import com.github.monetadev.backend.graphql.type.input.quiz.QuizGenOptions;
+import reactor.core.publisher.Flux;
+
+import java.util.UUID;
+
+public interface GenerationJobService {
+    /**
+     * Queues a quiz generation for the authenticated user and returns immediately.
+     * @param options The quiz generation options.
+     * @return The initial {@link GenerationJob} snapshot, containing the job id.
+     * @throws GenerationJobRejectedException if the generation queue is full.
+     */
+    GenerationJob submitQuizGeneration(QuizGenOptions options) throws GenerationJobRejectedException;
+
+    /**
+     * Queues a flashcard set generation for the authenticated user and returns immediately.
+     * @param options The flashcard set generation options.
+     * @return The initial {@link GenerationJob} snapshot, containing the job id.
+     * @throws GenerationJobRejectedException if the generation queue is full.
+     */
+    GenerationJob submitFlashcardSetGeneration(FlashcardGenOptions options) throws GenerationJobRejectedException;
+
+    /**
+     * Retrieves the latest snapshot of a job owned by the authenticated user.
+     * @param id The {@link UUID} of the job.
+     * @return The latest {@link GenerationJob} snapshot.
+     * @throws GenerationJobNotFoundException if the job does not exist, has expired, or belongs to another user.
+     */
+    GenerationJob findJobById(UUID id) throws GenerationJobNotFoundException;
+
+    /**
+     * Streams snapshots of a job owned by the authenticated user, starting with the latest one.
+     * The stream completes once the job has completed or failed.
+     * @param id The {@link UUID} of the job.
+     * @return A {@link Flux} of {@link GenerationJob} snapshots.
+     * @throws GenerationJobNotFoundException if the job does not exist, has expired, or belongs to another user.
+     */
+    Flux<GenerationJob> subscribeToJob(UUID id) throws GenerationJobNotFoundException;
+}
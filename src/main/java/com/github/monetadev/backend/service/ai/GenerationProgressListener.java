@@ -0,0 +1,13 @@
+package com.github.monetadev.backend.service.ai;
+
+import com.github.monetadev.backend.graphql.type.ai.job.GenerationStage;
+
+/**
+ * Receives stage transitions from a generation pipeline.
+ */
+@FunctionalInterface
+public interface GenerationProgressListener {
+    GenerationProgressListener NONE = stage -> {};
+
+    void onStage(GenerationStage stage);
+}
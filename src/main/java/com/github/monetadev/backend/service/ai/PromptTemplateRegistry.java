@@ -0,0 +1,23 @@
+package com.github.monetadev.backend.service.ai;
+
+import java.util.Map;
+
+public interface PromptTemplateRegistry {
+    /**
+     * Renders a prompt template with the given variables. Templates use {@code ¶} as the start and end delimiter.
+     * @param name The path of the template below {@code resources/ai}, e.g. {@code quiz/gen/system.st}.
+     * @param variables The values of the template variables.
+     * @return The rendered prompt.
+     * @throws IllegalArgumentException if no template exists with the given name, or a variable the template
+     * references is missing.
+     */
+    String render(String name, Map<String, Object> variables) throws IllegalArgumentException;
+
+    /**
+     * Returns the unrendered content of a resource, e.g. a JSON schema or a template without variables.
+     * @param name The path of the resource below {@code resources/ai}.
+     * @return The resource content.
+     * @throws IllegalArgumentException if no resource exists with the given name.
+     */
+    String getContent(String name) throws IllegalArgumentException;
+}
@@ -6,6 +6,10 @@ import com.github.monetadev.backend.model.Quiz;
 import com.github.monetadev.backend.model.QuizAttempt;
 
 public interface QuizGenerationService {
-    Quiz generateQuiz(QuizGenOptions options);
+    default Quiz generateQuiz(QuizGenOptions options) {
+        return generateQuiz(options, GenerationProgressListener.NONE);
+    }
+
+    Quiz generateQuiz(QuizGenOptions options, GenerationProgressListener listener);
     QuizAttempt gradeQuizFromInput(QuizAttemptInput quizInput);
 }
@@ -0,0 +1,83 @@
+package com.github.monetadev.backend.service.ai;
+
+import com.github.monetadev.backend.graphql.type.ai.job.GenerationStage;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent generations with the same key. The first caller runs the work in its own thread, callers
+ * arriving while it is in flight wait for that result instead of starting another run, and all of them receive
+ * the same value or failure. Stage transitions of the run are forwarded to every caller's listener.
+ * <p>
+ * Only in-flight work is shared: once a run has completed, the next call with its key starts a new one.
+ *
+ * @param <K> the key identifying identical requests
+ * @param <V> the generated value
+ */
+public final class SingleFlight<K, V> {
+    private final ConcurrentMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+
+    public V execute(K key, GenerationProgressListener listener, Function<GenerationProgressListener, V> work) {
+        Flight<V> flight = new Flight<>();
+        flight.listeners.add(listener);
+        Flight<V> running = flights.putIfAbsent(key, flight);
+        if (running != null) {
+            return running.join(listener);
+        }
+
+        try {
+            V value = work.apply(flight::onStage);
+            flights.remove(key, flight);
+            flight.result.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flights.remove(key, flight);
+            flight.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of keys currently being generated
+     */
+    public int inFlight() {
+        return flights.size();
+    }
+
+    private static final class Flight<V> {
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        private final List<GenerationProgressListener> listeners = new CopyOnWriteArrayList<>();
+        private volatile GenerationStage stage;
+
+        private void onStage(GenerationStage stage) {
+            this.stage = stage;
+            listeners.forEach(listener -> listener.onStage(stage));
+        }
+
+        private V join(GenerationProgressListener listener) {
+            listeners.add(listener);
+            // Catch up with the stage reached before joining, repeating it at most once is harmless.
+            GenerationStage current = stage;
+            if (current != null) {
+                listener.onStage(current);
+            }
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.monetadev.backend.service.ai.chunking;
+
+/**
+ * Sizes a {@link ChunkingStrategy} cuts to.
+ * @param chunkSize Maximum tokens per chunk.
+ * @param overlap Tokens shared by consecutive chunks, for strategies that overlap them.
+ * @param maxChunks Chunks after which the document is cut off.
+ */
+public record ChunkLimits(int chunkSize, int overlap, int maxChunks) {
+    public ChunkLimits {
+        if (chunkSize <= 0 || maxChunks <= 0) {
+            throw new IllegalArgumentException("Chunk size and chunk count must be positive");
+        }
+        if (overlap < 0 || overlap >= chunkSize) {
+            throw new IllegalArgumentException("Overlap must be smaller than the chunk size");
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.monetadev.backend.service.ai.chunking;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.service.ai.reader.Chunker;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Selects the {@link ChunkingStrategy} for a document by its MIME type. A type is looked up as is, then by its
+ * {@code type/*} wildcard, before falling back to the default strategy.
+ */
+@Component
+public class ChunkingEngine {
+    private final Map<String, ChunkingStrategy> strategiesByName;
+    private final AiProperties.Chunking properties;
+    private final ChunkLimits storageLimits;
+    private final ChunkLimits referenceLimits;
+
+    public ChunkingEngine(List<ChunkingStrategy> strategies, AiProperties aiProperties) {
+        this.strategiesByName = strategies.stream()
+                .collect(Collectors.toUnmodifiableMap(ChunkingStrategy::getName, strategy -> strategy));
+        this.properties = aiProperties.getChunking();
+        this.storageLimits = new ChunkLimits(properties.getChunkSize(), properties.getOverlap(), properties.getMaxChunks());
+        this.referenceLimits = new ChunkLimits(properties.getReferenceChunkSize(),
+                Math.min(properties.getOverlap(), properties.getReferenceChunkSize() - 1),
+                properties.getReferenceMaxChunks());
+
+        Set<String> configured = new TreeSet<>(properties.getStrategies().values());
+        configured.add(properties.getDefaultStrategy());
+        configured.removeAll(strategiesByName.keySet());
+        if (!configured.isEmpty()) {
+            throw new IllegalStateException("Unknown chunking strategies " + configured + ", available are " + strategiesByName.keySet());
+        }
+    }
+
+    /**
+     * @param contentType The MIME type of the document, possibly with parameters, or {@code null} if unknown.
+     * @return The strategy configured for the type.
+     */
+    public ChunkingStrategy strategyFor(String contentType) {
+        Map<String, String> strategies = properties.getStrategies();
+        String name = null;
+        if (contentType != null) {
+            String type = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+            name = strategies.get(type);
+            if (name == null && type.contains("/")) {
+                name = strategies.get(type.substring(0, type.indexOf('/')) + "/*");
+            }
+        }
+        return strategiesByName.get(name != null ? name : properties.getDefaultStrategy());
+    }
+
+    /**
+     * Creates a chunker for a document that is embedded into the vector store.
+     */
+    public Chunker openForStorage(String contentType, Map<String, Object> metadata, Consumer<Document> sink) {
+        return strategyFor(contentType).open(storageLimits, metadata, sink);
+    }
+
+    /**
+     * Creates a chunker for a reference document that is read for a single generation, which needs fewer and
+     * larger chunks.
+     */
+    public Chunker openForReference(String contentType, Map<String, Object> metadata, Consumer<Document> sink) {
+        return strategyFor(contentType).open(referenceLimits, metadata, sink);
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.monetadev.backend.service.ai.chunking;
+
+import com.github.monetadev.backend.service.ai.reader.Chunker;
+import org.springframework.ai.document.Document;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A way of cutting extracted text into chunks for embedding. Strategies are Spring beans, selected per MIME type
+ * by their name through {@link ChunkingEngine}.
+ */
+public interface ChunkingStrategy {
+    /**
+     * @return The name the strategy is configured by.
+     */
+    String getName();
+
+    /**
+     * Creates a chunker for one document.
+     * @param limits Sizes to cut to.
+     * @param metadata Metadata copied onto every emitted chunk.
+     * @param sink Receives chunks as soon as they are cut.
+     */
+    Chunker open(ChunkLimits limits, Map<String, Object> metadata, Consumer<Document> sink);
+}
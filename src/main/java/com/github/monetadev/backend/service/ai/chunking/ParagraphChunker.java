@@ -0,0 +1,183 @@
+package com.github.monetadev.backend.service.ai.chunking;
+
+import com.github.monetadev.backend.service.ai.reader.Chunker;
+import com.knuddels.jtokkit.api.IntArrayList;
+import org.springframework.ai.document.Document;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Packs whole paragraphs into chunks of up to {@code chunkSize} tokens. A heading always starts a new chunk,
+ * so a chunk never mixes sections. Paragraphs longer than a chunk are split at sentence ends, and sentences
+ * longer than a chunk at token boundaries. Only the current paragraph and chunk are buffered.
+ */
+class ParagraphChunker implements Chunker {
+    static final String SECTION = "section";
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?])\\s+");
+    private static final String PARAGRAPH_SEPARATOR = "\n\n";
+    private static final String SENTENCE_SEPARATOR = " ";
+    private static final int MIN_CHUNK_LENGTH_TO_EMBED = 5;
+
+    private final int chunkSize;
+    private final int maxChunks;
+    private final Map<String, Object> metadata;
+    private final Consumer<Document> sink;
+
+    private final StringBuilder block = new StringBuilder();
+    private final StringBuilder chunk = new StringBuilder();
+    private int chunkTokens;
+    private boolean inHeading;
+    // The chunk holds nothing but the heading of its section.
+    private boolean headingOnly;
+    // The buffered block continues a paragraph that was cut because it grew too long.
+    private boolean continued;
+    private String section;
+    private int emitted;
+
+    ParagraphChunker(ChunkLimits limits, Map<String, Object> metadata, Consumer<Document> sink) {
+        this.chunkSize = limits.chunkSize();
+        this.maxChunks = limits.maxChunks();
+        this.metadata = Map.copyOf(metadata);
+        this.sink = sink;
+    }
+
+    @Override
+    public void text(char[] characters, int start, int length) {
+        if (isFull()) {
+            return;
+        }
+        block.append(characters, start, length);
+        // Plain text may arrive as a single block, cut it once it surely exceeds a chunk.
+        if (!inHeading && block.length() >= chunkSize * Tokens.CHARS_PER_TOKEN_WINDOW) {
+            int cut = lastSentenceEnd(block);
+            String head = block.substring(0, cut);
+            block.delete(0, cut);
+            addParagraph(head.trim(), continued ? SENTENCE_SEPARATOR : PARAGRAPH_SEPARATOR);
+            headingOnly = false;
+            continued = true;
+        }
+    }
+
+    @Override
+    public void heading() {
+        boundary();
+        if (headingOnly) {
+            // A heading directly followed by another one is not worth a chunk of its own.
+            chunk.setLength(0);
+            chunkTokens = 0;
+        }
+        flush();
+        inHeading = true;
+    }
+
+    @Override
+    public void boundary() {
+        String text = block.toString().trim();
+        String separator = continued ? SENTENCE_SEPARATOR : PARAGRAPH_SEPARATOR;
+        block.setLength(0);
+        continued = false;
+        if (text.isEmpty()) {
+            return;
+        }
+        boolean isHeading = inHeading;
+        if (isHeading) {
+            inHeading = false;
+            section = text;
+        }
+        addParagraph(text, separator);
+        headingOnly = isHeading;
+    }
+
+    @Override
+    public boolean isFull() {
+        return emitted >= maxChunks;
+    }
+
+    @Override
+    public int finish() {
+        boundary();
+        flush();
+        return emitted;
+    }
+
+    private void addParagraph(String paragraph, String separator) {
+        if (paragraph.isEmpty()) {
+            return;
+        }
+        int tokens = Tokens.count(paragraph);
+        if (tokens > chunkSize) {
+            flush();
+            addOversized(paragraph);
+            return;
+        }
+        if (!fits(tokens, separator)) {
+            flush();
+        }
+        append(paragraph, tokens, separator);
+    }
+
+    private void addOversized(String paragraph) {
+        for (String sentence : SENTENCE_END.split(paragraph)) {
+            int tokens = Tokens.count(sentence);
+            if (tokens <= chunkSize) {
+                if (!fits(tokens, SENTENCE_SEPARATOR)) {
+                    flush();
+                }
+                append(sentence, tokens, SENTENCE_SEPARATOR);
+                continue;
+            }
+            flush();
+            IntArrayList encoded = Tokens.encode(sentence);
+            for (int offset = 0; offset < encoded.size(); offset += chunkSize) {
+                append(Tokens.decode(encoded, offset, Math.min(offset + chunkSize, encoded.size())), chunkSize, "");
+                flush();
+            }
+        }
+    }
+
+    private boolean fits(int tokens, String separator) {
+        return chunk.isEmpty() || chunkTokens + Tokens.count(separator) + tokens <= chunkSize;
+    }
+
+    private void append(String text, int tokens, String separator) {
+        if (!chunk.isEmpty()) {
+            chunk.append(separator);
+            chunkTokens += Tokens.count(separator);
+        }
+        chunk.append(text);
+        chunkTokens += tokens;
+    }
+
+    private void flush() {
+        String text = chunk.toString().trim();
+        chunk.setLength(0);
+        chunkTokens = 0;
+        if (isFull() || text.length() <= MIN_CHUNK_LENGTH_TO_EMBED) {
+            return;
+        }
+        Map<String, Object> chunkMetadata = new HashMap<>(metadata);
+        if (section != null) {
+            chunkMetadata.put(SECTION, section);
+        }
+        sink.accept(new Document(text, chunkMetadata));
+        emitted++;
+    }
+
+    private static int lastSentenceEnd(CharSequence text) {
+        for (int i = text.length() - 1; i > 0; i--) {
+            char c = text.charAt(i - 1);
+            if ((c == '.' || c == '?' || c == '!' || c == '\n') && Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        for (int i = text.length() - 1; i > 0; i--) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return text.length();
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.monetadev.backend.service.ai.chunking;
+
+import com.github.monetadev.backend.service.ai.reader.Chunker;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Chunks made of whole paragraphs that never span a heading. The first chunk of a section starts with its heading,
+ * later chunks of the section carry it only in the {@value ParagraphChunker#SECTION} metadata.
+ */
+@Component
+public class ParagraphChunkingStrategy implements ChunkingStrategy {
+    public static final String NAME = "paragraph";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Chunker open(ChunkLimits limits, Map<String, Object> metadata, Consumer<Document> sink) {
+        return new ParagraphChunker(limits, metadata, sink);
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.monetadev.backend.service.ai.chunking;
+
+import com.github.monetadev.backend.service.ai.reader.Chunker;
+import com.knuddels.jtokkit.api.IntArrayList;
+import org.springframework.ai.document.Document;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Cuts streamed text into windows of {@code chunkSize} tokens, each starting {@code chunkSize - overlap} tokens
+ * after the previous one. Only the text not yet covered by a full window is buffered.
+ */
+class SlidingWindowChunker implements Chunker {
+    private static final int MIN_CHUNK_LENGTH_TO_EMBED = 5;
+
+    private final int chunkSize;
+    private final int step;
+    private final int maxChunks;
+    private final Map<String, Object> metadata;
+    private final Consumer<Document> sink;
+
+    private final StringBuilder buffer = new StringBuilder();
+    private int cutThreshold;
+    // Leading tokens of the buffer that were already part of the last emitted window.
+    private int covered;
+    private int emitted;
+
+    SlidingWindowChunker(ChunkLimits limits, Map<String, Object> metadata, Consumer<Document> sink) {
+        this.chunkSize = limits.chunkSize();
+        this.step = limits.chunkSize() - limits.overlap();
+        this.maxChunks = limits.maxChunks();
+        this.metadata = Map.copyOf(metadata);
+        this.sink = sink;
+        this.cutThreshold = chunkSize * Tokens.CHARS_PER_TOKEN_WINDOW;
+    }
+
+    @Override
+    public void text(char[] characters, int start, int length) {
+        if (isFull()) {
+            return;
+        }
+        buffer.append(characters, start, length);
+        if (buffer.length() >= cutThreshold) {
+            cut(false);
+        }
+    }
+
+    @Override
+    public void boundary() {
+        if (!buffer.isEmpty() && buffer.charAt(buffer.length() - 1) != '\n') {
+            buffer.append('\n');
+        }
+    }
+
+    @Override
+    public boolean isFull() {
+        return emitted >= maxChunks;
+    }
+
+    @Override
+    public int finish() {
+        cut(true);
+        buffer.setLength(0);
+        return emitted;
+    }
+
+    private void cut(boolean flushing) {
+        IntArrayList tokens = Tokens.encode(buffer.toString());
+        int offset = 0;
+        while (!isFull() && tokens.size() - offset >= chunkSize) {
+            emit(Tokens.decode(tokens, offset, offset + chunkSize));
+            offset += step;
+            covered = chunkSize - step;
+        }
+        // The tail is only worth a chunk of its own if it holds more than the overlap already emitted.
+        if (flushing && !isFull() && tokens.size() - offset > covered) {
+            emit(Tokens.decode(tokens, offset, tokens.size()));
+            offset = tokens.size();
+        }
+        String remaining = Tokens.decode(tokens, Math.min(offset, tokens.size()), tokens.size());
+        buffer.setLength(0);
+        buffer.append(remaining);
+        cutThreshold = Math.max(chunkSize * Tokens.CHARS_PER_TOKEN_WINDOW, buffer.length() * 2);
+    }
+
+    private void emit(String chunkText) {
+        String text = chunkText.trim();
+        if (text.length() > MIN_CHUNK_LENGTH_TO_EMBED) {
+            sink.accept(new Document(text, new HashMap<>(metadata)));
+            emitted++;
+        }
+    }
+}
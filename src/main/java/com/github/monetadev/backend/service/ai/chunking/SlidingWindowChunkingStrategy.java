@@ -0,0 +1,27 @@
+package com.github.monetadev.backend.service.ai.chunking;
+
+import com.github.monetadev.backend.service.ai.reader.Chunker;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Token windows that overlap their predecessor, so that a passage cut at a chunk border is still whole in one
+ * of the two chunks. Costs {@code chunkSize / (chunkSize - overlap)} times the tokens of plain token chunks.
+ */
+@Component
+public class SlidingWindowChunkingStrategy implements ChunkingStrategy {
+    public static final String NAME = "sliding-window";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Chunker open(ChunkLimits limits, Map<String, Object> metadata, Consumer<Document> sink) {
+        return new SlidingWindowChunker(limits, metadata, sink);
+    }
+}
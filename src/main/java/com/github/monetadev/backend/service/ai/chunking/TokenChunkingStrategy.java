@@ -0,0 +1,30 @@
+package com.github.monetadev.backend.service.ai.chunking;
+
+import com.github.monetadev.backend.service.ai.reader.Chunker;
+import com.github.monetadev.backend.service.ai.reader.StreamingTokenChunker;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Fixed-size token chunks, cut back to the last sentence end or line break where possible.
+ */
+@Component
+public class TokenChunkingStrategy implements ChunkingStrategy {
+    public static final String NAME = "token";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Chunker open(ChunkLimits limits, Map<String, Object> metadata, Consumer<Document> sink) {
+        return StreamingTokenChunker.builder()
+                .withChunkSize(limits.chunkSize())
+                .withMaxNumChunks(limits.maxChunks())
+                .build(metadata, sink);
+    }
+}
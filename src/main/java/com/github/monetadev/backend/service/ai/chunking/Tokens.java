@@ -0,0 +1,34 @@
+package com.github.monetadev.backend.service.ai.chunking;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.knuddels.jtokkit.api.IntArrayList;
+
+/**
+ * The tokenizer of the embedding model, shared by the chunkers.
+ */
+final class Tokens {
+    static final Encoding ENCODING = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+    // Roughly four characters per token; twice that leaves room for cuts to land on punctuation.
+    static final int CHARS_PER_TOKEN_WINDOW = 8;
+
+    private Tokens() {
+    }
+
+    static int count(String text) {
+        return ENCODING.countTokens(text);
+    }
+
+    static IntArrayList encode(String text) {
+        return ENCODING.encode(text);
+    }
+
+    static String decode(IntArrayList tokens, int from, int to) {
+        IntArrayList slice = new IntArrayList(to - from);
+        for (int i = from; i < to; i++) {
+            slice.add(tokens.get(i));
+        }
+        return ENCODING.decode(slice);
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.monetadev.backend.service.ai.embedding;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.monetadev.backend.config.prop.AiProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * {@link EmbeddingModel} that caches the embeddings of single texts, which is how vector stores embed their
+ * queries. Texts are keyed by a digest of their normalized form, so long queries built from whole flashcard
+ * sets do not stay in memory. Concurrent misses on the same text wait for a single model call. Batch requests,
+ * as issued when documents are ingested, always go to the model.
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+    public static final String CACHE_NAME = "moneta.ai.embedding.query";
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final EmbeddingModel delegate;
+    private final Cache<String, float[]> embeddings;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, AiProperties.EmbeddingCache properties, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.embeddings = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxEntries())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, embeddings, CACHE_NAME);
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] embedding = embeddings.get(key(text), ignored -> delegate.embed(text));
+        // Callers own the returned array, the cached one must stay untouched.
+        return embedding.clone();
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return delegate.embed(document);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return delegate.call(request);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    private static String key(String text) {
+        String normalized = WHITESPACE.matcher(Normalizer.normalize(text, Normalizer.Form.NFC)).replaceAll(" ").strip();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.github.monetadev.backend.service.ai.embedding;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.model.File;
+import com.github.monetadev.backend.repository.FileRepository;
+import com.github.monetadev.backend.service.ai.DocumentEmbedService;
+import com.github.monetadev.backend.service.ai.EmbeddingRegistry;
+import com.github.monetadev.backend.service.ai.FlashcardSetGenerationCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-embeds files whose chunks carry another {@link EmbeddingVersions embedding version} than their files would get
+ * today, so that changing the chunking or the embedding model does not require uploading every file again.
+ * <p>
+ * Passes over all files run periodically on a single background thread. The new chunks of a file are embedded
+ * one batch at a time with a pause in between and swapped in for the old ones in a single step, so retrieval
+ * keeps answering from the old chunks until then. Files without chunks are left alone, and so are files whose
+ * chunks predate embedding versions until the revision is raised.
+ */
+@Slf4j
+@Component
+public class EmbeddingReindexer {
+    public static final String FILES = "moneta.ai.reindex.files";
+    // Lets the application finish starting before the first pass.
+    private static final long STARTUP_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final FileRepository fileRepository;
+    private final EmbeddingRegistry embeddingRegistry;
+    private final DocumentEmbedService documentEmbedService;
+    private final EmbeddingVersions embeddingVersions;
+    private final EmbeddingModel embeddingModel;
+    private final FlashcardSetGenerationCache flashcardSetGenerationCache;
+    private final AiProperties.Reindex properties;
+    private final int maxBatchTokens;
+    private final MeterRegistry meterRegistry;
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("embedding-reindex-"));
+
+    public EmbeddingReindexer(FileRepository fileRepository,
+                              EmbeddingRegistry embeddingRegistry,
+                              DocumentEmbedService documentEmbedService,
+                              EmbeddingVersions embeddingVersions,
+                              EmbeddingModel embeddingModel,
+                              FlashcardSetGenerationCache flashcardSetGenerationCache,
+                              AiProperties aiProperties,
+                              MeterRegistry meterRegistry) {
+        this.fileRepository = fileRepository;
+        this.embeddingRegistry = embeddingRegistry;
+        this.documentEmbedService = documentEmbedService;
+        this.embeddingVersions = embeddingVersions;
+        this.embeddingModel = embeddingModel;
+        this.flashcardSetGenerationCache = flashcardSetGenerationCache;
+        this.properties = aiProperties.getReindex();
+        this.maxBatchTokens = aiProperties.getIngestion().getMaxBatchTokens();
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::reindex, STARTUP_DELAY_MILLIS, properties.getInterval().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Makes one pass over all files, re-embedding those with stale chunks.
+     * @return The number of re-embedded files.
+     */
+    public int reindex() {
+        int reindexed = 0;
+        int failed = 0;
+        PageRequest pageRequest = PageRequest.of(0, properties.getPageSize(), Sort.by("id"));
+        Page<File> page;
+        do {
+            page = fileRepository.findAll(pageRequest);
+            for (File file : page) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return reindexed;
+                }
+                try {
+                    if (reindexIfStale(file)) {
+                        reindexed++;
+                        count("reindexed");
+                    }
+                } catch (RuntimeException e) {
+                    // Retried with the next pass.
+                    failed++;
+                    count("failed");
+                    log.warn("Could not re-embed file {}", file.getId(), e);
+                }
+            }
+            pageRequest = pageRequest.next();
+        } while (page.hasNext());
+        if (reindexed > 0 || failed > 0) {
+            log.info("Re-embedded {} files with stale chunks, {} failed", reindexed, failed);
+        }
+        return reindexed;
+    }
+
+    private boolean reindexIfStale(File file) {
+        Optional<String> stored = embeddingRegistry.findEmbeddingVersion(file.getId());
+        if (stored.isEmpty() || !embeddingVersions.isStale(stored.get(), file.getContentType())) {
+            return false;
+        }
+        List<Document> chunks = documentEmbedService.chunkFile(file);
+        if (chunks.isEmpty()) {
+            return false;
+        }
+        List<float[]> embeddings = embed(chunks);
+        if (embeddings == null || embeddingRegistry.replaceEmbeddings(file.getId(), chunks, embeddings) == 0) {
+            return false;
+        }
+        flashcardSetGenerationCache.invalidateUser(file.getUser().getId());
+        return true;
+    }
+
+    /**
+     * @return The embeddings of the chunks, {@code null} if the pass was interrupted.
+     */
+    private List<float[]> embed(List<Document> chunks) {
+        List<float[]> embeddings = new ArrayList<>(chunks.size());
+        List<String> batch = new ArrayList<>();
+        int batchTokens = 0;
+        for (Document chunk : chunks) {
+            int tokens = tokenCountEstimator.estimate(chunk.getText());
+            if (!batch.isEmpty() && batchTokens + tokens > maxBatchTokens) {
+                if (!embedBatch(batch, embeddings)) {
+                    return null;
+                }
+                batch = new ArrayList<>();
+                batchTokens = 0;
+            }
+            batch.add(chunk.getText());
+            batchTokens += tokens;
+        }
+        return embedBatch(batch, embeddings) ? embeddings : null;
+    }
+
+    private boolean embedBatch(List<String> batch, List<float[]> embeddings) {
+        embeddings.addAll(embeddingModel.embed(batch));
+        try {
+            Thread.sleep(properties.getBatchPause());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void count(String outcome) {
+        Counter.builder(FILES)
+                .description("Files re-embedded because their chunks were stale")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+}
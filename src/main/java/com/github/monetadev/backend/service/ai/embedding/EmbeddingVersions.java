@@ -0,0 +1,66 @@
+package com.github.monetadev.backend.service.ai.embedding;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.service.ai.chunking.ChunkingEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Describes the configuration that produces the chunk vectors of a document, recorded with every chunk under
+ * {@value #METADATA_KEY}. Chunks whose version differs from the current one for their file were cut or embedded
+ * differently and are replaced by the re-indexer.
+ * <p>
+ * Chunks written before versions were recorded are taken as the baseline and kept until the revision is raised
+ * above {@value #BASELINE_REVISION}, so that deploying the re-indexer does not re-embed every existing file.
+ */
+@Component
+public class EmbeddingVersions {
+    public static final String METADATA_KEY = "embeddingVersion";
+    public static final int BASELINE_REVISION = 1;
+
+    private final ChunkingEngine chunkingEngine;
+    private final AiProperties aiProperties;
+    private final String embeddingModel;
+
+    public EmbeddingVersions(ChunkingEngine chunkingEngine,
+                             AiProperties aiProperties,
+                             @Value("${spring.ai.openai.embedding.options.model:text-embedding-ada-002}") String model,
+                             @Value("${spring.ai.openai.embedding.options.dimensions:}") String dimensions) {
+        this.chunkingEngine = chunkingEngine;
+        this.aiProperties = aiProperties;
+        this.embeddingModel = StringUtils.hasText(dimensions) ? model + "@" + dimensions : model;
+    }
+
+    /**
+     * @return The embedding model, with its dimensions if configured, such as {@code text-embedding-3-small@512}.
+     */
+    public String embeddingModel() {
+        return embeddingModel;
+    }
+
+    /**
+     * @param contentType The MIME type of the document.
+     * @return The version of the chunks the document is embedded into today, such as
+     * {@code r1/paragraph-800-160/text-embedding-ada-002}.
+     */
+    public String current(String contentType) {
+        AiProperties.Chunking chunking = aiProperties.getChunking();
+        return "r" + aiProperties.getReindex().getRevision()
+                + "/" + chunkingEngine.strategyFor(contentType).getName()
+                + "-" + chunking.getChunkSize() + "-" + chunking.getOverlap()
+                + "/" + embeddingModel;
+    }
+
+    /**
+     * @param version The version recorded with the chunks of a document, empty if none was recorded.
+     * @param contentType The MIME type of the document.
+     * @return Whether the chunks must be replaced to be current.
+     */
+    public boolean isStale(String version, String contentType) {
+        if (version.isEmpty()) {
+            return aiProperties.getReindex().getRevision() > BASELINE_REVISION;
+        }
+        return !version.equals(current(contentType));
+    }
+}
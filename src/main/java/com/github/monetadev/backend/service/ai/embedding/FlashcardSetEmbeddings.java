@@ -0,0 +1,103 @@
+package com.github.monetadev.backend.service.ai.embedding;
+
+import com.github.monetadev.backend.model.Flashcard;
+import com.github.monetadev.backend.model.FlashcardSet;
+import com.github.monetadev.backend.model.FlashcardSetEmbedding;
+import com.github.monetadev.backend.repository.FlashcardSetEmbeddingRepository;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the embedding of a flashcard set the first time documents are retrieved for it, so that later retrievals,
+ * to generate or grade a quiz, use the stored vector as the query instead of embedding the whole set again.
+ * <p>
+ * A stored embedding is used only while the embedding model and the text of the set are the ones it was computed
+ * from. Once the set changed, it is embedded again on its next retrieval, never while it is being saved.
+ */
+@Component
+public class FlashcardSetEmbeddings {
+    private static final String QUERY_PREFIX = "Educational content related to the following flashcard set and its details:\n";
+
+    private final PrecomputedEmbeddingModel embeddingModel;
+    private final EmbeddingVersions embeddingVersions;
+    private final FlashcardSetEmbeddingRepository embeddingRepository;
+
+    public FlashcardSetEmbeddings(PrecomputedEmbeddingModel embeddingModel,
+                                  EmbeddingVersions embeddingVersions,
+                                  FlashcardSetEmbeddingRepository embeddingRepository) {
+        this.embeddingModel = embeddingModel;
+        this.embeddingVersions = embeddingVersions;
+        this.embeddingRepository = embeddingRepository;
+    }
+
+    /**
+     * Retrieves the documents related to a set with its stored embedding as the query vector, embedding and
+     * storing it first if it is missing or stale.
+     * @param flashcardSet The set, which must have been saved.
+     * @param retriever Searches the documents of the user.
+     * @return The retrieved documents.
+     */
+    public List<Document> retrieve(FlashcardSet flashcardSet, DocumentRetriever retriever) {
+        String text = queryText(flashcardSet);
+        String digest = digest(text);
+        FlashcardSetEmbedding stored = embeddingRepository.findById(flashcardSet.getId()).orElse(null);
+        float[] embedding = stored != null && digest.equals(stored.getDigest())
+                ? stored.getEmbedding()
+                : store(flashcardSet, stored, embeddingModel.embed(text), digest);
+        // The text still goes to the retriever, full-text search matches its words.
+        try (PrecomputedEmbeddingModel.Pin ignored = embeddingModel.pin(text, embedding)) {
+            return retriever.retrieve(new Query(text));
+        }
+    }
+
+    private float[] store(FlashcardSet flashcardSet, FlashcardSetEmbedding stored, float[] embedding, String digest) {
+        FlashcardSetEmbedding updated = stored != null ? stored : new FlashcardSetEmbedding();
+        updated.setFlashcardSet(flashcardSet);
+        updated.setEmbedding(embedding);
+        updated.setDigest(digest);
+        try {
+            embeddingRepository.save(updated);
+        } catch (DataIntegrityViolationException ignored) {
+            // Stored by a concurrent retrieval of the same set.
+        }
+        return embedding;
+    }
+
+    /**
+     * The text a set is embedded from, with its flashcards in order of position.
+     */
+    static String queryText(FlashcardSet flashcardSet) {
+        List<Flashcard> flashcards = flashcardSet.getFlashcards() == null ? List.of() : flashcardSet.getFlashcards();
+        return QUERY_PREFIX + String.format("Title: %s\nDescription: %s\nFlashcards:\n%s",
+                flashcardSet.getTitle(),
+                flashcardSet.getDescription(),
+                flashcards.stream()
+                        .sorted(Comparator.comparing(Flashcard::getPosition, Comparator.nullsLast(Comparator.naturalOrder())))
+                        .map(f -> String.format("  Position: %d, Term: %s, Definition: %s",
+                                f.getPosition(),
+                                f.getTerm(),
+                                f.getDefinition()))
+                        .collect(Collectors.joining("\n")));
+    }
+
+    private String digest(String text) {
+        String canonical = embeddingVersions.embeddingModel() + "\n" + text;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
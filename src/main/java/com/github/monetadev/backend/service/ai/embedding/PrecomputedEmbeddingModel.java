@@ -0,0 +1,77 @@
+package com.github.monetadev.backend.service.ai.embedding;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link EmbeddingModel} that answers single texts with embeddings pinned by the caller, so a query whose vector
+ * is already known can be handed to a vector store, which only accepts query text, without embedding it again.
+ * Pins are shared by all threads, as retrievers may search on a thread of their own, and last until closed.
+ * Every other text goes to the delegate.
+ */
+public class PrecomputedEmbeddingModel implements EmbeddingModel {
+    private final EmbeddingModel delegate;
+    private final Map<String, Pinned> pinned = new ConcurrentHashMap<>();
+
+    public PrecomputedEmbeddingModel(EmbeddingModel delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Answers the exact text with the embedding until the returned pin is closed. Pinning the same text again
+     * while it is pinned keeps the first embedding.
+     * @param text The query text, as passed to the vector store.
+     * @param embedding The embedding of the text by the delegate model.
+     * @return The pin, to be closed once the query has run.
+     */
+    public Pin pin(String text, float[] embedding) {
+        float[] copy = embedding.clone();
+        pinned.compute(text, (ignored, current) -> current == null ? new Pinned(copy, 1) : current.retain());
+        return () -> pinned.computeIfPresent(text, (ignored, current) -> current.release());
+    }
+
+    @Override
+    public float[] embed(String text) {
+        Pinned current = pinned.get(text);
+        // Callers own the returned array, the pinned one must stay untouched.
+        return current != null ? current.embedding().clone() : delegate.embed(text);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return delegate.embed(document);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return delegate.call(request);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    /**
+     * Releases a pinned embedding, does not throw.
+     */
+    public interface Pin extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private record Pinned(float[] embedding, int holders) {
+        private Pinned retain() {
+            return new Pinned(embedding, holders + 1);
+        }
+
+        private Pinned release() {
+            return holders > 1 ? new Pinned(embedding, holders - 1) : null;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.monetadev.backend.service.ai.grading;
+
+import com.github.monetadev.backend.graphql.type.ai.quiz.grade.GradedOption;
+import com.github.monetadev.backend.graphql.type.ai.quiz.grade.GradedQuestion;
+import com.github.monetadev.backend.graphql.type.input.quiz.OptionInput;
+import com.github.monetadev.backend.graphql.type.input.quiz.QuestionInput;
+import com.github.monetadev.backend.model.Option;
+import com.github.monetadev.backend.model.Question;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Grades multiple choice and true/false responses against the correct {@link Option}s stored with the question,
+ * without a model call.
+ * <p>
+ * A response selects options by position ({@code 2}), by letter ({@code B}) or by option content ({@code True}),
+ * several selections separated by commas, semicolons or line breaks. Without a textual response, the response
+ * options flagged as correct are taken as the selection. Questions that cannot be graded this way, because no
+ * option is stored as correct or the response does not map onto the options, are left to the model.
+ */
+public final class ObjectiveQuestionGrader {
+    private static final String SELECTION_SEPARATORS = "[,;\\n]";
+
+    private ObjectiveQuestionGrader() {
+    }
+
+    /**
+     * Whether a question type can be graded locally at all.
+     */
+    public static boolean isObjective(Question.QuestionType type) {
+        return type == Question.QuestionType.MULTIPLE_CHOICE_SINGLE_ANSWER
+                || type == Question.QuestionType.MULTIPLE_CHOICE_MULTIPLE_ANSWER
+                || type == Question.QuestionType.TRUE_FALSE;
+    }
+
+    /**
+     * Grades a single response.
+     * @param question The stored question, including its options.
+     * @param response The user's response to the question.
+     * @return The graded question, or empty if the question must be graded by the model.
+     */
+    public static Optional<GradedQuestion> grade(Question question, QuestionInput response) {
+        if (!isObjective(question.getQuestionType()) || question.getOptions() == null) {
+            return Optional.empty();
+        }
+        List<Option> options = question.getOptions().stream()
+                .sorted(Comparator.comparing(Option::getPosition))
+                .toList();
+        Set<Integer> correct = options.stream()
+                .filter(option -> Boolean.TRUE.equals(option.getIsCorrect()))
+                .map(Option::getPosition)
+                .collect(Collectors.toSet());
+        if (correct.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Optional<Set<Integer>> selected = resolveSelection(options, response);
+        if (selected.isEmpty()) {
+            return Optional.empty();
+        }
+        boolean isCorrect = selected.get().equals(correct);
+
+        GradedQuestion graded = new GradedQuestion();
+        graded.setContent(question.getContent());
+        graded.setPosition(question.getPosition());
+        graded.setUserResponse(describe(options, selected.get()));
+        graded.setCorrectAnswer(isCorrect);
+        graded.setFeedback(isCorrect
+                ? "Correct! The answer is: " + describe(options, correct) + "."
+                : "Incorrect. The correct answer is: " + describe(options, correct) + ".");
+        graded.setOptions(options.stream().map(ObjectiveQuestionGrader::toGradedOption).toList());
+        return Optional.of(graded);
+    }
+
+    /**
+     * Grades a question as incorrect with an empty response, for questions that were not answered or that the model
+     * returned no verdict for, so that they still count towards the score of the attempt.
+     * @param question The stored question, including its options.
+     * @param feedback Why the question was not graded.
+     * @return The graded question.
+     */
+    public static GradedQuestion ungraded(Question question, String feedback) {
+        GradedQuestion graded = new GradedQuestion();
+        graded.setContent(question.getContent());
+        graded.setPosition(question.getPosition());
+        graded.setUserResponse("");
+        graded.setCorrectAnswer(false);
+        graded.setFeedback(feedback);
+        graded.setOptions(question.getOptions() == null ? List.of() : question.getOptions().stream()
+                .sorted(Comparator.comparing(Option::getPosition))
+                .map(ObjectiveQuestionGrader::toGradedOption)
+                .toList());
+        return graded;
+    }
+
+    private static Optional<Set<Integer>> resolveSelection(List<Option> options, QuestionInput response) {
+        Set<Integer> selected = new HashSet<>();
+        String content = response.getContent();
+        if (content != null && !content.isBlank()) {
+            for (String token : content.split(SELECTION_SEPARATORS)) {
+                if (token.isBlank()) {
+                    continue;
+                }
+                Optional<Integer> position = resolveToken(options, token.trim());
+                if (position.isEmpty()) {
+                    return Optional.empty();
+                }
+                selected.add(position.get());
+            }
+        } else if (response.getOptions() != null) {
+            for (OptionInput option : response.getOptions()) {
+                if (option != null && Boolean.TRUE.equals(option.getIsCorrect()) && option.getPosition() != null) {
+                    selected.add(option.getPosition());
+                }
+            }
+        }
+        return selected.isEmpty() ? Optional.empty() : Optional.of(selected);
+    }
+
+    private static Optional<Integer> resolveToken(List<Option> options, String token) {
+        for (Option option : options) {
+            if (option.getContent().trim().equalsIgnoreCase(token)) {
+                return Optional.of(option.getPosition());
+            }
+        }
+        try {
+            int position = Integer.parseInt(token);
+            return options.stream()
+                    .map(Option::getPosition)
+                    .filter(candidate -> candidate == position)
+                    .findFirst();
+        } catch (NumberFormatException ignored) {
+            // Not a position, try a letter.
+        }
+        if (token.length() == 1 && Character.isLetter(token.charAt(0))) {
+            int index = Character.toUpperCase(token.charAt(0)) - 'A';
+            if (index < options.size()) {
+                return Optional.of(options.get(index).getPosition());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static String describe(List<Option> options, Set<Integer> positions) {
+        return options.stream()
+                .filter(option -> positions.contains(option.getPosition()))
+                .map(Option::getContent)
+                .collect(Collectors.joining(", "));
+    }
+
+    private static GradedOption toGradedOption(Option option) {
+        GradedOption graded = new GradedOption();
+        graded.setContent(option.getContent());
+        graded.setPosition(option.getPosition());
+        graded.setCorrect(Boolean.TRUE.equals(option.getIsCorrect()));
+        return graded;
+    }
+}
@@ -0,0 +1,172 @@
+package com.github.monetadev.backend.service.ai.impl;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.exception.EmbeddingIngestionException;
+import com.github.monetadev.backend.service.ai.EmbeddingIngestionService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Embeds the chunks of a document in token-bounded batches on virtual threads, writing each batch
+ * to the vector store as soon as it has been embedded. The number of batches in flight per document
+ * is bounded, which keeps provider rate limits and memory in check for large documents.
+ */
+@Service
+public class BatchedEmbeddingIngestionService implements EmbeddingIngestionService {
+    private static final String BATCH_TIMER = "moneta.ai.embedding.batch";
+    private static final String BATCH_TOKENS = "moneta.ai.embedding.batch.tokens";
+    private static final String BATCH_CHUNKS = "moneta.ai.embedding.batch.chunks";
+
+    private final VectorStore vectorStore;
+    private final AiProperties.Ingestion properties;
+    private final MeterRegistry meterRegistry;
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final DistributionSummary batchTokens;
+    private final DistributionSummary batchChunks;
+
+    public BatchedEmbeddingIngestionService(VectorStore vectorStore, AiProperties aiProperties, MeterRegistry meterRegistry) {
+        this.vectorStore = vectorStore;
+        this.properties = aiProperties.getIngestion();
+        this.meterRegistry = meterRegistry;
+        this.batchTokens = DistributionSummary.builder(BATCH_TOKENS)
+                .description("Estimated tokens per embedding batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchChunks = DistributionSummary.builder(BATCH_CHUNKS)
+                .description("Chunks per embedding batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Session open(String sourceId) {
+        return new BatchingSession(sourceId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private final class BatchingSession implements Session {
+        private final String sourceId;
+        private final Semaphore inFlight = new Semaphore(Math.max(1, properties.getMaxConcurrency()));
+        private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+        private final List<String> submittedIds = new ArrayList<>();
+        private List<Document> batch = new ArrayList<>();
+        private int batchTokenCount;
+        private volatile Throwable failure;
+        private volatile boolean aborted;
+
+        private BatchingSession(String sourceId) {
+            this.sourceId = sourceId;
+        }
+
+        @Override
+        public void add(Document chunk) {
+            throwIfFailed();
+            int tokens = tokenCountEstimator.estimate(chunk.getText());
+            if (!batch.isEmpty() && batchTokenCount + tokens > properties.getMaxBatchTokens()) {
+                flush();
+            }
+            batch.add(chunk);
+            batchTokenCount += tokens;
+        }
+
+        @Override
+        public int complete() {
+            flush();
+            awaitPending();
+            if (failure != null) {
+                abort();
+                throw new EmbeddingIngestionException("Could not embed document " + sourceId + ": " + failure.getMessage());
+            }
+            return submittedIds.size();
+        }
+
+        @Override
+        public void abort() {
+            aborted = true;
+            awaitPending();
+            if (!submittedIds.isEmpty()) {
+                vectorStore.delete(submittedIds);
+            }
+        }
+
+        private void awaitPending() {
+            try {
+                CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+            } catch (CompletionException ignored) {
+                // Recorded in failure by the failing batch.
+            }
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<Document> documents = batch;
+            int tokens = batchTokenCount;
+            batch = new ArrayList<>();
+            batchTokenCount = 0;
+
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EmbeddingIngestionException("Interrupted while embedding document " + sourceId);
+            }
+            documents.forEach(document -> submittedIds.add(document.getId()));
+            pending.add(CompletableFuture.runAsync(() -> store(documents, tokens), executor)
+                    .whenComplete((ignored, throwable) -> {
+                        inFlight.release();
+                        if (throwable != null && failure == null) {
+                            failure = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                        }
+                    }));
+        }
+
+        private void store(List<Document> documents, int tokens) {
+            if (aborted) {
+                return;
+            }
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String outcome = "success";
+            try {
+                vectorStore.add(documents);
+            } catch (RuntimeException e) {
+                outcome = "failure";
+                throw e;
+            } finally {
+                sample.stop(Timer.builder(BATCH_TIMER)
+                        .description("Time to embed and store a batch of chunks")
+                        .tag("outcome", outcome)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry));
+                batchTokens.record(tokens);
+                batchChunks.record(documents.size());
+            }
+        }
+
+        private void throwIfFailed() {
+            if (failure != null) {
+                throw new EmbeddingIngestionException("Could not embed document " + sourceId + ": " + failure.getMessage());
+            }
+        }
+    }
+}
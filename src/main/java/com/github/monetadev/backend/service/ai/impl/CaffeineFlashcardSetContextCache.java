@@ -0,0 +1,86 @@
+package com.github.monetadev.backend.service.ai.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.exception.FlashcardSetNotFoundException;
+import com.github.monetadev.backend.model.Flashcard;
+import com.github.monetadev.backend.model.FlashcardSet;
+import com.github.monetadev.backend.repository.FlashcardSetRepository;
+import com.github.monetadev.backend.service.ai.FlashcardSetContextCache;
+import com.github.monetadev.backend.service.ai.PromptTemplateRegistry;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the rendered flashcards of recently chatted-about sets, keyed by set and its last update time.
+ * A hit costs a single lookup of the update timestamp instead of loading and rendering every flashcard.
+ */
+@Service
+public class CaffeineFlashcardSetContextCache implements FlashcardSetContextCache {
+    private final FlashcardSetRepository flashcardSetRepository;
+    private final PromptTemplateRegistry promptTemplates;
+    private final Cache<UUID, Entry> entries;
+
+    public CaffeineFlashcardSetContextCache(FlashcardSetRepository flashcardSetRepository,
+                                            AiProperties aiProperties,
+                                            PromptTemplateRegistry promptTemplates) {
+        this.flashcardSetRepository = flashcardSetRepository;
+        this.promptTemplates = promptTemplates;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(aiProperties.getSetContextCache().getMaxEntries())
+                .expireAfterAccess(aiProperties.getSetContextCache().getTtl())
+                .build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public FlashcardSetContext getContext(UUID setId) throws FlashcardSetNotFoundException {
+        OffsetDateTime lastUpdated = flashcardSetRepository.findLastUpdatedById(setId).orElse(null);
+        Entry entry = entries.getIfPresent(setId);
+        if (entry != null && Objects.equals(entry.lastUpdated(), lastUpdated)) {
+            return entry.context();
+        }
+
+        FlashcardSet flashcardSet = flashcardSetRepository.findById(setId)
+                .orElseThrow(() -> new FlashcardSetNotFoundException("Flashcard set not found with ID: " + setId));
+        FlashcardSetContext context = new FlashcardSetContext(
+                flashcardSet.getTitle(),
+                flashcardSet.getDescription(),
+                render(flashcardSet));
+        entries.put(setId, new Entry(flashcardSet.getLastUpdated(), context));
+        return context;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void invalidate(UUID setId) {
+        entries.invalidate(setId);
+    }
+
+    private String render(FlashcardSet flashcardSet) {
+        return flashcardSet.getFlashcards().stream()
+                .sorted(Comparator.comparing(Flashcard::getPosition))
+                .map(flashcard -> promptTemplates.render("set/agent/flashcard.st", Map.of(
+                        "position", flashcard.getPosition().toString(),
+                        "term", flashcard.getTerm(),
+                        "definition", flashcard.getDefinition()
+                )))
+                .collect(Collectors.joining(System.lineSeparator()));
+    }
+
+    private record Entry(OffsetDateTime lastUpdated, FlashcardSetContext context) {
+    }
+}
@@ -2,43 +2,99 @@ package com.github.monetadev.backend.service.ai.impl;
 
 import com.github.monetadev.backend.model.File;
 import com.github.monetadev.backend.service.ai.DocumentEmbedService;
+import com.github.monetadev.backend.service.ai.EmbeddingIngestionService;
+import com.github.monetadev.backend.service.ai.EmbeddingRegistry;
+import com.github.monetadev.backend.service.ai.chunking.ChunkingEngine;
+import com.github.monetadev.backend.service.ai.chunking.ParagraphChunkingStrategy;
+import com.github.monetadev.backend.service.ai.embedding.EmbeddingVersions;
+import com.github.monetadev.backend.service.ai.reader.Chunker;
+import com.github.monetadev.backend.service.ai.reader.ExtractedTextStore;
 import com.github.monetadev.backend.service.file.FileService;
 import com.github.monetadev.backend.service.security.AuthenticationService;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.reader.ExtractedTextFormatter;
 import org.springframework.ai.reader.pdf.ParagraphPdfDocumentReader;
 import org.springframework.ai.reader.pdf.config.PdfDocumentReaderConfig;
-import org.springframework.ai.reader.tika.TikaDocumentReader;
-import org.springframework.ai.transformer.splitter.TextSplitter;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.filter.Filter;
-import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Service
 public class DocumentEmbedServiceImpl implements DocumentEmbedService {
+    private static final String PDF_CONTENT_TYPE = "application/pdf";
+    private static final String PDF_SECTION_TITLE = "title";
+
     private final VectorStore vectorStore;
     private final FileService fileService;
     private final AuthenticationService authenticationService;
+    private final EmbeddingIngestionService embeddingIngestionService;
+    private final EmbeddingRegistry embeddingRegistry;
+    private final ExtractedTextStore textStore;
+    private final ChunkingEngine chunkingEngine;
+    private final EmbeddingVersions embeddingVersions;
 
-    public DocumentEmbedServiceImpl(PgVectorStore vectorStore, FileService fileService, AuthenticationService authenticationService) {
+    public DocumentEmbedServiceImpl(VectorStore vectorStore,
+                                    FileService fileService,
+                                    AuthenticationService authenticationService,
+                                    EmbeddingIngestionService embeddingIngestionService,
+                                    EmbeddingRegistry embeddingRegistry,
+                                    ExtractedTextStore textStore,
+                                    ChunkingEngine chunkingEngine,
+                                    EmbeddingVersions embeddingVersions) {
         this.vectorStore = vectorStore;
         this.fileService = fileService;
         this.authenticationService = authenticationService;
+        this.embeddingIngestionService = embeddingIngestionService;
+        this.embeddingRegistry = embeddingRegistry;
+        this.textStore = textStore;
+        this.chunkingEngine = chunkingEngine;
+        this.embeddingVersions = embeddingVersions;
     }
 
     /**
      * {@inheritDoc}
+     *
+     * Files whose content has been embedded completely before reuse the existing chunk vectors, skipping
+     * both text extraction and the embedding model. A file is marked complete once all its chunks are stored.
      */
     @Override
     public String embedFile(File file) {
-        Resource resource = fileService.getResourceByFile(file);
-        return embedFileByDocumentReader(file, resource, DocumentType.OTHER);
+        UUID userId = authenticationService.getAuthenticatedUser().getId();
+        Optional<UUID> embeddedFileId = embeddingRegistry.findEmbeddedFileByHash(file.getMd5Sum());
+        if (embeddedFileId.isPresent() && embeddingRegistry.copyEmbeddings(embeddedFileId.get(), file, userId) > 0) {
+            return file.getOriginalFilename();
+        }
+
+        // Chunks are handed to the ingestion session as soon as they are cut, so neither the extracted text
+        // nor the full chunk list is ever held in memory.
+        EmbeddingIngestionService.Session session = embeddingIngestionService.open(file.getId().toString());
+        try {
+            chunk(file, metadata(file, userId), session::add);
+        } catch (RuntimeException e) {
+            session.abort();
+            throw e;
+        }
+        int stored = session.complete();
+        embeddingRegistry.markComplete(file.getId(), stored);
+        return file.getOriginalFilename();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Document> chunkFile(File file) {
+        List<Document> chunks = new ArrayList<>();
+        chunk(file, metadata(file, file.getUser().getId()), chunks::add);
+        return chunks;
     }
 
     /**
@@ -54,32 +110,82 @@ public class DocumentEmbedServiceImpl implements DocumentEmbedService {
         vectorStore.delete(expression);
     }
 
-    private String embedFileByDocumentReader(File file, Resource fileResource, DocumentType type) {
-        List<Document> documents = switch (type) {
-            case OTHER, PDF -> {
-                TikaDocumentReader tika = new TikaDocumentReader(fileResource);
-                yield tika.get();
-            }
+    private Map<String, Object> metadata(File file, UUID userId) {
+        return Map.of(
+                "id", file.getId().toString(),
+                "originalFilename", file.getOriginalFilename(),
+                "filename", file.getFilename(),
+                "md5Sum", file.getMd5Sum(),
+                "userId", userId.toString(),
+                EmbeddingVersions.METADATA_KEY, embeddingVersions.current(file.getContentType()));
+    }
+
+    private void chunk(File file, Map<String, Object> metadata, Consumer<Document> sink) {
+        Resource fileResource = fileService.getResourceByFile(file);
+        switch (documentType(file)) {
+            case OTHER, PDF -> streamFile(file, fileResource, metadata, sink);
             case STRUCTURED_PDF -> {
-                ParagraphPdfDocumentReader paragraphPdf = new ParagraphPdfDocumentReader(fileResource, PdfDocumentReaderConfig.builder()
-                        .withPageTopMargin(0)
-                        .withPageExtractedTextFormatter(ExtractedTextFormatter.builder()
-                                .withNumberOfTopTextLinesToDelete(0)
-                                .build())
-                        .withPagesPerDocument(1)
-                        .build());
-                yield paragraphPdf.get();
+                if (!chunkOutlinedPdf(file, fileResource, metadata, sink)) {
+                    streamFile(file, fileResource, metadata, sink);
+                }
             }
-        };
-        documents.forEach(document -> {
-            document.getMetadata().put("id", file.getId().toString());
-            document.getMetadata().put("originalFilename", file.getOriginalFilename());
-            document.getMetadata().put("filename", file.getFilename());
-            document.getMetadata().put("userId", authenticationService.getAuthenticatedUser().getId().toString());
-        });
-        TextSplitter splitter = new TokenTextSplitter();
-        vectorStore.accept(splitter.split(documents));
-        return file.getOriginalFilename();
+        }
+    }
+
+    /**
+     * Chunks are cut while Tika is still parsing, or while the text extracted from identical content before is read.
+     */
+    private void streamFile(File file, Resource fileResource, Map<String, Object> metadata, Consumer<Document> sink) {
+        Chunker chunker = chunkingEngine.openForStorage(file.getContentType(), metadata, sink);
+        textStore.extract(file.getMd5Sum(), fileResource, chunker);
+        chunker.finish();
+    }
+
+    /**
+     * Feeds the sections of a PDF with an outline to the chunker, each headed by its outline title.
+     * @return Whether the PDF had an outline to read sections from.
+     */
+    private boolean chunkOutlinedPdf(File file, Resource fileResource, Map<String, Object> metadata, Consumer<Document> sink) {
+        List<Document> sections;
+        try {
+            sections = new ParagraphPdfDocumentReader(fileResource, PdfDocumentReaderConfig.builder()
+                    .withPageTopMargin(0)
+                    .withPageExtractedTextFormatter(ExtractedTextFormatter.builder()
+                            .withNumberOfTopTextLinesToDelete(0)
+                            .build())
+                    .withPagesPerDocument(1)
+                    .build()).get();
+        } catch (IllegalArgumentException e) {
+            // Thrown for PDFs without an outline.
+            return false;
+        }
+
+        Chunker chunker = chunkingEngine.openForStorage(file.getContentType(), metadata, sink);
+        for (Document section : sections) {
+            if (section.getMetadata().get(PDF_SECTION_TITLE) instanceof String title) {
+                chunker.heading();
+                feed(chunker, title);
+            }
+            feed(chunker, section.getText());
+        }
+        chunker.finish();
+        return true;
+    }
+
+    private DocumentType documentType(File file) {
+        if (!PDF_CONTENT_TYPE.equalsIgnoreCase(file.getContentType())) {
+            return DocumentType.OTHER;
+        }
+        return chunkingEngine.strategyFor(file.getContentType()) instanceof ParagraphChunkingStrategy
+                ? DocumentType.STRUCTURED_PDF
+                : DocumentType.PDF;
+    }
+
+    private static void feed(Chunker chunker, String text) {
+        if (text != null) {
+            chunker.text(text.toCharArray(), 0, text.length());
+            chunker.boundary();
+        }
     }
 
     private enum DocumentType {
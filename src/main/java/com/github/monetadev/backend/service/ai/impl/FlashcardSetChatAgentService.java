@@ -1,27 +1,23 @@
 package com.github.monetadev.backend.service.ai.impl;
 
-import com.github.monetadev.backend.model.Flashcard;
-import com.github.monetadev.backend.model.FlashcardSet;
+import com.github.monetadev.backend.config.ChatModelConfig;
 import com.github.monetadev.backend.model.User;
 import com.github.monetadev.backend.service.ai.ChatAgentService;
-import com.github.monetadev.backend.service.base.FlashcardSetService;
+import com.github.monetadev.backend.service.ai.FlashcardSetContextCache;
+import com.github.monetadev.backend.service.ai.PromptTemplateRegistry;
+import com.github.monetadev.backend.service.ai.model.SchedulingChatModel;
+import com.github.monetadev.backend.service.ai.retrieval.DocumentRetrieverFactory;
 import com.github.monetadev.backend.service.security.AuthenticationService;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.messages.Message;
-import org.springframework.ai.chat.prompt.ChatOptions;
-import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.rag.advisor.RetrievalAugmentationAdvisor;
 import org.springframework.ai.rag.generation.augmentation.ContextualQueryAugmenter;
-import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Flux;
+import reactor.util.context.Context;
 
 import java.util.*;
 
@@ -32,51 +28,25 @@ import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvis
 @Transactional
 public class FlashcardSetChatAgentService implements ChatAgentService {
     private final ChatMemory chatMemory;
-    private final PromptTemplate flashcardPrompt;
-    private final PromptTemplate metadataPrompt;
-    private final PromptTemplate userPrompt;
+    private final PromptTemplateRegistry promptTemplates;
     private final ChatClient chatClient;
     private final AuthenticationService authenticationService;
-    private final FlashcardSetService flashcardSetService;
+    private final FlashcardSetContextCache setContextCache;
+    private final DocumentRetrieverFactory retrieverFactory;
 
     @Autowired
-    public FlashcardSetChatAgentService(ChatClient.Builder chatClientBuilder,
-                                        VectorStore vectorStore,
+    public FlashcardSetChatAgentService(@Qualifier(ChatModelConfig.CHAT_CLIENT) ChatClient chatClient,
+                                        DocumentRetrieverFactory retrieverFactory,
                                         ChatMemory chatMemory,
                                         AuthenticationService authenticationService,
-                                        FlashcardSetService flashcardSetService,
-                                        @Value("classpath:ai/set/agent/system.st") Resource systemPrompt,
-                                        @Value("classpath:ai/set/agent/flashcard.st") Resource flashcardPrompt,
-                                        @Value("classpath:ai/set/agent/metadata.st") Resource metadataPrompt,
-                                        @Value("classpath:ai/set/agent/user.st") Resource userPrompt) {
+                                        FlashcardSetContextCache setContextCache,
+                                        PromptTemplateRegistry promptTemplates) {
+        this.chatClient = chatClient;
+        this.retrieverFactory = retrieverFactory;
         this.chatMemory = chatMemory;
         this.authenticationService = authenticationService;
-        this.flashcardSetService = flashcardSetService;
-
-        this.flashcardPrompt = new PromptTemplate(flashcardPrompt);
-        this.metadataPrompt = new PromptTemplate(metadataPrompt);
-        this.userPrompt = new PromptTemplate(userPrompt);
-
-
-        this.chatClient = chatClientBuilder
-                .defaultSystem(systemPrompt)
-                .defaultOptions(ChatOptions.builder()
-                        .temperature(0.0)
-                        .topP(0.8)
-                        .build())
-                .defaultAdvisors(
-                        new MessageChatMemoryAdvisor(chatMemory),
-                        RetrievalAugmentationAdvisor.builder()
-                                .documentRetriever(VectorStoreDocumentRetriever.builder() // TODO: Add filtering.
-                                        .vectorStore(vectorStore)
-                                        .similarityThreshold(0.6)
-                                        .topK(6)
-                                        .build())
-                                .queryAugmenter(ContextualQueryAugmenter.builder()
-                                        .allowEmptyContext(true)
-                                        .build())
-                                .build()
-                ).build();
+        this.setContextCache = setContextCache;
+        this.promptTemplates = promptTemplates;
     }
 
     /**
@@ -84,51 +54,50 @@ public class FlashcardSetChatAgentService implements ChatAgentService {
      */
     @Override
     public Flux<String> chat(UUID conversationId, UUID setId, String message) {
+        User user = authenticationService.getAuthenticatedUser();
         if (chatMemory.get(conversationId.toString(), 1).isEmpty()) {
-            return initialChat(conversationId, setId, message);
+            return initialChat(user, conversationId, setId, message);
         }
-        return sendMessage(conversationId, message);
+        return sendMessage(user, conversationId, message);
     }
 
-    private Flux<String> initialChat(UUID conversationId, UUID setId, String message) {
-        User user = authenticationService.getAuthenticatedUser();
-        FlashcardSet flashcardSet = flashcardSetService.findFlashcardSetById(setId);
+    private Flux<String> initialChat(User user, UUID conversationId, UUID setId, String message) {
+        FlashcardSetContextCache.FlashcardSetContext setContext = setContextCache.getContext(setId);
         // Metadata
-        Message metadataMessage = metadataPrompt.createMessage(Map.of(
+        String metadata = promptTemplates.render("set/agent/metadata.st", Map.of(
                 "username", user.getUsername(),
                 "first_name", user.getFirstName(),
-                "title", flashcardSet.getTitle(),
-                "description", flashcardSet.getDescription()
+                "title", setContext.title(),
+                "description", setContext.description()
         ));
 
-        // Flashcard content
-        List<String> formattedFlashcards = new ArrayList<>();
-        for (Flashcard flashcard : flashcardSet.getFlashcards()) {
-            Map<String, Object> flashcardMap = Map.of(
-                    "position", flashcard.getPosition().toString(),
-                    "term", flashcard.getTerm(),
-                    "definition", flashcard.getDefinition()
-            );
-            formattedFlashcards.add(flashcardPrompt.render(flashcardMap));
-        }
         // User message
-        Message userMessage = userPrompt.createMessage(Map.of(
-                "metadata", metadataMessage.getText(),
-                "flashcard", String.join(System.lineSeparator(), formattedFlashcards),
+        String userMessage = promptTemplates.render("set/agent/user.st", Map.of(
+                "metadata", metadata,
+                "flashcard", setContext.flashcards(),
                 "message", message
         ));
 
-        return sendMessage(conversationId, userMessage.getText());
+        return sendMessage(user, conversationId, userMessage);
     }
 
-    private Flux<String> sendMessage(UUID conversationId, String message) {
+    private Flux<String> sendMessage(User user, UUID conversationId, String message) {
         return chatClient.prompt()
                 .user(message)
+                // Retrieves only from the documents of the user.
+                .advisors(RetrievalAugmentationAdvisor.builder()
+                        .documentRetriever(retrieverFactory.create(user.getId(), 6, 0.6))
+                        .queryAugmenter(ContextualQueryAugmenter.builder()
+                                .allowEmptyContext(true)
+                                .build())
+                        .build())
                 .advisors(
                         a -> a
                                 .param(CHAT_MEMORY_CONVERSATION_ID_KEY, conversationId.toString())
                                 .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 100)
                 )
-                .stream().content();
+                .stream().content()
+                // The stream is subscribed outside the request thread, name the user for the scheduler.
+                .contextWrite(Context.of(SchedulingChatModel.USER_KEY, user.getId().toString()));
     }
 }
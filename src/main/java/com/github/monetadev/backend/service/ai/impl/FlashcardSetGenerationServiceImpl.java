@@ -1,225 +1,178 @@
 package com.github.monetadev.backend.service.ai.impl;
 
+import com.github.monetadev.backend.config.ChatModelConfig;
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.graphql.type.ai.job.GenerationStage;
 import com.github.monetadev.backend.graphql.type.ai.set.FlashcardGenOptions;
+import com.github.monetadev.backend.graphql.type.ai.set.GeneratedFlashcard;
 import com.github.monetadev.backend.graphql.type.ai.set.GeneratedFlashcardSet;
+import com.github.monetadev.backend.service.ai.ContextPacker;
+import com.github.monetadev.backend.service.ai.DocumentRewriteService;
+import com.github.monetadev.backend.service.ai.FlashcardSetGenerationCache;
 import com.github.monetadev.backend.service.ai.FlashcardSetGenerationService;
+import com.github.monetadev.backend.service.ai.GenerationProgressListener;
+import com.github.monetadev.backend.service.ai.PromptTemplateRegistry;
+import com.github.monetadev.backend.service.ai.model.SchedulingChatModel;
+import com.github.monetadev.backend.service.ai.chunking.ChunkingEngine;
+import com.github.monetadev.backend.service.ai.parser.IncrementalFlashcardParser;
+import com.github.monetadev.backend.service.ai.reader.Chunker;
+import com.github.monetadev.backend.service.ai.reader.ExtractedTextStore;
+import com.github.monetadev.backend.service.ai.retrieval.DocumentRetrieverFactory;
+import com.github.monetadev.backend.service.file.PersistenceService;
 import com.github.monetadev.backend.service.security.AuthenticationService;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.model.ChatModel;
-import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.openai.OpenAiChatOptions;
-import org.springframework.ai.openai.api.ResponseFormat;
 import org.springframework.ai.rag.Query;
 import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
-import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
-import org.springframework.ai.reader.tika.TikaDocumentReader;
-import org.springframework.ai.template.st.StTemplateRenderer;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
-import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.UUID;
+import java.util.concurrent.Callable;
 
 @Service
 public class FlashcardSetGenerationServiceImpl implements FlashcardSetGenerationService {
     // AI dependencies.
-    private final ChatClient.Builder chatClientBuilder;
-    private final VectorStore vectorStore;
+    private final ChatClient rewriteChatClient;
+    private final ChatClient generationChatClient;
+    private final DocumentRewriteService documentRewriteService;
+    private final DocumentRetrieverFactory retrieverFactory;
     private final AuthenticationService authenticationService;
-
-    // Vector prompts.
-    private final Resource vectorSystemPrompt;
-    private final Resource vectorRewritePrompt;
-
-    // Document prompts.
-    private final Resource documentRewritePrompt;
-    private final Resource documentSystemPrompt;
-
-    private final static String GENERATED_JSON_SCHEMA = """
-            {
-               "type": "object",
-               "properties": {
-                 "title": {
-                   "type": "string",
-                   "description": "The title of the flashcard set"
-                 },
-                 "description": {
-                   "type": "string",
-                   "description": "A description of the flashcard set's content"
-                 },
-                 "generatedFlashcards": {
-                   "type": "array",
-                   "items": {
-                     "type": "object",
-                     "properties": {
-                       "term": {
-                         "type": "string",
-                         "description": "The term, typically brief/one word."
-                       },
-                       "definition": {
-                         "type": "string",
-                         "description": "The explanation, typically verbose."
-                       },
-                       "position": {
-                         "type": "integer",
-                         "description": "The position in sequence"
-                       }
-                     },
-                     "required": ["term", "definition", "position"],
-                     "additionalProperties": false
-                   }
-                 }
-               },
-               "required": ["title", "description", "generatedFlashcards"],
-               "additionalProperties": false
-             }
-            """;
-    private final ChatModel chatModel;
-
-    public FlashcardSetGenerationServiceImpl(ChatClient.Builder chatClientBuilder,
-                                             PgVectorStore vectorStore,
+    private final FlashcardSetGenerationCache generationCache;
+    private final ExtractedTextStore textStore;
+    private final PersistenceService persistenceService;
+    private final ChunkingEngine chunkingEngine;
+
+    private final PromptTemplateRegistry promptTemplates;
+    private final ContextPacker contextPacker;
+    private final AiProperties.ContextPacking packing;
+
+    public FlashcardSetGenerationServiceImpl(@Qualifier(ChatModelConfig.REWRITE_CHAT_CLIENT) ChatClient rewriteChatClient,
+                                             @Qualifier(ChatModelConfig.SET_GENERATION_CHAT_CLIENT) ChatClient generationChatClient,
+                                             DocumentRewriteService documentRewriteService,
+                                             DocumentRetrieverFactory retrieverFactory,
                                              AuthenticationService authenticationService,
-                                             @Value("classpath:ai/set/vector/system.st") Resource vectorSystemPrompt,
-                                             @Value("classpath:ai/set/vector/rewrite.st") Resource vectorRewritePrompt,
-                                             @Value("classpath:ai/set/document/rewrite.st") Resource documentRewritePrompt,
-                                             @Value("classpath:ai/set/document/system.st") Resource documentSystemPrompt, @Qualifier("openAiChatModel") ChatModel chatModel) {
-        this.chatClientBuilder = chatClientBuilder;
-        this.vectorStore = vectorStore;
+                                             FlashcardSetGenerationCache generationCache,
+                                             ExtractedTextStore textStore,
+                                             PersistenceService persistenceService,
+                                             ChunkingEngine chunkingEngine,
+                                             PromptTemplateRegistry promptTemplates,
+                                             ContextPacker contextPacker,
+                                             AiProperties aiProperties) {
+        this.rewriteChatClient = rewriteChatClient;
+        this.generationChatClient = generationChatClient;
+        this.documentRewriteService = documentRewriteService;
+        this.retrieverFactory = retrieverFactory;
         this.authenticationService = authenticationService;
-
-        this.vectorSystemPrompt = vectorSystemPrompt;
-        this.vectorRewritePrompt = vectorRewritePrompt;
-
-        this.documentRewritePrompt = documentRewritePrompt;
-        this.documentSystemPrompt = documentSystemPrompt;
-        this.chatModel = chatModel;
+        this.generationCache = generationCache;
+        this.textStore = textStore;
+        this.persistenceService = persistenceService;
+        this.chunkingEngine = chunkingEngine;
+        this.promptTemplates = promptTemplates;
+        this.contextPacker = contextPacker;
+        this.packing = aiProperties.getContextPacking();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public GeneratedFlashcardSet generateFlashcardSet(FlashcardGenOptions options) {
+    public GeneratedFlashcardSet generateFlashcardSet(FlashcardGenOptions options, GenerationProgressListener listener) {
+        UUID userId = authenticationService.getAuthenticatedUser().getId();
         if (options.getReferenceFile() == null) {
-            return generateVectorSupportedFlashcardSet(options);
+            return generationCache.getOrGenerate(
+                    userId,
+                    options,
+                    () -> generate(prepareVectorSupportedGeneration(options, userId, listener), listener));
         }
-        return generateDocumentSupportedFlashcardSet(options);
+        return generate(prepareDocumentSupportedGeneration(options, listener), listener);
     }
 
-    private GeneratedFlashcardSet generateDocumentSupportedFlashcardSet(FlashcardGenOptions options) {
-        PromptTemplate rewriteSystemPrompt = PromptTemplate.builder()
-                .renderer(StTemplateRenderer.builder().startDelimiterToken('¶').endDelimiterToken('¶').build())
-                .resource(documentRewritePrompt)
-                .variables(Map.of(
-                        "type", options.getGenerationType()
-                ))
-                .build();
-        PromptTemplate systemPrompt = PromptTemplate.builder()
-                .renderer(StTemplateRenderer.builder().startDelimiterToken('¶').endDelimiterToken('¶').build())
-                .resource(documentSystemPrompt)
-                .variables(Map.of(
-                        "k", options.getKQuestions(),
-                        "type", options.getGenerationType()
-                ))
-                .build();
-        PromptTemplate userRewritePrompt = PromptTemplate.builder()
-                .renderer(StTemplateRenderer.builder().startDelimiterToken('¶').endDelimiterToken('¶').build())
-                .template("|#!#|MONETADEV|#!#|¶query¶|#!#|MONETADEV|#!#|¶document¶")
-                .build();
-
-        ChatClient chatClient = chatClientBuilder
-                .defaultSystem(rewriteSystemPrompt.render())
-                .defaultOptions(OpenAiChatOptions.builder()
-                        .temperature(0.5)
-                        .topP(0.45)
-                        .build())
-                .build()
-                .mutate().build();
-
-        List<Document> extractedDocuments = new TikaDocumentReader(
-                options.getReferenceFile().getResource()).get();
-        extractedDocuments = TokenTextSplitter.builder()
-                .withChunkSize(1024)
-                .withMaxNumChunks(128)
-                .withKeepSeparator(true)
-                .withMinChunkSizeChars(32)
-                .build()
-                .apply(extractedDocuments);
-        extractedDocuments.forEach(document -> System.out.println(document.getFormattedContent()));
-
-        String documents = chatClient
-                .prompt(rewriteSystemPrompt.render())
-                .options(OpenAiChatOptions.builder()
-                        .model("gpt-4.1-nano")
-                        .temperature(0.0)
-                        .topP(0.4)
-                        .build())
-                .user(userRewritePrompt.render(Map.of(
-                        "query", options.getQuery(),
-                        "document", extractedDocuments.stream()
-                                .map(Document::getFormattedContent)
-                                .collect(Collectors.joining("\n---\n"))
-                )))
-                .call()
-                .content();
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Flux<GeneratedFlashcard> streamFlashcardSet(FlashcardGenOptions options) {
+        // Resolved up front. Preparation carries the caller's security context along, the generation stream
+        // is subscribed elsewhere and names the user explicitly.
+        UUID userId = authenticationService.getAuthenticatedUser().getId();
+        Callable<GenerationPrompt> preparation = () -> options.getReferenceFile() == null
+                ? prepareVectorSupportedGeneration(options, userId, GenerationProgressListener.NONE)
+                : prepareDocumentSupportedGeneration(options, GenerationProgressListener.NONE);
+        return Mono.fromCallable(DelegatingSecurityContextCallable.create(preparation, SecurityContextHolder.getContext()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(prompt -> {
+                    IncrementalFlashcardParser parser = new IncrementalFlashcardParser();
+                    return generationChatClient
+                            .prompt()
+                            .system(prompt.system())
+                            .user(prompt.user())
+                            .stream()
+                            .content()
+                            .concatMapIterable(parser::feed)
+                            .concatWith(Mono.<GeneratedFlashcard>fromRunnable(parser::finish));
+                })
+                .contextWrite(Context.of(SchedulingChatModel.USER_KEY, userId.toString()));
+    }
 
-        return chatClient
-                .prompt(systemPrompt.render())
-                .options(OpenAiChatOptions.builder()
-                        .responseFormat(ResponseFormat.builder()
-                                .type(ResponseFormat.Type.JSON_SCHEMA)
-                                .jsonSchema(GENERATED_JSON_SCHEMA)
-                                .build())
-                        .build())
-                .user(userRewritePrompt.render(Map.of(
-                        "query", options.getQuery(),
-                        "document", documents
-                )))
+    private GeneratedFlashcardSet generate(GenerationPrompt prompt, GenerationProgressListener listener) {
+        listener.onStage(GenerationStage.GENERATING);
+        return generationChatClient
+                .prompt()
+                .system(prompt.system())
+                .user(prompt.user())
                 .call()
                 .entity(GeneratedFlashcardSet.class);
     }
 
-    private GeneratedFlashcardSet generateVectorSupportedFlashcardSet(FlashcardGenOptions options) {
-        PromptTemplate rewriteSystemPrompt = PromptTemplate.builder()
-                .renderer(StTemplateRenderer.builder().startDelimiterToken('¶').endDelimiterToken('¶').build())
-                .resource(vectorRewritePrompt)
-                .variables(Map.of(
-                        "k", options.getKQuestions(),
-                        "type", options.getGenerationType()
-                ))
-                .build();
-        PromptTemplate systemPrompt = PromptTemplate.builder()
-                .renderer(StTemplateRenderer.builder().startDelimiterToken('¶').endDelimiterToken('¶').build())
-                .resource(vectorSystemPrompt)
-                .variables(Map.of(
-                        "k", options.getKQuestions(),
-                        "type", options.getGenerationType()
-                ))
-                .build();
-        PromptTemplate userRewritePrompt = PromptTemplate.builder()
-                .renderer(StTemplateRenderer.builder().startDelimiterToken('¶').endDelimiterToken('¶').build())
-                .template("|#!#|MONETADEV|#!#|¶query¶|#!#|MONETADEV|#!#|¶document¶")
-                .build();
-
-        ChatClient chatClient = chatClientBuilder
-                .defaultSystem(rewriteSystemPrompt.render())
-                .defaultOptions(OpenAiChatOptions.builder()
-                        .temperature(0.7)
-                        .topP(0.85)
-                        .build())
-                .build()
-                .mutate().build();
+    private GenerationPrompt prepareDocumentSupportedGeneration(FlashcardGenOptions options, GenerationProgressListener listener) {
+        String systemPrompt = promptTemplates.render("set/document/system.st", Map.of(
+                "k", options.getKQuestions(),
+                "type", options.getGenerationType()
+        ));
+
+        listener.onStage(GenerationStage.RETRIEVING);
+        List<Document> extractedDocuments = new ArrayList<>();
+        Chunker chunker = chunkingEngine.openForReference(
+                options.getReferenceFile().getContentType(), Map.of(), extractedDocuments::add);
+        // Text extracted from identical content before is read from the store instead of parsing the file again.
+        textStore.extract(persistenceService.calculateHash(options.getReferenceFile()),
+                options.getReferenceFile().getResource(), chunker);
+        chunker.finish();
+
+        listener.onStage(GenerationStage.REWRITING);
+        String documents = documentRewriteService.rewrite(options, extractedDocuments);
+
+        return new GenerationPrompt(systemPrompt, promptTemplates.render("set/user.st", Map.of(
+                "query", options.getQuery(),
+                "document", documents
+        )));
+    }
 
-        String retrieveQuery = chatClient
+    private GenerationPrompt prepareVectorSupportedGeneration(FlashcardGenOptions options, UUID userId, GenerationProgressListener listener) {
+        String rewriteSystemPrompt = promptTemplates.render("set/vector/rewrite.st", Map.of(
+                "k", options.getKQuestions(),
+                "type", options.getGenerationType()
+        ));
+        String systemPrompt = promptTemplates.render("set/vector/system.st", Map.of(
+                "k", options.getKQuestions(),
+                "type", options.getGenerationType()
+        ));
+
+        listener.onStage(GenerationStage.REWRITING);
+        String retrieveQuery = rewriteChatClient
                 .prompt()
+                .system(rewriteSystemPrompt)
                 .options(OpenAiChatOptions.builder()
                         .model("gpt-4.1")
                         .temperature(0.3)
@@ -230,30 +183,17 @@ public class FlashcardSetGenerationServiceImpl implements FlashcardSetGeneration
                 .content();
         assert (retrieveQuery != null);
 
-        DocumentRetriever retriever = VectorStoreDocumentRetriever.builder()
-                .vectorStore(vectorStore)
-                .similarityThreshold(.75)
-                .topK(8)
-                .filterExpression(new FilterExpressionBuilder()
-                        .eq("userId", authenticationService.getAuthenticatedUser().getId().toString())
-                        .build())
-                .build();
+        listener.onStage(GenerationStage.RETRIEVING);
+        DocumentRetriever retriever = retrieverFactory.create(userId, 12, .75);
 
         List<Document> similarContent = retriever.retrieve(new Query(retrieveQuery));
 
-        return chatClient
-                .prompt(systemPrompt.render())
-                .options(OpenAiChatOptions.builder()
-                        .responseFormat(ResponseFormat.builder()
-                                .type(ResponseFormat.Type.JSON_SCHEMA)
-                                .jsonSchema(GENERATED_JSON_SCHEMA)
-                                .build())
-                        .build())
-                .user(userRewritePrompt.render(Map.of(
-                        "query", options.getQuery(),
-                        "document", similarContent.stream()
-                )))
-                .call()
-                .entity(GeneratedFlashcardSet.class);
+        return new GenerationPrompt(systemPrompt, promptTemplates.render("set/user.st", Map.of(
+                "query", options.getQuery(),
+                "document", contextPacker.pack(similarContent, packing.getSetGenerationTokens())
+        )));
+    }
+
+    private record GenerationPrompt(String system, String user) {
     }
 }
@@ -0,0 +1,220 @@
+package com.github.monetadev.backend.service.ai.impl;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.exception.DocumentUploadException;
+import com.github.monetadev.backend.exception.GenerationJobNotFoundException;
+import com.github.monetadev.backend.exception.GenerationJobRejectedException;
+import com.github.monetadev.backend.graphql.type.ai.job.GenerationJob;
+import com.github.monetadev.backend.graphql.type.ai.job.GenerationJobStatus;
+import com.github.monetadev.backend.graphql.type.ai.job.GenerationJobType;
+import com.github.monetadev.backend.graphql.type.ai.job.GenerationStage;
+import com.github.monetadev.backend.graphql.type.ai.set.FlashcardGenOptions;
+import com.github.monetadev.backend.graphql.type.ai.set.GeneratedFlashcardSet;
+import com.github.monetadev.backend.graphql.type.file.InMemoryMultipartFile;
+import com.github.monetadev.backend.graphql.type.input.quiz.QuizGenOptions;
+import com.github.monetadev.backend.model.Quiz;
+import com.github.monetadev.backend.service.ai.FlashcardSetGenerationService;
+import com.github.monetadev.backend.service.ai.GenerationJobService;
+import com.github.monetadev.backend.service.ai.GenerationProgressListener;
+import com.github.monetadev.backend.service.ai.QuizGenerationService;
+import com.github.monetadev.backend.service.security.AuthenticationService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.UnaryOperator;
+
+@Service
+public class GenerationJobServiceImpl implements GenerationJobService {
+    private final Map<UUID, JobHandle> jobs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor threadPool;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService evictionScheduler =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("generation-job-eviction-"));
+    private final AiProperties aiProperties;
+    private final AuthenticationService authenticationService;
+    private final QuizGenerationService quizGenerationService;
+    private final FlashcardSetGenerationService flashcardSetGenerationService;
+
+    public GenerationJobServiceImpl(AiProperties aiProperties,
+                                    AuthenticationService authenticationService,
+                                    QuizGenerationService quizGenerationService,
+                                    FlashcardSetGenerationService flashcardSetGenerationService) {
+        this.aiProperties = aiProperties;
+        this.authenticationService = authenticationService;
+        this.quizGenerationService = quizGenerationService;
+        this.flashcardSetGenerationService = flashcardSetGenerationService;
+
+        AiProperties.Job job = aiProperties.getJob();
+        this.threadPool = new ThreadPoolExecutor(
+                job.getCorePoolSize(),
+                Math.max(job.getCorePoolSize(), job.getMaxPoolSize()),
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(job.getQueueCapacity()),
+                new CustomizableThreadFactory("generation-job-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        // Jobs run as the submitting user, so the security context must follow the task.
+        this.executor = new DelegatingSecurityContextExecutorService(threadPool);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GenerationJob submitQuizGeneration(QuizGenOptions options) {
+        JobHandle handle = register(GenerationJobType.QUIZ);
+        dispatch(handle, () -> {
+            Quiz quiz = quizGenerationService.generateQuiz(options, handle);
+            handle.update(job -> job.status(GenerationJobStatus.COMPLETED).quiz(quiz));
+        });
+        return handle.snapshot();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GenerationJob submitFlashcardSetGeneration(FlashcardGenOptions options) {
+        try {
+            // The multipart upload is released when the request completes, detach it first.
+            options.setReferenceFile(InMemoryMultipartFile.copyOf(options.getReferenceFile()));
+        } catch (IOException e) {
+            throw new DocumentUploadException("Could not read reference file");
+        }
+
+        JobHandle handle = register(GenerationJobType.FLASHCARD_SET);
+        dispatch(handle, () -> {
+            GeneratedFlashcardSet flashcardSet = flashcardSetGenerationService.generateFlashcardSet(options, handle);
+            handle.update(job -> job.status(GenerationJobStatus.COMPLETED).flashcardSet(flashcardSet));
+        });
+        return handle.snapshot();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GenerationJob findJobById(UUID id) {
+        return findOwnedJob(id).snapshot();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Flux<GenerationJob> subscribeToJob(UUID id) {
+        return findOwnedJob(id).sink.asFlux();
+    }
+
+    /**
+     * Evicts finished jobs past their retention periodically too, so that an idle node does not keep them, and
+     * the quizzes and sets they hold, until the next submission.
+     */
+    @PostConstruct
+    public void initialize() {
+        long periodMillis = Math.max(1000, aiProperties.getJob().getRetention().toMillis() / 2);
+        evictionScheduler.scheduleWithFixedDelay(this::evictExpiredJobs, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evictionScheduler.shutdown();
+        threadPool.shutdown();
+    }
+
+    private JobHandle findOwnedJob(UUID id) {
+        UUID userId = authenticationService.getAuthenticatedUser().getId();
+        JobHandle handle = jobs.get(id);
+        if (handle == null || !handle.snapshot().getOwnerId().equals(userId)) {
+            throw new GenerationJobNotFoundException("Generation job not found with ID: " + id);
+        }
+        return handle;
+    }
+
+    private JobHandle register(GenerationJobType type) {
+        evictExpiredJobs();
+        OffsetDateTime now = OffsetDateTime.now();
+        JobHandle handle = new JobHandle(GenerationJob.builder()
+                .id(UUID.randomUUID())
+                .ownerId(authenticationService.getAuthenticatedUser().getId())
+                .type(type)
+                .status(GenerationJobStatus.QUEUED)
+                .stage(GenerationStage.QUEUED)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        jobs.put(handle.snapshot().getId(), handle);
+        return handle;
+    }
+
+    private void dispatch(JobHandle handle, Runnable work) {
+        try {
+            executor.execute(() -> {
+                handle.update(job -> job.status(GenerationJobStatus.RUNNING));
+                try {
+                    work.run();
+                } catch (Throwable e) {
+                    // Errors end the job as well, subscribers must always receive a terminal update.
+                    String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                    handle.update(job -> job.status(GenerationJobStatus.FAILED).error(error));
+                    if (e instanceof Error fatal) {
+                        throw fatal;
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            jobs.remove(handle.snapshot().getId());
+            throw new GenerationJobRejectedException("Too many generation jobs are queued, please try again later.");
+        }
+    }
+
+    private void evictExpiredJobs() {
+        OffsetDateTime threshold = OffsetDateTime.now().minus(aiProperties.getJob().getRetention());
+        jobs.values().removeIf(handle -> {
+            GenerationJob job = handle.snapshot();
+            return job.getStatus().isTerminal() && job.getUpdatedAt().isBefore(threshold);
+        });
+    }
+
+    private static final class JobHandle implements GenerationProgressListener {
+        private final Sinks.Many<GenerationJob> sink = Sinks.many().replay().latest();
+        private volatile GenerationJob current;
+
+        private JobHandle(GenerationJob initial) {
+            this.current = initial;
+            sink.tryEmitNext(initial);
+        }
+
+        private GenerationJob snapshot() {
+            return current;
+        }
+
+        @Override
+        public void onStage(GenerationStage stage) {
+            update(job -> job.stage(stage));
+        }
+
+        // Serialized so that subscribers observe snapshots in the order they were produced.
+        private synchronized void update(UnaryOperator<GenerationJob.GenerationJobBuilder> mutation) {
+            if (current.getStatus().isTerminal()) {
+                return;
+            }
+            current = mutation.apply(current.toBuilder())
+                    .updatedAt(OffsetDateTime.now())
+                    .build();
+            sink.tryEmitNext(current);
+            if (current.getStatus().isTerminal()) {
+                sink.tryEmitComplete();
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.monetadev.backend.service.ai.impl;
+
+import com.github.monetadev.backend.config.VectorStoreConfig;
+import com.github.monetadev.backend.model.File;
+import com.github.monetadev.backend.service.ai.EmbeddingRegistry;
+import com.github.monetadev.backend.service.ai.embedding.EmbeddingVersions;
+import com.github.monetadev.backend.service.ai.vectorstore.HnswVectorStore;
+import org.springframework.ai.document.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * {@link EmbeddingRegistry} over the chunk metadata of the {@link HnswVectorStore}.
+ */
+@Service
+@ConditionalOnProperty(name = VectorStoreConfig.TYPE_PROPERTY, havingValue = VectorStoreConfig.HNSW)
+public class HnswEmbeddingRegistry implements EmbeddingRegistry {
+    private final HnswVectorStore vectorStore;
+
+    public HnswEmbeddingRegistry(HnswVectorStore vectorStore) {
+        this.vectorStore = vectorStore;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<UUID> findEmbeddedFileByHash(String md5Sum) {
+        if (md5Sum == null) {
+            return Optional.empty();
+        }
+        return vectorStore.findMetadata(metadata -> md5Sum.equals(metadata.get("md5Sum"))
+                        && metadata.containsKey(CHUNK_COUNT_METADATA_KEY))
+                .map(metadata -> UUID.fromString(metadata.get("id").toString()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int copyEmbeddings(UUID sourceFileId, File target, UUID userId) {
+        Optional<Integer> chunkCount = vectorStore.findMetadata("id", sourceFileId.toString())
+                .map(metadata -> metadata.get(CHUNK_COUNT_METADATA_KEY))
+                .map(count -> Integer.parseInt(count.toString()));
+        if (chunkCount.isEmpty()) {
+            return 0;
+        }
+        return vectorStore.copy("id", sourceFileId.toString(), chunkCount.get(), Map.of(
+                "id", target.getId().toString(),
+                "userId", userId.toString(),
+                "filename", target.getFilename(),
+                "originalFilename", target.getOriginalFilename()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int markComplete(UUID fileId, int chunkCount) {
+        return vectorStore.updateMetadata("id", fileId.toString(), Map.of(CHUNK_COUNT_METADATA_KEY, chunkCount));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<String> findEmbeddingVersion(UUID fileId) {
+        return vectorStore.findMetadata("id", fileId.toString())
+                .map(metadata -> String.valueOf(metadata.getOrDefault(EmbeddingVersions.METADATA_KEY, "")));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int replaceEmbeddings(UUID fileId, List<Document> chunks, List<float[]> embeddings) {
+        List<Document> marked = chunks.stream()
+                .map(chunk -> {
+                    Map<String, Object> metadata = new HashMap<>(chunk.getMetadata());
+                    metadata.put(CHUNK_COUNT_METADATA_KEY, chunks.size());
+                    return Document.builder().id(chunk.getId()).text(chunk.getText()).metadata(metadata).build();
+                })
+                .toList();
+        return vectorStore.replace("id", fileId.toString(), marked, embeddings);
+    }
+}
@@ -0,0 +1,261 @@
+package com.github.monetadev.backend.service.ai.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.monetadev.backend.config.prop.AiProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link ChatMemory} persisted in the {@code chat_memory_message} table.
+ * <p>
+ * Recently used conversations are kept in a bounded in-process tier, so the advisor reads the history of an
+ * active conversation without a round trip. Appends go to that tier immediately and are written to the
+ * database in batches, either when enough messages are pending or on a short interval. Each conversation
+ * is capped to the most recent messages, and conversations idle for longer than the retention are deleted.
+ * Memory use is therefore bounded by the size of the hot tier, not by the number of conversations.
+ * <p>
+ * Batches are written one at a time under a lock of their own, which is never taken while loading a conversation
+ * into the hot tier, so that loading and clearing the same conversation cannot wait on each other.
+ */
+@Slf4j
+@Service
+public class JdbcChatMemory implements ChatMemory {
+    private static final String TABLE = "chat_memory_message";
+    private static final Set<MessageType> STORED_TYPES = EnumSet.of(MessageType.USER, MessageType.ASSISTANT, MessageType.SYSTEM);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AiProperties.ChatMemory properties;
+    private final Cache<String, Conversation> hotTier;
+    private final Queue<PendingMessage> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    // Guarded by flushLock.
+    private final List<PendingMessage> failed = new ArrayList<>();
+    private final Lock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("chat-memory-"));
+
+    public JdbcChatMemory(JdbcTemplate jdbcTemplate, AiProperties aiProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = aiProperties.getChatMemory();
+        this.hotTier = Caffeine.newBuilder()
+                .maximumSize(properties.getHotConversations())
+                .expireAfterAccess(properties.getHotIdleTimeout())
+                .build();
+    }
+
+    @PostConstruct
+    public void initialize() {
+        if (properties.isInitializeSchema()) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " (" +
+                    "id BIGSERIAL PRIMARY KEY, " +
+                    "conversation_id VARCHAR(64) NOT NULL, " +
+                    "message_type VARCHAR(16) NOT NULL, " +
+                    "content TEXT NOT NULL, " +
+                    "created_at TIMESTAMPTZ NOT NULL)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + TABLE + "_conversation_idx ON " + TABLE + " (conversation_id, id)");
+        }
+        long flushMillis = properties.getFlushInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::deleteIdleConversations, 1, 60, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flush();
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        List<Message> stored = messages.stream()
+                .filter(message -> STORED_TYPES.contains(message.getMessageType()))
+                .toList();
+        if (stored.isEmpty()) {
+            return;
+        }
+        conversation(conversationId).append(stored, properties.getMaxMessages());
+
+        Instant now = Instant.now();
+        stored.forEach(message -> pending.add(new PendingMessage(conversationId, message, now)));
+        if (pendingCount.addAndGet(stored.size()) >= properties.getFlushBatchSize() && !scheduler.isShutdown()) {
+            scheduler.execute(this::flush);
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        return conversation(conversationId).last(lastN);
+    }
+
+    public List<Message> get(String conversationId) {
+        return get(conversationId, properties.getMaxMessages());
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        hotTier.invalidate(conversationId);
+        // Waits for a batch in flight, which may contain messages of the conversation, to be written first.
+        flushLock.lock();
+        try {
+            pendingCount.addAndGet(-removePending(conversationId));
+            failed.removeIf(message -> message.conversationId().equals(conversationId));
+        } finally {
+            flushLock.unlock();
+        }
+        jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE conversation_id = ?", conversationId);
+    }
+
+    private Conversation conversation(String conversationId) {
+        Conversation conversation = hotTier.getIfPresent(conversationId);
+        if (conversation != null) {
+            return conversation;
+        }
+        // Messages of an evicted conversation may still be waiting for the next batch. Written before the load,
+        // which runs inside the cache and must not wait for the flush lock.
+        flush();
+        return hotTier.get(conversationId, this::load);
+    }
+
+    private Conversation load(String conversationId) {
+        List<Message> messages = jdbcTemplate.query(
+                "SELECT message_type, content FROM (" +
+                        "SELECT id, message_type, content FROM " + TABLE + " WHERE conversation_id = ? ORDER BY id DESC LIMIT ?" +
+                        ") latest ORDER BY id",
+                (rs, rowNum) -> toMessage(MessageType.valueOf(rs.getString("message_type")), rs.getString("content")),
+                conversationId,
+                properties.getMaxMessages());
+        Conversation conversation = new Conversation();
+        conversation.append(messages, properties.getMaxMessages());
+        return conversation;
+    }
+
+    /**
+     * Writes all pending messages in a single batch, then trims the touched conversations to the cap.
+     */
+    private void flush() {
+        flushLock.lock();
+        try {
+            flushPending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushPending() {
+        List<PendingMessage> batch = new ArrayList<>(failed);
+        failed.clear();
+        for (PendingMessage message; (message = pending.poll()) != null; ) {
+            batch.add(message);
+            pendingCount.decrementAndGet();
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO " + TABLE + " (conversation_id, message_type, content, created_at) VALUES (?, ?, ?, ?)",
+                    batch,
+                    batch.size(),
+                    (ps, message) -> {
+                        ps.setString(1, message.conversationId());
+                        ps.setString(2, message.message().getMessageType().name());
+                        ps.setString(3, message.message().getText());
+                        ps.setTimestamp(4, Timestamp.from(message.createdAt()));
+                    });
+        } catch (DataAccessException e) {
+            // Keep the batch for the next attempt, but never more than a few batches' worth.
+            int overflow = batch.size() - properties.getFlushBatchSize() * 4;
+            failed.addAll(overflow > 0 ? batch.subList(overflow, batch.size()) : batch);
+            log.warn("Could not persist {} chat memory messages, retrying with the next flush", batch.size(), e);
+            return;
+        }
+
+        Set<String> touched = new LinkedHashSet<>();
+        batch.forEach(message -> touched.add(message.conversationId()));
+        try {
+            jdbcTemplate.batchUpdate(
+                    "DELETE FROM " + TABLE + " WHERE conversation_id = ? AND id <= (" +
+                            "SELECT id FROM " + TABLE + " WHERE conversation_id = ? ORDER BY id DESC OFFSET ? LIMIT 1)",
+                    touched.stream()
+                            .map(id -> new Object[]{id, id, properties.getMaxMessages()})
+                            .toList());
+        } catch (DataAccessException e) {
+            // Trimming is repeated with the next append to the conversation.
+            log.warn("Could not trim chat memory of {} conversations", touched.size(), e);
+        }
+    }
+
+    private void deleteIdleConversations() {
+        Timestamp threshold = Timestamp.from(Instant.now().minus(properties.getRetention()));
+        try {
+            jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE conversation_id IN (" +
+                    "SELECT conversation_id FROM " + TABLE + " GROUP BY conversation_id HAVING MAX(created_at) < ?)", threshold);
+        } catch (DataAccessException e) {
+            log.warn("Could not delete idle chat memory conversations", e);
+        }
+    }
+
+    private int removePending(String conversationId) {
+        int removed = 0;
+        for (Iterator<PendingMessage> iterator = pending.iterator(); iterator.hasNext(); ) {
+            if (iterator.next().conversationId().equals(conversationId)) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private static Message toMessage(MessageType type, String content) {
+        return switch (type) {
+            case USER -> new UserMessage(content);
+            case ASSISTANT -> new AssistantMessage(content);
+            case SYSTEM -> new SystemMessage(content);
+            default -> throw new IllegalStateException("Unsupported chat memory message type: " + type);
+        };
+    }
+
+    private record PendingMessage(String conversationId, Message message, Instant createdAt) {
+    }
+
+    private static final class Conversation {
+        private final Deque<Message> messages = new ArrayDeque<>();
+
+        private synchronized void append(List<Message> added, int maxMessages) {
+            messages.addAll(added);
+            while (messages.size() > maxMessages) {
+                messages.removeFirst();
+            }
+        }
+
+        private synchronized List<Message> last(int lastN) {
+            return messages.stream()
+                    .skip(Math.max(0, messages.size() - lastN))
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.monetadev.backend.service.ai.impl;
+
+import com.github.monetadev.backend.config.ChatModelConfig;
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.graphql.type.ai.set.FlashcardGenOptions;
+import com.github.monetadev.backend.service.ai.DocumentRewriteService;
+import com.github.monetadev.backend.service.ai.PromptTemplateRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Splits a reference document into token-bounded shards and condenses each shard with its own rewrite call.
+ * Shards are rewritten concurrently on virtual threads, bounded per document, and the condensed shards are
+ * joined in document order. Latency then follows the slowest shard instead of the size of the document, and
+ * no single call comes close to the context limit of the rewrite model.
+ */
+@Service
+public class MapReduceDocumentRewriteService implements DocumentRewriteService {
+    private static final String SHARD_SEPARATOR = "\n---\n";
+
+    private final ChatClient rewriteChatClient;
+    private final PromptTemplateRegistry promptTemplates;
+    private final AiProperties.DocumentRewrite properties;
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+    // Shards run as the requesting user, so their model calls are scheduled against that user.
+    private final ExecutorService executor = new DelegatingSecurityContextExecutorService(Executors.newVirtualThreadPerTaskExecutor());
+
+    public MapReduceDocumentRewriteService(@Qualifier(ChatModelConfig.REWRITE_CHAT_CLIENT) ChatClient rewriteChatClient,
+                                           PromptTemplateRegistry promptTemplates,
+                                           AiProperties aiProperties) {
+        this.rewriteChatClient = rewriteChatClient;
+        this.promptTemplates = promptTemplates;
+        this.properties = aiProperties.getDocumentRewrite();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String rewrite(FlashcardGenOptions options, List<Document> chunks) {
+        String systemPrompt = promptTemplates.render("set/document/rewrite.st", Map.of(
+                "type", options.getGenerationType()
+        ));
+        List<String> shards = properties.isMapReduce() ? shard(chunks) : List.of(join(chunks));
+        if (shards.size() == 1) {
+            return rewriteShard(systemPrompt, options.getQuery(), shards.getFirst());
+        }
+
+        Semaphore inFlight = new Semaphore(Math.max(1, properties.getMaxConcurrency()));
+        List<CompletableFuture<String>> rewrites = shards.stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> {
+                    inFlight.acquireUninterruptibly();
+                    try {
+                        return rewriteShard(systemPrompt, options.getQuery(), shard);
+                    } finally {
+                        inFlight.release();
+                    }
+                }, executor))
+                .toList();
+        try {
+            return rewrites.stream()
+                    .map(CompletableFuture::join)
+                    .filter(rewrite -> rewrite != null && !rewrite.isBlank())
+                    .collect(Collectors.joining(SHARD_SEPARATOR));
+        } catch (CompletionException e) {
+            rewrites.forEach(rewrite -> rewrite.cancel(false));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private String rewriteShard(String systemPrompt, String query, String shard) {
+        return rewriteChatClient
+                .prompt()
+                .system(systemPrompt)
+                .user(promptTemplates.render("set/user.st", Map.of(
+                        "query", query,
+                        "document", shard
+                )))
+                .call()
+                .content();
+    }
+
+    private List<String> shard(List<Document> chunks) {
+        List<String> shards = new ArrayList<>();
+        List<Document> shard = new ArrayList<>();
+        int shardTokens = 0;
+        for (Document chunk : chunks) {
+            int chunkTokens = tokenCountEstimator.estimate(chunk.getFormattedContent());
+            if (!shard.isEmpty() && shardTokens + chunkTokens > properties.getMaxShardTokens()) {
+                shards.add(join(shard));
+                shard = new ArrayList<>();
+                shardTokens = 0;
+            }
+            shard.add(chunk);
+            shardTokens += chunkTokens;
+        }
+        if (!shard.isEmpty() || shards.isEmpty()) {
+            shards.add(join(shard));
+        }
+        return shards;
+    }
+
+    private static String join(List<Document> chunks) {
+        return chunks.stream()
+                .map(Document::getFormattedContent)
+                .collect(Collectors.joining(SHARD_SEPARATOR));
+    }
+}
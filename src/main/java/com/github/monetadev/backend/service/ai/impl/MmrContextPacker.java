@@ -0,0 +1,155 @@
+package com.github.monetadev.backend.service.ai.impl;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.service.ai.ContextPacker;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Packs retrieved chunks with maximal marginal relevance. Retrieved documents carry their similarity score but
+ * not their embedding, so the similarity between two chunks is measured on their word sets instead. Chunks
+ * mostly contained in an already selected chunk, as produced by overlapping splits, are dropped outright.
+ * Token counts use the same encoder as the splitters, so the packed context never exceeds the budget.
+ */
+@Service
+public class MmrContextPacker implements ContextPacker {
+    private final AiProperties.ContextPacking properties;
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+    private final int separatorTokens;
+
+    public MmrContextPacker(AiProperties aiProperties) {
+        this.properties = aiProperties.getContextPacking();
+        this.separatorTokens = tokenCountEstimator.estimate(DOCUMENT_SEPARATOR);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Document> select(List<Document> candidates, int tokenBudget) {
+        List<Candidate> remaining = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            Document document = candidates.get(i);
+            String content = document.getFormattedContent();
+            if (content == null || content.isBlank()) {
+                continue;
+            }
+            // Without a score, fall back to the retrieval order.
+            double relevance = document.getScore() != null
+                    ? document.getScore()
+                    : 1.0 - (double) i / candidates.size();
+            remaining.add(new Candidate(document, content, words(content), relevance));
+        }
+
+        List<Candidate> selected = new ArrayList<>();
+        List<Document> packed = new ArrayList<>();
+        int usedTokens = 0;
+        while (!remaining.isEmpty() && usedTokens < tokenBudget) {
+            Candidate next = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (Iterator<Candidate> iterator = remaining.iterator(); iterator.hasNext(); ) {
+                Candidate candidate = iterator.next();
+                double maxSimilarity = 0;
+                boolean duplicate = false;
+                for (Candidate chosen : selected) {
+                    if (overlap(candidate.words(), chosen.words()) >= properties.getDuplicateOverlap()) {
+                        duplicate = true;
+                        break;
+                    }
+                    maxSimilarity = Math.max(maxSimilarity, jaccard(candidate.words(), chosen.words()));
+                }
+                if (duplicate) {
+                    iterator.remove();
+                    continue;
+                }
+                double score = properties.getLambda() * candidate.relevance() - (1 - properties.getLambda()) * maxSimilarity;
+                if (score > bestScore) {
+                    bestScore = score;
+                    next = candidate;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            remaining.remove(next);
+
+            int available = tokenBudget - usedTokens - (packed.isEmpty() ? 0 : separatorTokens);
+            int tokens = tokenCountEstimator.estimate(next.content());
+            if (tokens <= available) {
+                selected.add(next);
+                packed.add(next.document());
+                usedTokens += tokens + (packed.size() > 1 ? separatorTokens : 0);
+            } else if (packed.isEmpty() && next.document().getText() != null) {
+                // The most relevant chunk alone exceeds the budget, keep its beginning rather than nothing.
+                Document truncated = truncate(next.document(), tokens, available);
+                if (truncated != null) {
+                    selected.add(next);
+                    packed.add(truncated);
+                    usedTokens += tokenCountEstimator.estimate(truncated.getFormattedContent());
+                }
+            }
+        }
+        return packed;
+    }
+
+    private Document truncate(Document document, int tokens, int budget) {
+        String text = document.getText();
+        int overhead = tokens - tokenCountEstimator.estimate(text);
+        int textBudget = budget - overhead;
+        if (textBudget <= 0) {
+            return null;
+        }
+        Document truncated = document;
+        int estimate = tokens;
+        while (estimate > budget && !text.isEmpty()) {
+            // Shrink proportionally, with some slack as token density varies along the text.
+            int length = (int) ((long) text.length() * textBudget / (estimate - overhead) * 9 / 10);
+            text = text.substring(0, Math.max(0, Math.min(length, text.length() - 1)));
+            truncated = document.mutate().text(text).build();
+            estimate = tokenCountEstimator.estimate(truncated.getFormattedContent());
+        }
+        return text.isEmpty() ? null : truncated;
+    }
+
+    private static Set<String> words(String content) {
+        Set<String> words = new HashSet<>();
+        for (String word : content.toLowerCase(Locale.ROOT).split("\\W+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static double overlap(Set<String> candidate, Set<String> chosen) {
+        if (candidate.isEmpty()) {
+            return 1;
+        }
+        return (double) intersection(candidate, chosen) / candidate.size();
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        int intersection = intersection(a, b);
+        int union = a.size() + b.size() - intersection;
+        return union == 0 ? 1 : (double) intersection / union;
+    }
+
+    private static int intersection(Set<String> a, Set<String> b) {
+        Set<String> smaller = a.size() <= b.size() ? a : b;
+        Set<String> larger = smaller == a ? b : a;
+        int count = 0;
+        for (String word : smaller) {
+            if (larger.contains(word)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private record Candidate(Document document, String content, Set<String> words, double relevance) {
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.monetadev.backend.service.ai.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.monetadev.backend.config.VectorStoreConfig;
+import com.github.monetadev.backend.model.File;
+import com.github.monetadev.backend.service.ai.EmbeddingRegistry;
+import com.github.monetadev.backend.service.ai.embedding.EmbeddingVersions;
+import com.pgvector.PGvector;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * {@link EmbeddingRegistry} backed by the {@code md5Sum} metadata of the pgvector chunk table, so
+ * every embedded file doubles as a registry entry and no separate state has to be kept in sync.
+ */
+@Service
+@ConditionalOnProperty(name = VectorStoreConfig.TYPE_PROPERTY, havingValue = VectorStoreConfig.PGVECTOR, matchIfMissing = true)
+public class PgVectorEmbeddingRegistry implements EmbeddingRegistry {
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final String tableName;
+
+    public PgVectorEmbeddingRegistry(JdbcTemplate jdbcTemplate,
+                                     ObjectMapper objectMapper,
+                                     @Value("${spring.ai.vectorstore.pgvector.schema-name:public}") String schemaName,
+                                     @Value("${spring.ai.vectorstore.pgvector.table-name:vector_store}") String tableName) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.tableName = schemaName + "." + tableName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<UUID> findEmbeddedFileByHash(String md5Sum) {
+        if (md5Sum == null) {
+            return Optional.empty();
+        }
+        List<String> fileIds = jdbcTemplate.queryForList(
+                "SELECT metadata->>'id' FROM " + tableName + " WHERE metadata->>'md5Sum' = ? " +
+                        "AND metadata->>'" + CHUNK_COUNT_METADATA_KEY + "' IS NOT NULL LIMIT 1",
+                String.class,
+                md5Sum);
+        return fileIds.stream().findFirst().map(UUID::fromString);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * A copy that does not match the recorded number of chunks is deleted again before the transaction commits.
+     */
+    @Override
+    @Transactional
+    public int copyEmbeddings(UUID sourceFileId, File target, UUID userId) {
+        List<Integer> chunkCounts = jdbcTemplate.queryForList(
+                "SELECT (metadata->>'" + CHUNK_COUNT_METADATA_KEY + "')::int FROM " + tableName +
+                        " WHERE metadata->>'id' = ? AND metadata->>'" + CHUNK_COUNT_METADATA_KEY + "' IS NOT NULL LIMIT 1",
+                Integer.class,
+                sourceFileId.toString());
+        if (chunkCounts.isEmpty()) {
+            return 0;
+        }
+        int copied = jdbcTemplate.update(
+                "INSERT INTO " + tableName + " (id, content, metadata, embedding) " +
+                        "SELECT gen_random_uuid(), content, " +
+                        "(metadata::jsonb || jsonb_build_object('id', ?, 'userId', ?, 'filename', ?, 'originalFilename', ?))::json, " +
+                        "embedding " +
+                        "FROM " + tableName + " WHERE metadata->>'id' = ?",
+                target.getId().toString(),
+                userId.toString(),
+                target.getFilename(),
+                target.getOriginalFilename(),
+                sourceFileId.toString());
+        if (copied != chunkCounts.get(0)) {
+            jdbcTemplate.update("DELETE FROM " + tableName + " WHERE metadata->>'id' = ?", target.getId().toString());
+            return 0;
+        }
+        return copied;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int markComplete(UUID fileId, int chunkCount) {
+        return jdbcTemplate.update(
+                "UPDATE " + tableName + " SET metadata = (metadata::jsonb || jsonb_build_object('" +
+                        CHUNK_COUNT_METADATA_KEY + "', ?::int))::json WHERE metadata->>'id' = ?",
+                chunkCount,
+                fileId.toString());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<String> findEmbeddingVersion(UUID fileId) {
+        List<String> versions = jdbcTemplate.queryForList(
+                "SELECT coalesce(metadata->>'" + EmbeddingVersions.METADATA_KEY + "', '') FROM " + tableName +
+                        " WHERE metadata->>'id' = ? LIMIT 1",
+                String.class,
+                fileId.toString());
+        return versions.stream().findFirst();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Old and new chunks are swapped in one transaction, so concurrent searches keep reading the old chunks
+     * until it commits.
+     */
+    @Override
+    @Transactional
+    public int replaceEmbeddings(UUID fileId, List<Document> chunks, List<float[]> embeddings) {
+        int deleted = jdbcTemplate.update("DELETE FROM " + tableName + " WHERE metadata->>'id' = ?", fileId.toString());
+        if (deleted == 0) {
+            return 0;
+        }
+        List<Object[]> rows = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            Document chunk = chunks.get(i);
+            rows.add(new Object[]{UUID.fromString(chunk.getId()), chunk.getText(), toJson(chunk, chunks.size()), new PGvector(embeddings.get(i))});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO " + tableName + " (id, content, metadata, embedding) VALUES (?, ?, ?::json, ?)",
+                rows);
+        return rows.size();
+    }
+
+    private String toJson(Document chunk, int chunkCount) {
+        Map<String, Object> metadata = new HashMap<>(chunk.getMetadata());
+        metadata.put(CHUNK_COUNT_METADATA_KEY, chunkCount);
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize the metadata of chunk " + chunk.getId(), e);
+        }
+    }
+}
@@ -1,227 +1,246 @@
 package com.github.monetadev.backend.service.ai.impl;
 
+import com.github.monetadev.backend.config.ChatModelConfig;
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.graphql.type.ai.job.GenerationStage;
 import com.github.monetadev.backend.graphql.type.ai.quiz.generate.GeneratedQuiz;
+import com.github.monetadev.backend.graphql.type.ai.quiz.grade.GradedQuestion;
 import com.github.monetadev.backend.graphql.type.ai.quiz.grade.GradedQuiz;
 import com.github.monetadev.backend.graphql.type.input.quiz.*;
 import com.github.monetadev.backend.model.FlashcardSet;
+import com.github.monetadev.backend.model.Option;
+import com.github.monetadev.backend.model.Question;
 import com.github.monetadev.backend.model.Quiz;
 import com.github.monetadev.backend.model.QuizAttempt;
 import com.github.monetadev.backend.repository.QuizRepository;
+import com.github.monetadev.backend.service.ai.ContextPacker;
+import com.github.monetadev.backend.service.ai.GenerationProgressListener;
+import com.github.monetadev.backend.service.ai.PromptTemplateRegistry;
 import com.github.monetadev.backend.service.ai.QuizGenerationService;
+import com.github.monetadev.backend.service.ai.SingleFlight;
+import com.github.monetadev.backend.service.ai.embedding.FlashcardSetEmbeddings;
+import com.github.monetadev.backend.service.ai.grading.ObjectiveQuestionGrader;
+import com.github.monetadev.backend.service.ai.retrieval.DocumentRetrieverFactory;
 import com.github.monetadev.backend.service.base.FlashcardSetService;
 import com.github.monetadev.backend.service.base.QuizAttemptService;
 import com.github.monetadev.backend.service.base.QuizService;
 import com.github.monetadev.backend.service.security.AuthenticationService;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.openai.OpenAiChatOptions;
-import org.springframework.ai.openai.api.ResponseFormat;
-import org.springframework.ai.rag.Query;
 import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
-import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
-import org.springframework.ai.template.st.StTemplateRenderer;
-import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.nio.charset.Charset;
-import java.util.List;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 public class QuizGenerationServiceImpl implements QuizGenerationService {
-    private final ChatClient.Builder chatClientBuilder;
-    private final VectorStore vectorStore;
-
-    private final String GENERATED_QUIZ_SCHEMA;
-    private final String GRADED_QUIZ_SCHEMA;
+    private final ChatClient generationChatClient;
+    private final ChatClient gradingChatClient;
+    private final DocumentRetrieverFactory retrieverFactory;
+    private final FlashcardSetEmbeddings flashcardSetEmbeddings;
 
     private final AuthenticationService authenticationService;
-    private final Resource generationSystemPrompt;
-    private final Resource generationUserPrompt;
-    private final Resource gradeSystemPrompt;
-    private final Resource gradeUserPrompt;
+    private final PromptTemplateRegistry promptTemplates;
+    private final ContextPacker contextPacker;
+    private final AiProperties.ContextPacking packing;
     private final FlashcardSetService flashcardSetService;
     private final QuizService quizService;
     private final QuizRepository quizRepository;
     private final QuizAttemptService quizAttemptService;
+    private final SingleFlight<String, Quiz> generations = new SingleFlight<>();
 
-    public QuizGenerationServiceImpl(ChatClient.Builder chatClientBuilder,
-                                     VectorStore vectorStore,
+    public QuizGenerationServiceImpl(@Qualifier(ChatModelConfig.QUIZ_GENERATION_CHAT_CLIENT) ChatClient generationChatClient,
+                                     @Qualifier(ChatModelConfig.GRADING_CHAT_CLIENT) ChatClient gradingChatClient,
+                                     DocumentRetrieverFactory retrieverFactory,
+                                     FlashcardSetEmbeddings flashcardSetEmbeddings,
                                      AuthenticationService authenticationService,
-                                     @Value("classpath:ai/quiz/gen/schema.json") Resource generatedQuizSchema,
-                                     @Value("classpath:ai/quiz/gen/system.st") Resource generationSystemPrompt,
-                                     @Value("classpath:ai/quiz/gen/user.st") Resource generationUserPrompt,
-                                     @Value("classpath:ai/quiz/grade/schema.json") Resource gradedQuizSchema,
-                                     @Value("classpath:ai/quiz/grade/system.st") Resource gradeSystemPrompt,
-                                     @Value("classpath:ai/quiz/grade/user.st") Resource gradeUserPrompt,
+                                     PromptTemplateRegistry promptTemplates,
+                                     ContextPacker contextPacker,
+                                     AiProperties aiProperties,
                                      FlashcardSetService flashcardSetService,
                                      QuizService quizService, QuizRepository quizRepository, QuizAttemptService quizAttemptService) {
-        this.chatClientBuilder = chatClientBuilder;
-        this.vectorStore = vectorStore;
+        this.generationChatClient = generationChatClient;
+        this.gradingChatClient = gradingChatClient;
+        this.retrieverFactory = retrieverFactory;
+        this.flashcardSetEmbeddings = flashcardSetEmbeddings;
         this.authenticationService = authenticationService;
-        this.generationSystemPrompt = generationSystemPrompt;
-        this.generationUserPrompt = generationUserPrompt;
-        this.gradeSystemPrompt = gradeSystemPrompt;
-        this.gradeUserPrompt = gradeUserPrompt;
+        this.promptTemplates = promptTemplates;
+        this.contextPacker = contextPacker;
+        this.packing = aiProperties.getContextPacking();
         this.flashcardSetService = flashcardSetService;
         this.quizService = quizService;
-
-        try {
-            GENERATED_QUIZ_SCHEMA = generatedQuizSchema.getContentAsString(Charset.defaultCharset());
-            GRADED_QUIZ_SCHEMA = gradedQuizSchema.getContentAsString(Charset.defaultCharset());
-        } catch (IOException ignored) {
-            throw new RuntimeException("Failed to load quiz schema.");
-        }
         this.quizRepository = quizRepository;
         this.quizAttemptService = quizAttemptService;
     }
 
-    public Quiz generateQuiz(QuizGenOptions options) {
-        // TODO: Update system prompt.
-        PromptTemplate systemPromptTemplate = PromptTemplate.builder()
-                .renderer(StTemplateRenderer.builder().startDelimiterToken('¶').endDelimiterToken('¶').build())
-                .resource(generationSystemPrompt)
-                .build();
-
-        PromptTemplate userMessageTemplate = PromptTemplate.builder()
-                .renderer(StTemplateRenderer.builder().startDelimiterToken('¶').endDelimiterToken('¶').build())
-                .resource(generationUserPrompt)
-                .build();
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Identical requests of the same user that arrive while one is still generating, such as a double submit or
+     * a client retry, wait for that run and receive the same persisted quiz.
+     */
+    @Override
+    public Quiz generateQuiz(QuizGenOptions options, GenerationProgressListener listener) {
+        UUID userId = authenticationService.getAuthenticatedUser().getId();
+        return generations.execute(generationKey(userId, options), listener,
+                progress -> runQuizGeneration(userId, options, progress));
+    }
 
+    private Quiz runQuizGeneration(UUID userId, QuizGenOptions options, GenerationProgressListener listener) {
+        // TODO: Update system prompt.
         FlashcardSet flashcardSet = flashcardSetService.findFlashcardSetById(options.getSetId());
-        String flashcardSetJsonString = String.format("Title: %s\nDescription: %s\nFlashcards:\n%s",
-                flashcardSet.getTitle(),
-                flashcardSet.getDescription(),
-                flashcardSet.getFlashcards().stream()
-                        .map(f -> String.format("  Position: %d, Term: %s, Definition: %s",
-                                f.getPosition(),
-                                f.getTerm(),
-                                f.getDefinition()))
-                        .collect(Collectors.joining("\n")));
-
-        String vectorQueryString = "Educational content for quiz generation related to the following set and it's details:\n" + flashcardSetJsonString;
-        System.out.println(vectorQueryString);
-        DocumentRetriever retriever = VectorStoreDocumentRetriever.builder()
-                .vectorStore(vectorStore)
-                .similarityThreshold(0.75)
-                .topK(5)
-                .filterExpression(new FilterExpressionBuilder()
-                        .eq("userId", authenticationService
-                                .getAuthenticatedUser()
-                                .getId()
-                                .toString())
-                        .build())
-                .build();
-
-        List<Document> contextDocuments = retriever.retrieve(new Query(vectorQueryString));
-        String documentsContent = contextDocuments.stream()
-                .map(Document::getFormattedContent)
-                .collect(Collectors.joining("\n---\n"));
+        DocumentRetriever retriever = retrieverFactory.create(userId, 10, 0.75);
+
+        listener.onStage(GenerationStage.RETRIEVING);
+        List<Document> contextDocuments = flashcardSetEmbeddings.retrieve(flashcardSet, retriever);
+        String documentsContent = contextPacker.pack(contextDocuments, packing.getQuizGenerationTokens());
         String questionTypesString = options.getQuestionTypes().stream()
                 .map(Enum::name)
                 .collect(Collectors.joining(", "));
-        String renderedSystemPrompt = systemPromptTemplate.render(Map.of(
+        String renderedSystemPrompt = promptTemplates.render("quiz/gen/system.st", Map.of(
                 "k", options.getKQuestions(),
                 "types", questionTypesString
         ));
-        String renderedUserMessage = userMessageTemplate.render(Map.of(
+        String renderedUserMessage = promptTemplates.render("quiz/gen/user.st", Map.of(
                 "documents", documentsContent
         ));
 
-        ChatClient chatClient = chatClientBuilder.build();
-        GeneratedQuiz generatedQuiz = chatClient
+        listener.onStage(GenerationStage.GENERATING);
+        GeneratedQuiz generatedQuiz = generationChatClient
                 .prompt()
                 .system(renderedSystemPrompt)
                 .user(renderedUserMessage)
-                .options(OpenAiChatOptions.builder()
-                        .model("gpt-4.1")
-                        .temperature(0.3)
-                        .responseFormat(ResponseFormat.builder()
-                                .type(ResponseFormat.Type.JSON_SCHEMA)
-                                .jsonSchema(GENERATED_QUIZ_SCHEMA)
-                                .build())
-                        .build())
                 .call()
                 .entity(GeneratedQuiz.class);
+        listener.onStage(GenerationStage.PERSISTING);
         return quizService.saveGeneratedQuiz(generatedQuiz, options.getSetId());
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Objective questions are graded locally against the stored options. Only the remaining questions, typically
+     * {@code SHORT_ANSWER}, are sent to the model in a single request, and both results are merged into one attempt.
+     */
     @Override
     public QuizAttempt gradeQuizFromInput(QuizAttemptInput quizInput) {
-        System.out.println("First here");
-        System.out.println(quizInput.toString());
-        System.out.println("end first here");
-        PromptTemplate systemPromptTemplate = PromptTemplate.builder()
-                .renderer(StTemplateRenderer.builder().startDelimiterToken('¶').endDelimiterToken('¶').build())
-                .resource(gradeSystemPrompt)
-                .build();
-        PromptTemplate userPromptTemplate = PromptTemplate.builder()
-                .renderer(StTemplateRenderer.builder().startDelimiterToken('¶').endDelimiterToken('¶').build())
-                .resource(gradeUserPrompt)
-                .build();
-
         Quiz quiz = quizRepository.findById(quizInput.getQuizId())
                 .orElseThrow(() -> new IllegalArgumentException("Quiz not found."));
+        Map<Integer, QuestionInput> responseByPosition = quizInput.getResponses().stream()
+                .collect(Collectors.toMap(QuestionInput::getPosition, response -> response, (first, second) -> second));
+
+        List<GradedQuestion> gradedQuestions = new ArrayList<>();
+        List<Question> remainingQuestions = new ArrayList<>();
+        List<QuestionInput> remainingResponses = new ArrayList<>();
+        for (Question question : quiz.getQuestions()) {
+            QuestionInput response = responseByPosition.get(question.getPosition());
+            if (response == null) {
+                gradedQuestions.add(ObjectiveQuestionGrader.ungraded(question, "No response was given."));
+                continue;
+            }
+            ObjectiveQuestionGrader.grade(question, response).ifPresentOrElse(gradedQuestions::add, () -> {
+                remainingQuestions.add(question);
+                remainingResponses.add(response);
+            });
+        }
+
+        GradedQuiz gradedQuiz = new GradedQuiz();
+        gradedQuiz.setTitle(quiz.getTitle());
+        gradedQuiz.setDescription(quiz.getDescription());
+        if (!remainingQuestions.isEmpty()) {
+            Map<Integer, GradedQuestion> verdictByPosition = gradeWithModel(quiz, remainingQuestions, remainingResponses).stream()
+                    .collect(Collectors.toMap(GradedQuestion::getPosition, question -> question, (first, second) -> first));
+            // Every question counts towards the score, including those the model left out.
+            for (Question question : remainingQuestions) {
+                GradedQuestion verdict = verdictByPosition.get(question.getPosition());
+                gradedQuestions.add(verdict != null ? verdict
+                        : ObjectiveQuestionGrader.ungraded(question, "The response could not be graded."));
+            }
+        }
+        gradedQuestions.sort(Comparator.comparing(GradedQuestion::getPosition));
+        gradedQuiz.setQuestions(gradedQuestions);
 
-        String quizString = quiz.toString();
+        return quizAttemptService.createQuizAttemptFromGradedQuiz(gradedQuiz, quiz.getId());
+    }
+
+    private List<GradedQuestion> gradeWithModel(Quiz quiz, List<Question> questions, List<QuestionInput> responses) {
+        String quizString = questions.stream()
+                .map(QuizGenerationServiceImpl::formatQuestion)
+                .collect(Collectors.joining("\n"));
         String flashcardSetString = quiz.getFlashcardSet().toString();
 
-        String vectorQueryString = "Educational and insightful content for quiz grading related to the following quiz and it's details: "
-                + quizString + "\n\n"
-                + "The following set was used to generate the quiz:\n"
-                + flashcardSetString;
-        DocumentRetriever retriever = VectorStoreDocumentRetriever.builder()
-                .vectorStore(vectorStore)
-                .similarityThreshold(0.75)
-                .topK(12)
-                .filterExpression(new FilterExpressionBuilder()
-                        .eq("userId", authenticationService
-                                .getAuthenticatedUser()
-                                .getId()
-                                .toString())
-                        .build())
-                .build();
-        List<Document> contextDocuments = retriever.retrieve(new Query(vectorQueryString));
-        String documentsContent = contextDocuments.stream()
-                .map(Document::getFormattedContent)
-                .collect(Collectors.joining("\n---\n"));
-
-        String renderedSystemPrompt = systemPromptTemplate.render(Map.of(
+        // Retrieves by the set alone, so the stored embedding of the set serves as the query vector.
+        DocumentRetriever retriever = retrieverFactory.create(authenticationService.getAuthenticatedUser().getId(), 12, 0.75);
+        List<Document> contextDocuments = flashcardSetEmbeddings.retrieve(quiz.getFlashcardSet(), retriever);
+        String documentsContent = contextPacker.pack(contextDocuments, packing.getGradingTokens());
+
+        String renderedSystemPrompt = promptTemplates.render("quiz/grade/system.st", Map.of(
                 "quiz", quizString,
                 "flashcards", flashcardSetString
         ));
-        String renderedUserMessage = userPromptTemplate.render(Map.of(
-                "response", quizInput.toString(),
+        String renderedUserMessage = promptTemplates.render("quiz/grade/user.st", Map.of(
+                "response", responses.stream()
+                        .map(response -> String.format("Position: %d, Response: %s", response.getPosition(), response.getContent()))
+                        .collect(Collectors.joining("\n")),
                 "documents", documentsContent
         ));
 
-        System.out.println("Quiz Input");
-        System.out.println(quizInput.toString());
-        System.out.println("End Quiz Input");
-
-        ChatClient chatClient = chatClientBuilder.build();
-        GradedQuiz gradedQuiz = chatClient
+        GradedQuiz gradedQuiz = gradingChatClient
                 .prompt()
                 .system(renderedSystemPrompt)
                 .user(renderedUserMessage)
-                .options(OpenAiChatOptions.builder()
-                        .model("gpt-4.1")
-                        .temperature(0.25)
-                        .responseFormat(ResponseFormat.builder()
-                                .type(ResponseFormat.Type.JSON_SCHEMA)
-                                .jsonSchema(GRADED_QUIZ_SCHEMA)
-                                .build())
-                        .build())
                 .call()
                 .entity(GradedQuiz.class);
+        if (gradedQuiz == null || gradedQuiz.getQuestions() == null) {
+            return List.of();
+        }
 
-        return quizAttemptService.createQuizAttemptFromGradedQuiz(gradedQuiz, quiz.getId());
+        // The model may echo questions it was not asked to grade, only keep the requested ones.
+        Set<Integer> requested = questions.stream()
+                .map(Question::getPosition)
+                .collect(Collectors.toSet());
+        return gradedQuiz.getQuestions().stream()
+                .filter(question -> question.getPosition() != null && requested.contains(question.getPosition()))
+                .toList();
+    }
+
+    /**
+     * A hash of the generation inputs in canonical form, so that the order or repetition of question types does
+     * not distinguish otherwise identical requests.
+     */
+    private static String generationKey(UUID userId, QuizGenOptions options) {
+        String types = options.getQuestionTypes() == null ? "" : options.getQuestionTypes().stream()
+                .map(Enum::name)
+                .distinct()
+                .sorted()
+                .collect(Collectors.joining(","));
+        String canonical = String.join("|", String.valueOf(userId), String.valueOf(options.getSetId()),
+                String.valueOf(options.getKQuestions()), types);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String formatQuestion(Question question) {
+        return String.format("Position: %d, Type: %s, Question: %s, Options: %s",
+                question.getPosition(),
+                question.getQuestionType(),
+                question.getContent(),
+                question.getOptions().stream()
+                        .sorted(Comparator.comparing(Option::getPosition))
+                        .map(option -> String.format("[Position: %d, Content: %s, Correct: %s]",
+                                option.getPosition(),
+                                option.getContent(),
+                                option.getIsCorrect()))
+                        .collect(Collectors.joining(" ")));
     }
 
 }
@@ -0,0 +1,176 @@
+package com.github.monetadev.backend.service.ai.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.monetadev.backend.config.EmbeddingModelConfig;
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.graphql.type.ai.set.FlashcardGenOptions;
+import com.github.monetadev.backend.graphql.type.ai.set.GeneratedFlashcard;
+import com.github.monetadev.backend.graphql.type.ai.set.GeneratedFlashcardSet;
+import com.github.monetadev.backend.graphql.type.ai.set.GenerationType;
+import com.github.monetadev.backend.service.ai.FlashcardSetGenerationCache;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Caches generated flashcard sets by the embedding of their query, so that a re-submitted query
+ * which is only worded slightly differently is answered without another retrieval and generation round trip.
+ * <p>
+ * Results are kept in a bounded bucket per user, so a lookup only compares against the results of the requesting
+ * user. Callers receive copies, which they are free to modify.
+ */
+@Service
+public class SemanticFlashcardSetGenerationCache implements FlashcardSetGenerationCache {
+    private final EmbeddingModel embeddingModel;
+    private final AiProperties.SemanticCache properties;
+    private final Cache<UUID, Bucket> buckets;
+
+    public SemanticFlashcardSetGenerationCache(@Qualifier(EmbeddingModelConfig.EMBEDDING_MODEL) EmbeddingModel embeddingModel,
+                                               AiProperties aiProperties) {
+        this.embeddingModel = embeddingModel;
+        this.properties = aiProperties.getSemanticCache();
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(properties.getTtl())
+                .maximumSize(properties.getMaxUsers())
+                .build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GeneratedFlashcardSet getOrGenerate(UUID userId, FlashcardGenOptions options, Supplier<GeneratedFlashcardSet> generator) {
+        if (!properties.isEnabled()) {
+            return generator.get();
+        }
+
+        Bucket bucket = buckets.get(userId, ignored -> new Bucket(properties.getMaxEntriesPerUser(), properties.getTtl()));
+        float[] embedding = normalize(embeddingModel.embed(options.getQuery()));
+        GeneratedFlashcardSet cached = bucket.nearest(options, embedding, properties.getMaxDistance());
+        if (cached != null) {
+            return copy(cached);
+        }
+
+        GeneratedFlashcardSet generated = generator.get();
+        if (generated != null) {
+            bucket.add(new Entry(options.getGenerationType(), options.getKQuestions(), embedding, copy(generated), System.nanoTime()));
+        }
+        return generated;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void invalidateUser(UUID userId) {
+        Bucket bucket = buckets.asMap().remove(userId);
+        if (bucket != null) {
+            bucket.invalidate();
+        }
+    }
+
+    private static GeneratedFlashcardSet copy(GeneratedFlashcardSet set) {
+        GeneratedFlashcardSet copy = new GeneratedFlashcardSet();
+        copy.setTitle(set.getTitle());
+        copy.setDescription(set.getDescription());
+        if (set.getGeneratedFlashcards() != null) {
+            copy.setGeneratedFlashcards(set.getGeneratedFlashcards().stream()
+                    .map(flashcard -> {
+                        GeneratedFlashcard flashcardCopy = new GeneratedFlashcard();
+                        flashcardCopy.setTerm(flashcard.getTerm());
+                        flashcardCopy.setDefinition(flashcard.getDefinition());
+                        flashcardCopy.setPosition(flashcard.getPosition());
+                        return flashcardCopy;
+                    })
+                    .toList());
+        }
+        return copy;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = Math.sqrt(dot(vector, vector));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = norm == 0 ? 0f : (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * The results of one user, oldest first. Once invalidated, a bucket takes no more results, so a generation
+     * racing with a document change is not cached.
+     */
+    private static final class Bucket {
+        private final int capacity;
+        private final long ttlNanos;
+        private final Deque<Entry> entries = new ArrayDeque<>();
+        private boolean invalidated;
+
+        private Bucket(int capacity, Duration ttl) {
+            this.capacity = capacity;
+            this.ttlNanos = ttl.toNanos();
+        }
+
+        private synchronized GeneratedFlashcardSet nearest(FlashcardGenOptions options, float[] embedding, double maxDistance) {
+            long now = System.nanoTime();
+            entries.removeIf(entry -> now - entry.createdAt() > ttlNanos);
+            Entry nearest = null;
+            double nearestDistance = Double.MAX_VALUE;
+            for (Entry entry : entries) {
+                if (!entry.matches(options)) {
+                    continue;
+                }
+                double distance = 1.0 - dot(entry.embedding(), embedding);
+                if (distance < nearestDistance) {
+                    nearest = entry;
+                    nearestDistance = distance;
+                }
+            }
+            return nearest != null && nearestDistance <= maxDistance ? nearest.value() : null;
+        }
+
+        private synchronized void add(Entry entry) {
+            if (invalidated) {
+                return;
+            }
+            entries.addLast(entry);
+            while (entries.size() > capacity) {
+                entries.removeFirst();
+            }
+        }
+
+        private synchronized void invalidate() {
+            invalidated = true;
+            entries.clear();
+        }
+    }
+
+    private record Entry(GenerationType generationType,
+                         int kQuestions,
+                         float[] embedding,
+                         GeneratedFlashcardSet value,
+                         long createdAt) {
+        private boolean matches(FlashcardGenOptions options) {
+            return this.generationType == options.getGenerationType()
+                    && this.kQuestions == options.getKQuestions();
+        }
+    }
+}
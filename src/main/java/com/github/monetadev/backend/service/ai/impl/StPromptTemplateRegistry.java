@@ -0,0 +1,182 @@
+package com.github.monetadev.backend.service.ai.impl;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.service.ai.PromptTemplateRegistry;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.stereotype.Service;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.TokenStream;
+import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.STGroup;
+import org.stringtemplate.v4.compiler.FormalArgument;
+import org.stringtemplate.v4.compiler.STLexer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loads and compiles every resource below {@code classpath:ai/} once at startup, instead of re-reading and
+ * re-parsing the template on every {@link org.springframework.ai.chat.prompt.PromptTemplate} construction.
+ * <p>
+ * Each render works on a cheap copy of a prototype {@link ST} that shares the compiled template. Adding an
+ * undeclared attribute would modify that shared template, so all attributes referenced by a template are
+ * declared up front and variables the template does not reference are ignored. Rendering fails if a referenced
+ * attribute has no variable, as Spring AI's renderer does, rather than leaving its section empty. With hot
+ * reload enabled, a template whose resource changed on disk is recompiled before it is rendered.
+ */
+@Service
+public class StPromptTemplateRegistry implements PromptTemplateRegistry {
+    private static final String ROOT = "classpath:ai/";
+    private static final char DELIMITER = '¶';
+
+    private final boolean hotReload;
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+
+    public StPromptTemplateRegistry(AiProperties aiProperties) {
+        this.hotReload = aiProperties.getPrompts().isHotReload();
+        ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        try {
+            String root = resolver.getResource(ROOT).getURL().toString();
+            for (Resource resource : resolver.getResources(ROOT + "**/*.*")) {
+                if (resource.isReadable()) {
+                    String name = resource.getURL().toString().substring(root.length());
+                    templates.put(name, Template.load(resource));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load prompt templates.", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String render(String name, Map<String, Object> variables) throws IllegalArgumentException {
+        Template template = template(name);
+        if (template.prototype() == null) {
+            throw new IllegalArgumentException("Resource is not a prompt template: " + name);
+        }
+        Set<String> missing = new TreeSet<>(template.required());
+        missing.removeAll(variables.keySet());
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Missing variables " + missing + " for prompt template: " + name);
+        }
+        ST st = new ST(template.prototype());
+        variables.forEach((key, value) -> {
+            if (template.attributes().contains(key)) {
+                st.add(key, value);
+            }
+        });
+        return st.render();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getContent(String name) throws IllegalArgumentException {
+        return template(name).content();
+    }
+
+    private Template template(String name) {
+        Template template = templates.get(name);
+        if (template == null) {
+            throw new IllegalArgumentException("No prompt template found with name: " + name);
+        }
+        if (hotReload && template.isStale()) {
+            template = templates.compute(name, (key, current) -> current.isStale() ? Template.load(current.resource()) : current);
+        }
+        return template;
+    }
+
+    private record Template(Resource resource, String content, ST prototype, Set<String> attributes,
+                            Set<String> required, long lastModified) {
+        private static Template load(Resource resource) {
+            try {
+                String content = resource.getContentAsString(StandardCharsets.UTF_8);
+                String filename = resource.getFilename();
+                if (filename == null || !filename.endsWith(".st")) {
+                    return new Template(resource, content, null, Set.of(), Set.of(), lastModified(resource));
+                }
+
+                // Every template gets its own group, so a reload never mutates a group that is being rendered.
+                STGroup group = new STGroup(DELIMITER, DELIMITER);
+                ST compiled = new ST(group, content);
+                Set<String> attributes = referencedAttributes(compiled.impl.tokens);
+                attributes.forEach(attribute -> compiled.impl.addArg(new FormalArgument(attribute)));
+                ST prototype = group.createStringTemplate(compiled.impl);
+                return new Template(resource, content, prototype, Set.copyOf(attributes),
+                        requiredAttributes(compiled.impl.tokens), lastModified(resource));
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load prompt template: " + resource.getDescription(), e);
+            }
+        }
+
+        // Collects every identifier inside delimiters; declaring a name that is not an attribute is harmless.
+        private static Set<String> referencedAttributes(TokenStream tokens) {
+            Set<String> attributes = new HashSet<>();
+            for (int i = 0; i < tokens.size(); i++) {
+                Token token = tokens.get(i);
+                if (token.getType() == STLexer.ID) {
+                    attributes.add(token.getText());
+                }
+            }
+            return attributes;
+        }
+
+        // Identifiers that must be given as variables, without properties, function calls and lambda arguments.
+        private static Set<String> requiredAttributes(TokenStream tokens) {
+            Set<String> required = new HashSet<>();
+            Set<String> lambdaArguments = new HashSet<>();
+            for (int i = 0; i < tokens.size(); i++) {
+                Token token = tokens.get(i);
+                if (token.getType() != STLexer.ID) {
+                    continue;
+                }
+                int previous = i > 0 ? tokens.get(i - 1).getType() : -1;
+                int next = i + 1 < tokens.size() ? tokens.get(i + 1).getType() : -1;
+                if (next == STLexer.PIPE || next == STLexer.COMMA && isLambdaArgument(tokens, i + 1)) {
+                    lambdaArguments.add(token.getText());
+                } else if (previous != STLexer.DOT && next != STLexer.LPAREN) {
+                    required.add(token.getText());
+                }
+            }
+            required.removeAll(lambdaArguments);
+            return Set.copyOf(required);
+        }
+
+        // Whether a list of identifiers separated by commas starting at the index ends with a pipe.
+        private static boolean isLambdaArgument(TokenStream tokens, int index) {
+            for (int i = index; i + 1 < tokens.size(); i += 2) {
+                int separator = tokens.get(i).getType();
+                if (separator == STLexer.PIPE) {
+                    return true;
+                }
+                if (separator != STLexer.COMMA || tokens.get(i + 1).getType() != STLexer.ID) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        private boolean isStale() {
+            return lastModified(resource) != lastModified;
+        }
+
+        private static long lastModified(Resource resource) {
+            try {
+                return resource.lastModified();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.monetadev.backend.service.ai.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of every model, embedding and retrieval call, tagged by {@link AiUseCase}, model and outcome:
+ * <ul>
+ *     <li>{@value #CALLS}: latency of each call. Model calls are timed after admission by the call scheduler,
+ *     which records the wait under {@value com.github.monetadev.backend.service.ai.model.LlmCallScheduler#QUEUE_WAIT}.</li>
+ *     <li>{@value #TOKENS}: prompt and completion tokens per call, as reported by the provider.</li>
+ *     <li>{@value #FIRST_TOKEN}: time until a streamed response produced its first chunk.</li>
+ * </ul>
+ * Components are instrumented by wrapping them with one of the {@code instrument} methods.
+ */
+@Component
+public class AiMetrics {
+    public static final String CALLS = "moneta.ai.calls";
+    public static final String TOKENS = "moneta.ai.tokens";
+    public static final String FIRST_TOKEN = "moneta.ai.stream.first.token";
+
+    static final String SUCCESS = "success";
+    static final String ERROR = "error";
+    static final String CANCELLED = "cancelled";
+    static final String UNKNOWN_MODEL = "unknown";
+
+    private final MeterRegistry meterRegistry;
+
+    public AiMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public ChatModel instrument(ChatModel chatModel, AiUseCase useCase) {
+        return new InstrumentedChatModel(chatModel, useCase, this);
+    }
+
+    public EmbeddingModel instrument(EmbeddingModel embeddingModel) {
+        return new InstrumentedEmbeddingModel(embeddingModel, this);
+    }
+
+    /**
+     * @param retriever The retriever to time.
+     * @param kind Describes the retriever in place of a model name, such as {@code hybrid}.
+     */
+    public DocumentRetriever instrument(DocumentRetriever retriever, String kind) {
+        return query -> {
+            long start = System.nanoTime();
+            String outcome = ERROR;
+            try {
+                List<Document> documents = retriever.retrieve(query);
+                outcome = SUCCESS;
+                return documents;
+            } finally {
+                recordCall(AiUseCase.RETRIEVE, kind, outcome, System.nanoTime() - start);
+            }
+        };
+    }
+
+    void recordCall(AiUseCase useCase, String model, String outcome, long nanos) {
+        Timer.builder(CALLS)
+                .description("Latency of AI model, embedding and retrieval calls")
+                .tag("use_case", useCase.getTag())
+                .tag("model", model)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordTokens(AiUseCase useCase, String model, String type, Integer tokens) {
+        if (tokens == null || tokens <= 0) {
+            return;
+        }
+        DistributionSummary.builder(TOKENS)
+                .description("Tokens per AI call")
+                .baseUnit("tokens")
+                .tag("use_case", useCase.getTag())
+                .tag("model", model)
+                .tag("type", type)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(tokens);
+    }
+
+    void recordFirstToken(AiUseCase useCase, String model, long nanos) {
+        Timer.builder(FIRST_TOKEN)
+                .description("Time until the first chunk of a streamed AI response")
+                .tag("use_case", useCase.getTag())
+                .tag("model", model)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
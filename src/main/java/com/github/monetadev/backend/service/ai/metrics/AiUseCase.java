@@ -0,0 +1,23 @@
+package com.github.monetadev.backend.service.ai.metrics;
+
+import lombok.Getter;
+
+/**
+ * What an AI call is made for, the {@code use_case} tag of the {@link AiMetrics} meters.
+ */
+@Getter
+public enum AiUseCase {
+    REWRITE("rewrite"),
+    SET_GENERATION("set-gen"),
+    QUIZ_GENERATION("quiz-gen"),
+    GRADE("grade"),
+    CHAT("chat"),
+    EMBED("embed"),
+    RETRIEVE("retrieve");
+
+    private final String tag;
+
+    AiUseCase(String tag) {
+        this.tag = tag;
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.monetadev.backend.service.ai.metrics;
+
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+/**
+ * {@link ChatModel} that records its calls for one {@link AiUseCase}. The model tag is taken from the response,
+ * falling back to the requested model while none has been received.
+ */
+class InstrumentedChatModel implements ChatModel {
+    private final ChatModel delegate;
+    private final AiUseCase useCase;
+    private final AiMetrics metrics;
+
+    InstrumentedChatModel(ChatModel delegate, AiUseCase useCase, AiMetrics metrics) {
+        this.delegate = delegate;
+        this.useCase = useCase;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        long start = System.nanoTime();
+        String model = requestedModel(prompt);
+        String outcome = AiMetrics.ERROR;
+        try {
+            ChatResponse response = delegate.call(prompt);
+            outcome = AiMetrics.SUCCESS;
+            if (response != null) {
+                model = responseModel(response.getMetadata(), model);
+                recordUsage(model, response.getMetadata());
+            }
+            return response;
+        } finally {
+            metrics.recordCall(useCase, model, outcome, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return Flux.defer(() -> {
+            StreamedCall call = new StreamedCall(requestedModel(prompt));
+            return delegate.stream(prompt)
+                    .doOnNext(call::onChunk)
+                    .doFinally(call::onEnd);
+        });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+
+    private String requestedModel(Prompt prompt) {
+        ChatOptions options = prompt.getOptions() != null ? prompt.getOptions() : delegate.getDefaultOptions();
+        if (options != null && StringUtils.hasText(options.getModel())) {
+            return options.getModel();
+        }
+        return AiMetrics.UNKNOWN_MODEL;
+    }
+
+    private void recordUsage(String model, ChatResponseMetadata metadata) {
+        Usage usage = metadata != null ? metadata.getUsage() : null;
+        if (usage != null) {
+            metrics.recordTokens(useCase, model, "prompt", usage.getPromptTokens());
+            metrics.recordTokens(useCase, model, "completion", usage.getCompletionTokens());
+        }
+    }
+
+    private static String responseModel(ChatResponseMetadata metadata, String fallback) {
+        return metadata != null && StringUtils.hasText(metadata.getModel()) ? metadata.getModel() : fallback;
+    }
+
+    private static boolean hasText(ChatResponse response) {
+        return response.getResult() != null
+                && response.getResult().getOutput() != null
+                && StringUtils.hasLength(response.getResult().getOutput().getText());
+    }
+
+    private static boolean hasUsage(ChatResponseMetadata metadata) {
+        return metadata != null && metadata.getUsage() != null
+                && metadata.getUsage().getTotalTokens() != null && metadata.getUsage().getTotalTokens() > 0;
+    }
+
+    /**
+     * State of one subscription. Usage is only reported with the last chunk, so it is recorded when the stream ends.
+     */
+    private final class StreamedCall {
+        private final long start = System.nanoTime();
+        private String model;
+        private boolean receivedText;
+        private ChatResponseMetadata usageMetadata;
+
+        private StreamedCall(String model) {
+            this.model = model;
+        }
+
+        private void onChunk(ChatResponse response) {
+            model = responseModel(response.getMetadata(), model);
+            if (!receivedText && hasText(response)) {
+                receivedText = true;
+                metrics.recordFirstToken(useCase, model, System.nanoTime() - start);
+            }
+            if (hasUsage(response.getMetadata())) {
+                usageMetadata = response.getMetadata();
+            }
+        }
+
+        private void onEnd(SignalType signal) {
+            String outcome = switch (signal) {
+                case ON_COMPLETE -> AiMetrics.SUCCESS;
+                case CANCEL -> AiMetrics.CANCELLED;
+                default -> AiMetrics.ERROR;
+            };
+            metrics.recordCall(useCase, model, outcome, System.nanoTime() - start);
+            recordUsage(model, usageMetadata);
+        }
+    }
+}
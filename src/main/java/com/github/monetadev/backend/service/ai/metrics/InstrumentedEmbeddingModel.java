@@ -0,0 +1,65 @@
+package com.github.monetadev.backend.service.ai.metrics;
+
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.util.StringUtils;
+
+/**
+ * {@link EmbeddingModel} that records its calls under {@link AiUseCase#EMBED}. It wraps the provider's model
+ * directly, so embeddings answered from a cache are not counted.
+ */
+class InstrumentedEmbeddingModel implements EmbeddingModel {
+    private final EmbeddingModel delegate;
+    private final AiMetrics metrics;
+
+    InstrumentedEmbeddingModel(EmbeddingModel delegate, AiMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        long start = System.nanoTime();
+        String model = request.getOptions() != null && StringUtils.hasText(request.getOptions().getModel())
+                ? request.getOptions().getModel()
+                : AiMetrics.UNKNOWN_MODEL;
+        String outcome = AiMetrics.ERROR;
+        try {
+            EmbeddingResponse response = delegate.call(request);
+            outcome = AiMetrics.SUCCESS;
+            if (response != null && response.getMetadata() != null) {
+                if (StringUtils.hasText(response.getMetadata().getModel())) {
+                    model = response.getMetadata().getModel();
+                }
+                Usage usage = response.getMetadata().getUsage();
+                if (usage != null) {
+                    metrics.recordTokens(AiUseCase.EMBED, model, "prompt", usage.getPromptTokens());
+                }
+            }
+            return response;
+        } finally {
+            metrics.recordCall(AiUseCase.EMBED, model, outcome, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        long start = System.nanoTime();
+        String outcome = AiMetrics.ERROR;
+        try {
+            float[] embedding = delegate.embed(document);
+            outcome = AiMetrics.SUCCESS;
+            return embedding;
+        } finally {
+            metrics.recordCall(AiUseCase.EMBED, AiMetrics.UNKNOWN_MODEL, outcome, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+}
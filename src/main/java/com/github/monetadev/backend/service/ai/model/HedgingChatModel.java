@@ -0,0 +1,319 @@
+package com.github.monetadev.backend.service.ai.model;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link ChatModel} that routes each call across several models by their observed latency and error rate.
+ * <p>
+ * A call goes to the preferred model first. If it has not answered within that model's recent p95 latency, the
+ * request is also sent to the next model, and whichever valid answer arrives first is returned while the other
+ * attempt is cancelled, its latency recorded as at least the time it had run. A failed or empty answer starts the
+ * next model right away. Models rank by p95 latency inflated by their error rate, in the configured order until
+ * each has enough samples. A small share of calls goes to another model first, so that a model which keeps losing
+ * to hedges is still measured. Streams are routed to the preferred model without hedging.
+ */
+public class HedgingChatModel implements ChatModel {
+    public static final String CALLS = "moneta.ai.routing.calls";
+
+    private final List<Route> routes;
+    private final AiProperties.Routing properties;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("chat-hedge-"));
+
+    public HedgingChatModel(List<Route> routes, AiProperties.Routing properties, MeterRegistry meterRegistry) {
+        if (routes.isEmpty()) {
+            throw new IllegalArgumentException("At least one route is required");
+        }
+        this.routes = List.copyOf(routes);
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Sends prompts to the model as they are.
+     */
+    public static Route route(String name, ChatModel model, AiProperties.Routing properties) {
+        return new Route(name, model, UnaryOperator.identity(), properties);
+    }
+
+    /**
+     * Replaces the model named in the prompt's options, so that a prompt written for another provider can be sent
+     * to this one. Only portable options are kept.
+     * @param modelName The model to request, or {@code null} for the provider's default.
+     */
+    public static Route route(String name, ChatModel model, String modelName, AiProperties.Routing properties) {
+        return new Route(name, model, prompt -> {
+            ChatOptions options = prompt.getOptions();
+            ChatOptions.Builder portable = ChatOptions.builder().model(modelName);
+            if (options != null) {
+                portable.temperature(options.getTemperature())
+                        .topP(options.getTopP())
+                        .maxTokens(options.getMaxTokens());
+            }
+            return new Prompt(prompt.getInstructions(), portable.build());
+        }, properties);
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        List<Route> ranked = rank();
+        HedgedCall call = new HedgedCall(prompt, ranked);
+        call.startNext();
+        ScheduledFuture<?> hedge = ranked.size() > 1
+                ? scheduler.schedule(call::startNext, hedgeDelay(ranked.get(0)), TimeUnit.NANOSECONDS)
+                : null;
+        try {
+            return call.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the AI model", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            if (hedge != null) {
+                hedge.cancel(false);
+            }
+            call.cancel();
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        Route route = rank().get(0);
+        counter(route, false).increment();
+        return route.model.stream(route.adapter.apply(prompt));
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return routes.get(0).model.getDefaultOptions();
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private List<Route> rank() {
+        List<Route> ranked = new ArrayList<>(routes);
+        boolean measured = routes.stream().allMatch(route -> route.samples() >= properties.getMinSamples());
+        if (measured) {
+            ranked.sort(Comparator.comparingDouble(Route::score));
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (ranked.size() > 1 && random.nextDouble() < properties.getExplorationRate()) {
+            // Under-sampled routes are explored first, as the ranking waits for them.
+            List<Route> candidates = ranked.subList(1, ranked.size()).stream()
+                    .filter(route -> route.samples() < properties.getMinSamples())
+                    .toList();
+            if (candidates.isEmpty()) {
+                candidates = ranked.subList(1, ranked.size());
+            }
+            Route explored = candidates.get(random.nextInt(candidates.size()));
+            ranked.remove(explored);
+            ranked.add(0, explored);
+        }
+        return ranked;
+    }
+
+    private long hedgeDelay(Route route) {
+        long min = properties.getMinHedgeDelay().toNanos();
+        long max = properties.getMaxHedgeDelay().toNanos();
+        if (route.samples() < properties.getMinSamples()) {
+            return max;
+        }
+        return Math.max(min, Math.min(max, route.p95()));
+    }
+
+    private Counter counter(Route route, boolean hedged) {
+        return Counter.builder(CALLS)
+                .description("Model calls answered per route")
+                .tag("route", route.name)
+                .tag("hedged", Boolean.toString(hedged))
+                .register(meterRegistry);
+    }
+
+    private static boolean isValid(ChatResponse response) {
+        return response != null
+                && response.getResult() != null
+                && response.getResult().getOutput() != null
+                && StringUtils.hasText(response.getResult().getOutput().getText());
+    }
+
+    /**
+     * A model that calls can be routed to, with its recent latencies and moving error rate.
+     */
+    public static final class Route {
+        private final String name;
+        private final ChatModel model;
+        private final UnaryOperator<Prompt> adapter;
+        private final double errorRateDecay;
+        private final long[] latencies;
+        private int recorded;
+        private double errorRate;
+
+        private Route(String name, ChatModel model, UnaryOperator<Prompt> adapter, AiProperties.Routing properties) {
+            this.name = name;
+            this.model = model;
+            this.adapter = adapter;
+            this.errorRateDecay = properties.getErrorRateDecay();
+            this.latencies = new long[properties.getLatencyWindow()];
+        }
+
+        private synchronized void recordSuccess(long nanos) {
+            recordLatency(nanos);
+            errorRate *= 1 - errorRateDecay;
+        }
+
+        /**
+         * Records the time an attempt had run when it was cancelled, a lower bound of its latency.
+         */
+        private synchronized void recordLatency(long nanos) {
+            latencies[recorded++ % latencies.length] = nanos;
+        }
+
+        private synchronized void recordFailure() {
+            errorRate = errorRate * (1 - errorRateDecay) + errorRateDecay;
+        }
+
+        private synchronized int samples() {
+            return Math.min(recorded, latencies.length);
+        }
+
+        private synchronized long p95() {
+            long[] window = Arrays.copyOf(latencies, samples());
+            if (window.length == 0) {
+                return 0;
+            }
+            Arrays.sort(window);
+            return window[(int) Math.ceil(window.length * 0.95) - 1];
+        }
+
+        // Expected time to a valid answer, as if failed calls were retried at the same latency.
+        private synchronized double score() {
+            return p95() / Math.max(0.05, 1 - errorRate);
+        }
+    }
+
+    /**
+     * The attempts of one call, started one route at a time.
+     */
+    private final class HedgedCall {
+        private final Prompt prompt;
+        private final List<Route> ranked;
+        private final SecurityContext securityContext = SecurityContextHolder.getContext();
+        private final CompletableFuture<ChatResponse> result = new CompletableFuture<>();
+        private final List<Attempt> attempts = new ArrayList<>();
+        private int failed;
+
+        private HedgedCall(Prompt prompt, List<Route> ranked) {
+            this.prompt = prompt;
+            this.ranked = ranked;
+        }
+
+        private synchronized void startNext() {
+            if (result.isDone() || attempts.size() == ranked.size()) {
+                return;
+            }
+            Route route = ranked.get(attempts.size());
+            boolean hedged = !attempts.isEmpty();
+            Attempt attempt = new Attempt(route, System.nanoTime());
+            attempts.add(attempt);
+            // Hedges are started from the scheduler thread, the caller's context must be carried explicitly.
+            attempt.future = executor.submit(DelegatingSecurityContextRunnable.create(() -> run(attempt, hedged), securityContext));
+        }
+
+        private void run(Attempt attempt, boolean hedged) {
+            Route route = attempt.route;
+            ChatResponse response;
+            try {
+                response = route.model.call(route.adapter.apply(prompt));
+            } catch (RuntimeException e) {
+                onFailure(attempt, e);
+                return;
+            }
+            if (!isValid(response)) {
+                onFailure(attempt, new IllegalStateException("Empty response from " + route.name));
+                return;
+            }
+            if (attempt.settle()) {
+                route.recordSuccess(System.nanoTime() - attempt.start);
+            }
+            if (result.complete(response)) {
+                counter(route, hedged).increment();
+            }
+        }
+
+        private synchronized void onFailure(Attempt attempt, RuntimeException e) {
+            if (result.isDone()) {
+                // The losing attempt was cancelled, its failure says nothing about the route but its latency.
+                attempt.settleCancelled();
+                return;
+            }
+            attempt.settle();
+            attempt.route.recordFailure();
+            failed++;
+            if (attempts.size() < ranked.size()) {
+                startNext();
+            } else if (failed == attempts.size()) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        private synchronized void cancel() {
+            attempts.forEach(Attempt::settleCancelled);
+            attempts.forEach(attempt -> attempt.future.cancel(true));
+        }
+    }
+
+    /**
+     * One route called for a call, whose outcome is recorded on the route once.
+     */
+    private static final class Attempt {
+        private final Route route;
+        private final long start;
+        private Future<?> future;
+        private boolean settled;
+
+        private Attempt(Route route, long start) {
+            this.route = route;
+            this.start = start;
+        }
+
+        private synchronized boolean settle() {
+            if (settled) {
+                return false;
+            }
+            settled = true;
+            return true;
+        }
+
+        // Without it, a route slower than the hedge delay would only ever record the calls it happened to win.
+        private void settleCancelled() {
+            if (settle()) {
+                route.recordLatency(System.nanoTime() - start);
+            }
+        }
+    }
+}
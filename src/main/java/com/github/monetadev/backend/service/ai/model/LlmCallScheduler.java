@@ -0,0 +1,243 @@
+package com.github.monetadev.backend.service.ai.model;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.exception.LlmCallRejectedException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admits model calls so that no single user can exhaust the shared rate limit of the provider.
+ * <p>
+ * Every user has a token bucket charged with the estimated prompt tokens of each call. Waiting calls are
+ * queued per user, and whenever a slot of the global concurrency limit is free it goes to the user served least
+ * recently. Backlogged users thus take turns, and a user with many queued calls delays only their own calls. Calls that cannot be admitted within
+ * the maximum wait are rejected.
+ */
+@Component
+public class LlmCallScheduler {
+    public static final String QUEUE_DEPTH = "moneta.ai.llm.queue.depth";
+    public static final String QUEUE_WAIT = "moneta.ai.llm.queue.wait";
+    public static final String IN_FLIGHT = "moneta.ai.llm.in.flight";
+
+    private final AiProperties.LlmScheduler properties;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, TokenBucket> buckets;
+    // Users with waiting calls.
+    private final Map<String, UserQueue> queues = new HashMap<>();
+    private final ScheduledExecutorService ticker =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("llm-scheduler-"));
+    private int inFlight;
+    private int waiting;
+    private long turn;
+
+    public LlmCallScheduler(AiProperties aiProperties, MeterRegistry meterRegistry) {
+        this.properties = aiProperties.getLlmScheduler();
+        this.meterRegistry = meterRegistry;
+        // An idle bucket is full again, forgetting it changes nothing.
+        long refillSeconds = Math.max(1, properties.getBucketCapacity() / Math.max(1, properties.getRefillTokensPerSecond()));
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofSeconds(refillSeconds * 2))
+                .build();
+        Gauge.builder(QUEUE_DEPTH, this, LlmCallScheduler::waiting)
+                .description("Model calls waiting for admission")
+                .register(meterRegistry);
+        Gauge.builder(IN_FLIGHT, this, LlmCallScheduler::inFlight)
+                .description("Model calls admitted and not yet finished")
+                .register(meterRegistry);
+        // Buckets refill and deadlines pass without any other event, re-check waiting calls regularly.
+        ticker.scheduleWithFixedDelay(this::dispatch, 100, 100, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdown();
+    }
+
+    /**
+     * Queues a call for admission.
+     * @param userKey The user the call is made for.
+     * @param estimatedTokens The estimated prompt tokens of the call.
+     * @return A future completed with a {@link Permit} once the call is admitted, or completed exceptionally with
+     * {@link LlmCallRejectedException} once the maximum wait has passed. The permit must be released when the call ends.
+     */
+    public CompletableFuture<Permit> admit(String userKey, long estimatedTokens) {
+        // A call larger than the bucket could never be admitted, it empties the bucket instead.
+        long tokens = Math.min(Math.max(1, estimatedTokens), properties.getBucketCapacity());
+        Waiter waiter = new Waiter(tokens, System.nanoTime(), System.nanoTime() + properties.getMaxWait().toNanos());
+        synchronized (this) {
+            queues.computeIfAbsent(userKey, UserQueue::new).waiters.addLast(waiter);
+            waiting++;
+        }
+        dispatch();
+        return waiter.future();
+    }
+
+    /**
+     * Admits waiting calls while slots are free, taking one call per user in turn. Futures are completed
+     * outside the lock, as completing one may run the admitted call's continuation.
+     */
+    private void dispatch() {
+        List<Waiter> admitted = new ArrayList<>();
+        List<Waiter> rejected = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Iterator<UserQueue> iterator = queues.values().iterator(); iterator.hasNext(); ) {
+                UserQueue queue = iterator.next();
+                expire(queue, now, rejected);
+                if (queue.waiters.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+
+            while (inFlight < properties.getMaxConcurrentCalls() && !queues.isEmpty()) {
+                UserQueue next = queues.values().stream()
+                        .sorted(Comparator.comparingLong(queue -> bucket(queue.userKey).lastServed))
+                        .filter(queue -> bucket(queue.userKey).tryConsume(queue.waiters.peekFirst().tokens(), now))
+                        .findFirst()
+                        .orElse(null);
+                if (next == null) {
+                    break;
+                }
+                Waiter head = next.waiters.pollFirst();
+                bucket(next.userKey).lastServed = ++turn;
+                waiting--;
+                inFlight++;
+                admitted.add(head);
+                record(head, now, "admitted");
+                if (next.waiters.isEmpty()) {
+                    queues.remove(next.userKey);
+                }
+            }
+        }
+
+        for (Waiter waiter : admitted) {
+            if (!waiter.future().complete(new Permit(this))) {
+                // The caller gave up in the meantime.
+                release();
+            }
+        }
+        for (Waiter waiter : rejected) {
+            waiter.future().completeExceptionally(new LlmCallRejectedException(
+                    "Too many AI requests are waiting, please try again later."));
+        }
+    }
+
+    private void expire(UserQueue queue, long now, List<Waiter> rejected) {
+        for (Iterator<Waiter> iterator = queue.waiters.iterator(); iterator.hasNext(); ) {
+            Waiter waiter = iterator.next();
+            if (waiter.future().isDone()) {
+                iterator.remove();
+                waiting--;
+            } else if (now - waiter.deadline() >= 0) {
+                iterator.remove();
+                waiting--;
+                record(waiter, now, "rejected");
+                rejected.add(waiter);
+            }
+        }
+    }
+
+    private void record(Waiter waiter, long now, String outcome) {
+        Timer.builder(QUEUE_WAIT)
+                .description("Time model calls waited for admission")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(now - waiter.enqueued(), TimeUnit.NANOSECONDS);
+    }
+
+    private void release() {
+        synchronized (this) {
+            inFlight--;
+        }
+        dispatch();
+    }
+
+    private TokenBucket bucket(String userKey) {
+        return buckets.get(userKey, key -> new TokenBucket(properties.getBucketCapacity(), properties.getRefillTokensPerSecond()));
+    }
+
+    private synchronized double waiting() {
+        return waiting;
+    }
+
+    private synchronized double inFlight() {
+        return inFlight;
+    }
+
+    /**
+     * An admitted call. Releasing frees its slot for the next waiting call, repeated releases are ignored.
+     */
+    public static final class Permit implements AutoCloseable {
+        private final LlmCallScheduler scheduler;
+        private boolean released;
+
+        private Permit(LlmCallScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            scheduler.release();
+        }
+    }
+
+    private static final class UserQueue {
+        private final String userKey;
+        private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+        private UserQueue(String userKey) {
+            this.userKey = userKey;
+        }
+    }
+
+    private record Waiter(long tokens, long enqueued, long deadline, CompletableFuture<Permit> future) {
+        private Waiter(long tokens, long enqueued, long deadline) {
+            this(tokens, enqueued, deadline, new CompletableFuture<>());
+        }
+    }
+
+    private static final class TokenBucket {
+        private final long capacity;
+        private final double refillPerNano;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+        private long lastServed;
+
+        private TokenBucket(long capacity, long refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerNano = refillPerSecond / 1e9;
+            this.tokens = capacity;
+        }
+
+        // Only called from the synchronized dispatcher.
+        private boolean tryConsume(long requested, long now) {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * refillPerNano);
+            refilledAt = now;
+            if (tokens < requested) {
+                return false;
+            }
+            tokens -= requested;
+            return true;
+        }
+    }
+}
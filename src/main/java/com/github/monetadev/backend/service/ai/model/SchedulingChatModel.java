@@ -0,0 +1,101 @@
+package com.github.monetadev.backend.service.ai.model;
+
+import com.github.monetadev.backend.exception.LlmCallRejectedException;
+import com.github.monetadev.backend.security.jwt.JwtUserDetails;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * {@link ChatModel} that waits for admission by the {@link LlmCallScheduler} before every call. Calls are
+ * attributed to the authenticated user, or to the user put into the Reactor context under {@link #USER_KEY}
+ * for streams subscribed outside the request thread.
+ */
+public class SchedulingChatModel implements ChatModel {
+    public static final String USER_KEY = SchedulingChatModel.class.getName() + ".user";
+    private static final String ANONYMOUS = "anonymous";
+
+    private final ChatModel delegate;
+    private final LlmCallScheduler scheduler;
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+
+    public SchedulingChatModel(ChatModel delegate, LlmCallScheduler scheduler) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        try (LlmCallScheduler.Permit ignored = await(scheduler.admit(currentUser(), estimate(prompt)))) {
+            return delegate.call(prompt);
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        long tokens = estimate(prompt);
+        String authenticatedUser = currentUser();
+        return Flux.deferContextual(context -> {
+            String user = context.getOrDefault(USER_KEY, authenticatedUser);
+            return Flux.usingWhen(
+                    Mono.fromFuture(() -> scheduler.admit(user, tokens)),
+                    permit -> delegate.stream(prompt),
+                    permit -> Mono.fromRunnable(permit::close));
+        });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+
+    private long estimate(Prompt prompt) {
+        long tokens = 0;
+        for (Message message : prompt.getInstructions()) {
+            if (message.getText() != null) {
+                tokens += tokenCountEstimator.estimate(message.getText());
+            }
+        }
+        return tokens;
+    }
+
+    private static LlmCallScheduler.Permit await(CompletableFuture<LlmCallScheduler.Permit> admission) {
+        try {
+            return admission.get();
+        } catch (InterruptedException e) {
+            if (!admission.cancel(false)) {
+                // Admitted just as the interrupt arrived, the permit would otherwise hold its slot forever.
+                admission.thenAccept(LlmCallScheduler.Permit::close);
+            }
+            Thread.currentThread().interrupt();
+            throw new LlmCallRejectedException("Interrupted while waiting for the AI model.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (CancellationException e) {
+            throw new LlmCallRejectedException("Cancelled while waiting for the AI model.");
+        }
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof JwtUserDetails userDetails) {
+            return userDetails.getUserId().toString();
+        }
+        return ANONYMOUS;
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.monetadev.backend.service.ai.parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.github.monetadev.backend.exception.GenerationStreamException;
+import com.github.monetadev.backend.graphql.type.ai.set.GeneratedFlashcard;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses a {@link com.github.monetadev.backend.graphql.type.ai.set.GeneratedFlashcardSet} JSON document while
+ * it is still being generated, returning each flashcard of the {@code generatedFlashcards} array as soon as
+ * its object is closed. Backed by Jackson's non-blocking parser, so partial input is never re-parsed.
+ * <p>
+ * Instances are stateful and must be fed the fragments of a single document in order.
+ */
+public class IncrementalFlashcardParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String FLASHCARDS_FIELD = "generatedFlashcards";
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    private int depth;
+    private int flashcardsDepth = -1;
+    private boolean expectFlashcards;
+    private GeneratedFlashcard current;
+    private String field;
+    private int emitted;
+
+    public IncrementalFlashcardParser() {
+        try {
+            this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create JSON parser", e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Consumes the next fragment of the document.
+     * @param fragment The next piece of model output.
+     * @return The flashcards completed by this fragment, in document order.
+     * @throws GenerationStreamException if the output is not valid JSON.
+     */
+    public List<GeneratedFlashcard> feed(String fragment) throws GenerationStreamException {
+        byte[] bytes = fragment.getBytes(StandardCharsets.UTF_8);
+        List<GeneratedFlashcard> completed = new ArrayList<>();
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+            readAvailable(completed);
+        } catch (IOException e) {
+            throw new GenerationStreamException("Generated flashcard set is not valid JSON: " + e.getMessage());
+        }
+        return completed;
+    }
+
+    /**
+     * Signals the end of the document.
+     * @throws GenerationStreamException if the document ended before it was complete.
+     */
+    public void finish() throws GenerationStreamException {
+        feeder.endOfInput();
+        try {
+            readAvailable(new ArrayList<>());
+        } catch (IOException e) {
+            throw new GenerationStreamException("Generated flashcard set is not valid JSON: " + e.getMessage());
+        }
+        if (depth != 0) {
+            throw new GenerationStreamException("Generated flashcard set ended unexpectedly");
+        }
+    }
+
+    private void readAvailable(List<GeneratedFlashcard> completed) throws IOException {
+        for (JsonToken token; (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE; ) {
+            switch (token) {
+                case FIELD_NAME -> {
+                    field = parser.currentName();
+                    expectFlashcards = depth == 1 && FLASHCARDS_FIELD.equals(field);
+                }
+                case START_ARRAY -> {
+                    depth++;
+                    if (expectFlashcards) {
+                        flashcardsDepth = depth;
+                        expectFlashcards = false;
+                    }
+                }
+                case START_OBJECT -> {
+                    depth++;
+                    expectFlashcards = false;
+                    if (isFlashcardLevel()) {
+                        current = new GeneratedFlashcard();
+                    }
+                }
+                case END_OBJECT -> {
+                    if (isFlashcardLevel() && current != null) {
+                        if (current.getPosition() == null) {
+                            current.setPosition(emitted + 1);
+                        }
+                        completed.add(current);
+                        emitted++;
+                        current = null;
+                    }
+                    depth--;
+                }
+                case END_ARRAY -> {
+                    if (depth == flashcardsDepth) {
+                        flashcardsDepth = -1;
+                    }
+                    depth--;
+                }
+                default -> {
+                    if (isFlashcardLevel() && current != null && token.isScalarValue()) {
+                        assign(token);
+                    }
+                    expectFlashcards = false;
+                }
+            }
+        }
+    }
+
+    private boolean isFlashcardLevel() {
+        return flashcardsDepth != -1 && depth == flashcardsDepth + 1;
+    }
+
+    private void assign(JsonToken token) throws IOException {
+        switch (field) {
+            case "term" -> current.setTerm(parser.getText());
+            case "definition" -> current.setDefinition(parser.getText());
+            case "position" -> {
+                if (token == JsonToken.VALUE_NUMBER_INT) {
+                    current.setPosition(parser.getIntValue());
+                }
+            }
+            default -> {
+            }
+        }
+    }
+}
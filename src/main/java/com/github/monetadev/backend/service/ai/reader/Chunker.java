@@ -0,0 +1,12 @@
+package com.github.monetadev.backend.service.ai.reader;
+
+/**
+ * A {@link TextSink} that cuts the text of one document into chunks and hands them on as they are cut.
+ */
+public interface Chunker extends TextSink {
+    /**
+     * Emits the remaining buffered text. Must be called once extraction has finished.
+     * @return The total number of emitted chunks.
+     */
+    int finish();
+}
@@ -0,0 +1,385 @@
+package com.github.monetadev.backend.service.ai.reader;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.config.prop.StorageProperties;
+import com.github.monetadev.backend.exception.DocumentExtractionException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Keeps the text extracted from documents on disk, compressed and keyed by the MD5 sum of the document content,
+ * so that extracting the same content again reads a memory-mapped file instead of running Tika.
+ * <p>
+ * Text is stored in UTF-8 with block boundaries and headings as escape sequences, and replayed to a
+ * {@link TextSink} exactly as the reader produced it. A document is parsed to its end the first time even if the
+ * sink fills up early, so that its stored text is complete. The least recently read texts are deleted once the
+ * store outgrows its size limit.
+ */
+@Slf4j
+@Component
+public class ExtractedTextStore {
+    private static final Pattern CONTENT_HASH = Pattern.compile("[0-9a-f]{32}");
+    private static final String SUFFIX = ".text";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final char ESCAPE = '\0';
+    private static final char BOUNDARY = 'b';
+    private static final char HEADING = 'h';
+    private static final int BUFFER_CHARS = 8192;
+
+    private final StreamingTikaReader tikaReader;
+    private final AiProperties.ExtractedTextCache properties;
+    private final Path directory;
+    // Approximate, concurrent writes of the same content may count it twice until the next eviction.
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    public ExtractedTextStore(StreamingTikaReader tikaReader, AiProperties aiProperties, StorageProperties storageProperties) {
+        this.tikaReader = tikaReader;
+        this.properties = aiProperties.getExtractedTextCache();
+        this.directory = properties.isEnabled() && StringUtils.hasText(properties.getDirectory())
+                ? storageProperties.resolve(properties.getDirectory())
+                : null;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(TEMPORARY_SUFFIX)) {
+                        // Left behind by an extraction that was interrupted by a shutdown.
+                        Files.deleteIfExists(file);
+                    } else if (name.endsWith(SUFFIX)) {
+                        storedBytes.addAndGet(sizeOf(file));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the extracted text store in " + directory, e);
+        }
+    }
+
+    /**
+     * Streams the text of a document into the sink, read from the store if text of identical content was stored
+     * before, otherwise extracted with Tika and stored.
+     * @param contentHash The MD5 sum of the document content as hex, or {@code null} to bypass the store.
+     * @param resource The document.
+     * @param sink Receives the text.
+     * @throws DocumentExtractionException if the document could not be parsed, or its stored text is corrupt.
+     */
+    public void extract(String contentHash, Resource resource, TextSink sink) throws DocumentExtractionException {
+        if (directory == null || contentHash == null || !CONTENT_HASH.matcher(contentHash).matches()) {
+            tikaReader.extract(resource, sink);
+            return;
+        }
+        Path entry = directory.resolve(contentHash + SUFFIX);
+        if (!replay(entry, sink)) {
+            extractAndStore(entry, resource, sink);
+        }
+    }
+
+    /**
+     * @return Whether the text was found in the store.
+     */
+    private boolean replay(Path entry, TextSink sink) {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            log.warn("Could not read extracted text {}, extracting it again", entry.getFileName(), e);
+            return false;
+        }
+        touch(entry);
+        try (Reader reader = new InputStreamReader(new InflaterInputStream(new ByteBufferInputStream(mapped)), StandardCharsets.UTF_8)) {
+            decode(reader, sink);
+        } catch (IOException e) {
+            // Part of the text may have reached the sink already, the caller has to start over.
+            delete(entry);
+            throw new DocumentExtractionException("Stored text of document is corrupt: " + entry.getFileName());
+        }
+        return true;
+    }
+
+    private void extractAndStore(Path entry, Resource resource, TextSink sink) {
+        RecordingSink recording;
+        try {
+            recording = new RecordingSink(Files.createTempFile(directory, entry.getFileName().toString(), TEMPORARY_SUFFIX), sink);
+        } catch (IOException e) {
+            log.warn("Could not store extracted text {}", entry.getFileName(), e);
+            tikaReader.extract(resource, sink);
+            return;
+        }
+        try {
+            tikaReader.extract(resource, recording);
+            if (recording.complete()) {
+                store(recording.file, entry);
+            }
+        } finally {
+            recording.abandon();
+            delete(recording.file);
+        }
+    }
+
+    private void store(Path temporary, Path entry) {
+        try {
+            long replaced = sizeOf(entry);
+            Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            storedBytes.addAndGet(sizeOf(entry) - replaced);
+        } catch (IOException e) {
+            log.warn("Could not store extracted text {}", entry.getFileName(), e);
+            return;
+        }
+        if (storedBytes.get() > properties.getMaxBytes()) {
+            evict();
+        }
+    }
+
+    private synchronized void evict() {
+        List<Path> entries;
+        try (Stream<Path> files = Files.list(directory)) {
+            entries = files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparing(ExtractedTextStore::lastModified))
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Could not evict extracted texts from {}", directory, e);
+            return;
+        }
+        long total = entries.stream().mapToLong(ExtractedTextStore::sizeOf).sum();
+        for (Path entry : entries) {
+            if (total <= properties.getMaxBytes()) {
+                break;
+            }
+            long size = sizeOf(entry);
+            if (delete(entry)) {
+                total -= size;
+            }
+        }
+        storedBytes.set(total);
+    }
+
+    private static void decode(Reader reader, TextSink sink) throws IOException {
+        char[] buffer = new char[BUFFER_CHARS];
+        boolean escaped = false;
+        for (int read; !sink.isFull() && (read = reader.read(buffer)) != -1; ) {
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                if (escaped) {
+                    escaped = false;
+                    switch (buffer[i]) {
+                        case BOUNDARY -> sink.boundary();
+                        case HEADING -> sink.heading();
+                        // An escaped escape is a literal NUL, which starts the next run of text.
+                        case ESCAPE -> {
+                            start = i;
+                            continue;
+                        }
+                        default -> throw new IOException("Unknown marker " + (int) buffer[i]);
+                    }
+                    start = i + 1;
+                } else if (buffer[i] == ESCAPE) {
+                    if (i > start) {
+                        sink.text(buffer, start, i - start);
+                    }
+                    escaped = true;
+                }
+            }
+            if (!escaped && read > start) {
+                sink.text(buffer, start, read - start);
+            }
+        }
+    }
+
+    private static void touch(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.from(Instant.now()));
+        } catch (IOException ignored) {
+            // Only affects the order of eviction.
+        }
+    }
+
+    private static boolean delete(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete extracted text {}", file.getFileName(), e);
+            return false;
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Forwards text to a sink while writing it to a file, until the whole document has been read or the text
+     * grows too long to store, whichever comes last for the sink.
+     */
+    private final class RecordingSink implements TextSink {
+        private final Path file;
+        private final TextSink sink;
+        private Writer writer;
+        private long chars;
+
+        private RecordingSink(Path file, TextSink sink) throws IOException {
+            this.file = file;
+            this.sink = sink;
+            this.writer = new BufferedWriter(new OutputStreamWriter(
+                    new DeflaterOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void text(char[] characters, int start, int length) {
+            if (!sink.isFull()) {
+                sink.text(characters, start, length);
+            }
+            if (writer == null) {
+                return;
+            }
+            chars += length;
+            if (chars > properties.getMaxDocumentChars()) {
+                abandon();
+                return;
+            }
+            try {
+                int run = start;
+                for (int i = start; i < start + length; i++) {
+                    if (characters[i] == ESCAPE) {
+                        writer.write(characters, run, i - run);
+                        writer.write(ESCAPE);
+                        run = i;
+                    }
+                }
+                writer.write(characters, run, start + length - run);
+            } catch (IOException e) {
+                log.warn("Could not store extracted text {}", file.getFileName(), e);
+                abandon();
+            }
+        }
+
+        @Override
+        public void boundary() {
+            if (!sink.isFull()) {
+                sink.boundary();
+            }
+            mark(BOUNDARY);
+        }
+
+        @Override
+        public void heading() {
+            if (!sink.isFull()) {
+                sink.heading();
+            }
+            mark(HEADING);
+        }
+
+        @Override
+        public boolean isFull() {
+            return sink.isFull() && writer == null;
+        }
+
+        private void mark(char marker) {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.write(ESCAPE);
+                writer.write(marker);
+            } catch (IOException e) {
+                log.warn("Could not store extracted text {}", file.getFileName(), e);
+                abandon();
+            }
+        }
+
+        /**
+         * @return Whether the whole text was written.
+         */
+        private boolean complete() {
+            if (writer == null) {
+                return false;
+            }
+            try {
+                writer.close();
+                writer = null;
+                return true;
+            } catch (IOException e) {
+                log.warn("Could not store extracted text {}", file.getFileName(), e);
+                abandon();
+                return false;
+            }
+        }
+
+        private void abandon() {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+                // The file is deleted anyway.
+            }
+            writer = null;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.monetadev.backend.service.ai.reader;
+
+import com.github.monetadev.backend.exception.DocumentExtractionException;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+/**
+ * Extracts document text with Apache Tika, pushing it to a {@link TextSink} as the parser produces it
+ * instead of buffering the whole document, as {@link org.springframework.ai.reader.tika.TikaDocumentReader} does.
+ */
+@Component
+public class StreamingTikaReader {
+    private static final Set<String> BLOCK_ELEMENTS = Set.of(
+            "p", "div", "section", "article", "blockquote", "pre",
+            "h1", "h2", "h3", "h4", "h5", "h6",
+            "li", "dt", "dd", "tr", "br", "hr");
+    private static final Set<String> HEADING_ELEMENTS = Set.of("h1", "h2", "h3", "h4", "h5", "h6");
+    private static final Set<String> CELL_ELEMENTS = Set.of("td", "th");
+    private static final char[] SPACE = {' '};
+
+    private final Parser parser = new AutoDetectParser();
+
+    /**
+     * Streams the text of a resource into the sink, stopping early once the sink reports that it is full.
+     * @param resource The document to extract.
+     * @param sink Receives the extracted text.
+     * @throws DocumentExtractionException if the document could not be read or parsed.
+     */
+    public void extract(Resource resource, TextSink sink) throws DocumentExtractionException {
+        Metadata metadata = new Metadata();
+        if (resource.getFilename() != null) {
+            metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, resource.getFilename());
+        }
+        try (InputStream stream = resource.getInputStream()) {
+            parser.parse(stream, new BodyContentHandler(new SinkContentHandler(sink)), metadata, new ParseContext());
+        } catch (IOException | SAXException | TikaException e) {
+            if (!isStopped(e)) {
+                throw new DocumentExtractionException("Could not extract text from document: " + resource.getFilename());
+            }
+        }
+    }
+
+    private static boolean isStopped(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ExtractionStoppedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class SinkContentHandler extends DefaultHandler {
+        private final TextSink sink;
+
+        private SinkContentHandler(TextSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            if (sink.isFull()) {
+                throw new ExtractionStoppedException();
+            }
+            if (HEADING_ELEMENTS.contains(localName)) {
+                sink.boundary();
+                sink.heading();
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (BLOCK_ELEMENTS.contains(localName)) {
+                sink.boundary();
+            } else if (CELL_ELEMENTS.contains(localName)) {
+                sink.text(SPACE, 0, SPACE.length);
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (sink.isFull()) {
+                throw new ExtractionStoppedException();
+            }
+            sink.text(ch, start, length);
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            characters(ch, start, length);
+        }
+    }
+
+    private static final class ExtractionStoppedException extends SAXException {
+        private ExtractionStoppedException() {
+            super("Text sink is full");
+        }
+    }
+}
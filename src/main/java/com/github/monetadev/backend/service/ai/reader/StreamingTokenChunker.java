@@ -0,0 +1,165 @@
+package com.github.monetadev.backend.service.ai.reader;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.knuddels.jtokkit.api.IntArrayList;
+import org.springframework.ai.document.Document;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Splits streamed text into token-sized chunks as it arrives, using the same cutting rules as
+ * {@link org.springframework.ai.transformer.splitter.TokenTextSplitter}. Only a small window of
+ * not-yet-chunked text is held in memory, so the size of the source document does not matter.
+ */
+public class StreamingTokenChunker implements Chunker {
+    private static final Encoding ENCODING = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+    // Roughly four characters per token; twice that leaves room for the cut to land on punctuation.
+    private static final int CHARS_PER_TOKEN_WINDOW = 8;
+
+    private final int chunkSize;
+    private final int minChunkSizeChars;
+    private final int minChunkLengthToEmbed;
+    private final int maxNumChunks;
+    private final boolean keepSeparator;
+    private final Map<String, Object> metadata;
+    private final Consumer<Document> sink;
+
+    private final StringBuilder buffer = new StringBuilder();
+    private int cutThreshold;
+    private int emitted;
+
+    private StreamingTokenChunker(Builder builder, Map<String, Object> metadata, Consumer<Document> sink) {
+        this.chunkSize = builder.chunkSize;
+        this.minChunkSizeChars = builder.minChunkSizeChars;
+        this.minChunkLengthToEmbed = builder.minChunkLengthToEmbed;
+        this.maxNumChunks = builder.maxNumChunks;
+        this.keepSeparator = builder.keepSeparator;
+        this.metadata = metadata;
+        this.sink = sink;
+        this.cutThreshold = chunkSize * CHARS_PER_TOKEN_WINDOW;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public void text(char[] characters, int start, int length) {
+        if (isFull()) {
+            return;
+        }
+        buffer.append(characters, start, length);
+        if (buffer.length() >= cutThreshold) {
+            cut(false);
+        }
+    }
+
+    @Override
+    public void boundary() {
+        if (!buffer.isEmpty() && buffer.charAt(buffer.length() - 1) != '\n') {
+            buffer.append('\n');
+        }
+    }
+
+    @Override
+    public boolean isFull() {
+        return emitted >= maxNumChunks;
+    }
+
+    @Override
+    public int finish() {
+        cut(true);
+        buffer.setLength(0);
+        return emitted;
+    }
+
+    private void cut(boolean flushing) {
+        IntArrayList tokens = ENCODING.encode(buffer.toString());
+        int offset = 0;
+        // Without more input pending, only full-sized chunks can be cut; the tail waits for further text.
+        while (!isFull() && tokens.size() - offset > (flushing ? 0 : chunkSize)) {
+            int end = Math.min(offset + chunkSize, tokens.size());
+            String chunkText = decode(tokens, offset, end);
+            int lastPunctuation = Math.max(
+                    Math.max(chunkText.lastIndexOf('.'), chunkText.lastIndexOf('?')),
+                    Math.max(chunkText.lastIndexOf('!'), chunkText.lastIndexOf('\n')));
+            if (lastPunctuation != -1 && lastPunctuation > minChunkSizeChars) {
+                chunkText = chunkText.substring(0, lastPunctuation + 1);
+            }
+            emit(chunkText);
+            int consumed = ENCODING.encode(chunkText).size();
+            offset += Math.max(1, consumed);
+        }
+        String remaining = decode(tokens, Math.min(offset, tokens.size()), tokens.size());
+        buffer.setLength(0);
+        buffer.append(remaining);
+        cutThreshold = Math.max(chunkSize * CHARS_PER_TOKEN_WINDOW, buffer.length() * 2);
+    }
+
+    private void emit(String chunkText) {
+        String text = keepSeparator
+                ? chunkText.trim()
+                : chunkText.replace(System.lineSeparator(), " ").trim();
+        if (text.length() > minChunkLengthToEmbed) {
+            sink.accept(new Document(text, new HashMap<>(metadata)));
+            emitted++;
+        }
+    }
+
+    private static String decode(IntArrayList tokens, int from, int to) {
+        IntArrayList slice = new IntArrayList(to - from);
+        for (int i = from; i < to; i++) {
+            slice.add(tokens.get(i));
+        }
+        return ENCODING.decode(slice);
+    }
+
+    public static final class Builder {
+        private int chunkSize = 800;
+        private int minChunkSizeChars = 350;
+        private int minChunkLengthToEmbed = 5;
+        private int maxNumChunks = 10000;
+        private boolean keepSeparator = true;
+
+        private Builder() {
+        }
+
+        public Builder withChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        public Builder withMinChunkSizeChars(int minChunkSizeChars) {
+            this.minChunkSizeChars = minChunkSizeChars;
+            return this;
+        }
+
+        public Builder withMinChunkLengthToEmbed(int minChunkLengthToEmbed) {
+            this.minChunkLengthToEmbed = minChunkLengthToEmbed;
+            return this;
+        }
+
+        public Builder withMaxNumChunks(int maxNumChunks) {
+            this.maxNumChunks = maxNumChunks;
+            return this;
+        }
+
+        public Builder withKeepSeparator(boolean keepSeparator) {
+            this.keepSeparator = keepSeparator;
+            return this;
+        }
+
+        /**
+         * Creates a chunker for one document.
+         * @param metadata Metadata copied onto every emitted chunk.
+         * @param sink Receives chunks as soon as they are cut.
+         */
+        public StreamingTokenChunker build(Map<String, Object> metadata, Consumer<Document> sink) {
+            return new StreamingTokenChunker(this, Map.copyOf(metadata), sink);
+        }
+    }
+}
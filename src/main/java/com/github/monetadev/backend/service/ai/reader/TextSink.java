@@ -0,0 +1,29 @@
+package com.github.monetadev.backend.service.ai.reader;
+
+/**
+ * Receives extracted text incrementally, in document order.
+ */
+public interface TextSink {
+    /**
+     * Appends a run of text.
+     */
+    void text(char[] characters, int start, int length);
+
+    /**
+     * Marks the end of a block-level element such as a paragraph, heading, list item or table row.
+     */
+    void boundary();
+
+    /**
+     * Marks the start of a heading, whose text runs until the next {@link #boundary()}.
+     */
+    default void heading() {
+    }
+
+    /**
+     * Whether the sink has received all the text it needs, in which case extraction may stop early.
+     */
+    default boolean isFull() {
+        return false;
+    }
+}
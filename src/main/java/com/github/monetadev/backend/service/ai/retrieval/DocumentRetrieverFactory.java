@@ -0,0 +1,67 @@
+package com.github.monetadev.backend.service.ai.retrieval;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.service.ai.metrics.AiMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds the retrievers used by the AI services, hybrid or vector-only depending on configuration and on
+ * whether the chunks live in Postgres.
+ */
+@Component
+public class DocumentRetrieverFactory {
+    private final VectorStore vectorStore;
+    private final PgFullTextSearch fullTextSearch;
+    private final AiProperties.Retrieval properties;
+    private final AiMetrics metrics;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public DocumentRetrieverFactory(VectorStore vectorStore, ObjectProvider<PgFullTextSearch> fullTextSearch,
+                                    AiProperties aiProperties, AiMetrics metrics) {
+        this.vectorStore = vectorStore;
+        // Absent when the chunks are not stored in Postgres.
+        this.fullTextSearch = fullTextSearch.getIfAvailable();
+        this.properties = aiProperties.getRetrieval();
+        this.metrics = metrics;
+    }
+
+    /**
+     * Creates a retriever over the chunks of a single user, or of all users.
+     * @param userId The owner of the chunks to retrieve, or {@code null} to retrieve from all chunks.
+     * @param topK The maximum number of chunks to retrieve.
+     * @param similarityThreshold The minimum similarity of chunks matched by the vector query.
+     * @return The {@link DocumentRetriever}.
+     */
+    public DocumentRetriever create(UUID userId, int topK, double similarityThreshold) {
+        VectorStoreDocumentRetriever.Builder vectorRetriever = VectorStoreDocumentRetriever.builder()
+                .vectorStore(vectorStore)
+                .similarityThreshold(similarityThreshold)
+                .topK(topK);
+        if (userId != null) {
+            vectorRetriever.filterExpression(new FilterExpressionBuilder()
+                    .eq("userId", userId.toString())
+                    .build());
+        }
+        if (!properties.isHybrid() || fullTextSearch == null) {
+            return metrics.instrument(vectorRetriever.build(), "vector");
+        }
+        return metrics.instrument(
+                new HybridDocumentRetriever(vectorRetriever.build(), fullTextSearch, executor, userId, topK, properties.getRrfK()),
+                "hybrid");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
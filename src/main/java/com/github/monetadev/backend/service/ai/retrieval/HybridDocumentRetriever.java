@@ -0,0 +1,80 @@
+package com.github.monetadev.backend.service.ai.retrieval;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link DocumentRetriever} that runs a vector query and a full-text query over the same chunks in parallel and
+ * fuses both rankings with reciprocal rank fusion. Keyword-heavy queries that fall below the similarity threshold
+ * still find the chunks containing their terms, and chunks found by both queries rank first.
+ * <p>
+ * The fused score is normalized so that a chunk ranked first by both queries scores {@code 1}.
+ */
+public class HybridDocumentRetriever implements DocumentRetriever {
+    private final DocumentRetriever vectorRetriever;
+    private final PgFullTextSearch fullTextSearch;
+    private final Executor executor;
+    private final UUID userId;
+    private final int topK;
+    private final int rrfK;
+
+    HybridDocumentRetriever(DocumentRetriever vectorRetriever,
+                            PgFullTextSearch fullTextSearch,
+                            Executor executor,
+                            UUID userId,
+                            int topK,
+                            int rrfK) {
+        this.vectorRetriever = vectorRetriever;
+        this.fullTextSearch = fullTextSearch;
+        this.executor = executor;
+        this.userId = userId;
+        this.topK = topK;
+        this.rrfK = rrfK;
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        CompletableFuture<List<Document>> vectorResults =
+                CompletableFuture.supplyAsync(() -> vectorRetriever.retrieve(query), executor);
+        List<Document> lexicalResults = fullTextSearch.search(query.text(), userId, topK);
+        try {
+            return fuse(vectorResults.join(), lexicalResults);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private List<Document> fuse(List<Document> vectorResults, List<Document> lexicalResults) {
+        Map<String, Document> documents = new LinkedHashMap<>();
+        Map<String, Double> scores = new HashMap<>();
+        // Vector results go first, so a chunk found by both keeps the instance carrying its distance.
+        accumulate(vectorResults, documents, scores);
+        accumulate(lexicalResults, documents, scores);
+
+        double maxScore = 2.0 / (rrfK + 1);
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(topK)
+                .map(entry -> documents.get(entry.getKey()).mutate()
+                        .score(entry.getValue() / maxScore)
+                        .build())
+                .toList();
+    }
+
+    private void accumulate(List<Document> ranking, Map<String, Document> documents, Map<String, Double> scores) {
+        for (int rank = 0; rank < ranking.size(); rank++) {
+            Document document = ranking.get(rank);
+            documents.putIfAbsent(document.getId(), document);
+            scores.merge(document.getId(), 1.0 / (rrfK + rank + 1), Double::sum);
+        }
+    }
+}
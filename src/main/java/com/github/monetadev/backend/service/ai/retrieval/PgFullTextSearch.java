@@ -0,0 +1,126 @@
+package com.github.monetadev.backend.service.ai.retrieval;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.monetadev.backend.config.VectorStoreConfig;
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.service.ai.vectorstore.PgMetadataIndexes;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Full-text search over the content of the pgvector chunk table, backed by a GIN index on the content's
+ * {@code tsvector}. Query terms are combined with OR and ranked by cover density, so long queries still
+ * match chunks that contain only some of their terms, while chunks containing more of them rank first.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = VectorStoreConfig.TYPE_PROPERTY, havingValue = VectorStoreConfig.PGVECTOR, matchIfMissing = true)
+public class PgFullTextSearch {
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final AiProperties.Retrieval properties;
+    private final String schemaName;
+    private final String tableName;
+    private final String indexName;
+
+    public PgFullTextSearch(JdbcTemplate jdbcTemplate,
+                            ObjectMapper objectMapper,
+                            AiProperties aiProperties,
+                            @Value("${spring.ai.vectorstore.pgvector.schema-name:public}") String schemaName,
+                            @Value("${spring.ai.vectorstore.pgvector.table-name:vector_store}") String tableName) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = aiProperties.getRetrieval();
+        this.schemaName = schemaName;
+        this.tableName = schemaName + "." + tableName;
+        this.indexName = tableName + "_content_fts_idx";
+    }
+
+    /**
+     * Creates the full-text index once the vector store created its table, without locking out writes to it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeSchema() {
+        if (!properties.isHybrid() || !properties.isInitializeSchema()) {
+            return;
+        }
+        try {
+            PgMetadataIndexes.createIndexConcurrently(jdbcTemplate, schemaName, indexName,
+                    tableName + " USING GIN (" + tsvector() + ")");
+        } catch (DataAccessException e) {
+            log.warn("Could not create full-text index {}, lexical retrieval will scan the chunk table", indexName, e);
+        }
+    }
+
+    /**
+     * Finds the chunks matching the terms of a query.
+     * @param query The query text.
+     * @param userId The owner of the chunks to search, or {@code null} to search all chunks.
+     * @param topK The maximum number of chunks to return.
+     * @return The matching chunks, best ranked first, with their rank as score. Empty if the search failed.
+     */
+    public List<Document> search(String query, UUID userId, int topK) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        List<Object> args = new ArrayList<>();
+        args.add(query);
+        String ownerFilter = "";
+        if (userId != null) {
+            ownerFilter = " AND metadata->>'userId' = ?";
+            args.add(userId.toString());
+        }
+        args.add(topK);
+        try {
+            return jdbcTemplate.query(
+                    "SELECT id, content, metadata, ts_rank_cd(" + tsvector() + ", q) AS rank " +
+                            "FROM " + tableName + ", " +
+                            "replace(plainto_tsquery('" + properties.getTextSearchConfig() + "', ?)::text, '&', '|')::tsquery q " +
+                            "WHERE " + tsvector() + " @@ q" + ownerFilter + " " +
+                            "ORDER BY rank DESC LIMIT ?",
+                    (rs, rowNum) -> Document.builder()
+                            .id(rs.getString("id"))
+                            .text(rs.getString("content"))
+                            .metadata(parseMetadata(rs.getString("metadata")))
+                            .score(rs.getDouble("rank"))
+                            .build(),
+                    args.toArray());
+        } catch (DataAccessException e) {
+            log.warn("Full-text chunk search failed, continuing with vector results only", e);
+            return List.of();
+        }
+    }
+
+    private String tsvector() {
+        // Must match the indexed expression exactly for the planner to use the index.
+        return "to_tsvector('" + properties.getTextSearchConfig() + "', content)";
+    }
+
+    private Map<String, Object> parseMetadata(String metadata) {
+        if (metadata == null) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(metadata, METADATA_TYPE);
+        } catch (JsonProcessingException e) {
+            return Map.of();
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.github.monetadev.backend.service.ai.vectorstore;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph over unit vectors, scored by dot product, i.e. cosine similarity.
+ * <p>
+ * Vectors live in a direct buffer outside the heap, only the adjacency lists are heap objects. Nodes are never
+ * removed from the graph, deleted nodes are marked and skipped in results but still used for navigation, the
+ * owner rebuilds the graph once too many of them accumulate. Not thread-safe, callers serialize writes.
+ */
+final class HnswGraph {
+    private static final int MAX_LEVEL = 16;
+
+    private final int dimensions;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    private FloatBuffer vectors;
+    // links[node][level] holds the neighbor count followed by the neighbors.
+    private int[][][] links;
+    private final BitSet deleted = new BitSet();
+    private int size;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswGraph(int dimensions, int m, int efConstruction, int initialCapacity) {
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.vectors = allocate(Math.max(16, initialCapacity) * dimensions);
+        this.links = new int[Math.max(16, initialCapacity)][][];
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int liveCount() {
+        return size - deletedCount;
+    }
+
+    int deletedCount() {
+        return deletedCount;
+    }
+
+    boolean isDeleted(int node) {
+        return deleted.get(node);
+    }
+
+    void markDeleted(int node) {
+        if (!deleted.get(node)) {
+            deleted.set(node);
+            deletedCount++;
+        }
+    }
+
+    float[] vector(int node) {
+        float[] vector = new float[dimensions];
+        vectors.get(node * dimensions, vector);
+        return vector;
+    }
+
+    /**
+     * Inserts a unit vector and links it into every level it is drawn for.
+     * @return The node of the vector.
+     */
+    int add(float[] vector) {
+        ensureCapacity(size + 1);
+        int node = size++;
+        vectors.put(node * dimensions, vector);
+        int level = Math.min(MAX_LEVEL, (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier));
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[maxConnections(l) + 1];
+        }
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(vector, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Neighbor> candidates = searchLayer(vector, List.of(current), efConstruction, l, n -> true);
+            List<Neighbor> selected = selectNeighbors(candidates, m);
+            for (Neighbor neighbor : selected) {
+                append(node, l, neighbor.node());
+                connect(neighbor.node(), node, l);
+            }
+            current = candidates.getFirst().node();
+        }
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+        return node;
+    }
+
+    /**
+     * Approximate nearest neighbors of a unit vector among the accepted, non-deleted nodes.
+     * @return Up to {@code k} neighbors, most similar first.
+     */
+    List<Neighbor> search(float[] query, int k, int ef, IntPredicate accept) {
+        if (entryPoint < 0) {
+            return List.of();
+        }
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        IntPredicate live = node -> !deleted.get(node) && accept.test(node);
+        List<Neighbor> results = searchLayer(query, List.of(current), Math.max(ef, k), 0, live);
+        return results.size() > k ? results.subList(0, k) : results;
+    }
+
+    /**
+     * Exact nearest neighbors, cheaper than the graph for small partitions.
+     */
+    List<Neighbor> scan(float[] query, int k, IntPredicate accept) {
+        PriorityQueue<Neighbor> best = new PriorityQueue<>(Comparator.comparingDouble(Neighbor::similarity));
+        for (int node = 0; node < size; node++) {
+            if (deleted.get(node) || !accept.test(node)) {
+                continue;
+            }
+            float similarity = similarity(query, node);
+            if (best.size() < k) {
+                best.add(new Neighbor(node, similarity));
+            } else if (similarity > best.peek().similarity()) {
+                best.poll();
+                best.add(new Neighbor(node, similarity));
+            }
+        }
+        List<Neighbor> results = new ArrayList<>(best);
+        results.sort(Comparator.comparingDouble(Neighbor::similarity).reversed());
+        return results;
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentSimilarity = similarity(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbors = links[current][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                float similarity = similarity(query, neighbors[i]);
+                if (similarity > currentSimilarity) {
+                    current = neighbors[i];
+                    currentSimilarity = similarity;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private List<Neighbor> searchLayer(float[] query, List<Integer> entryPoints, int ef, int level, IntPredicate accept) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Neighbor> candidates = new PriorityQueue<>(Comparator.comparingDouble(Neighbor::similarity).reversed());
+        PriorityQueue<Neighbor> results = new PriorityQueue<>(Comparator.comparingDouble(Neighbor::similarity));
+        for (int entry : entryPoints) {
+            visited.set(entry);
+            Neighbor neighbor = new Neighbor(entry, similarity(query, entry));
+            candidates.add(neighbor);
+            if (accept.test(entry)) {
+                results.add(neighbor);
+            }
+        }
+        while (!candidates.isEmpty()) {
+            Neighbor candidate = candidates.poll();
+            if (results.size() >= ef && candidate.similarity() < results.peek().similarity()) {
+                break;
+            }
+            int[] neighbors = links[candidate.node()][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int node = neighbors[i];
+                if (visited.get(node)) {
+                    continue;
+                }
+                visited.set(node);
+                float similarity = similarity(query, node);
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    Neighbor neighbor = new Neighbor(node, similarity);
+                    candidates.add(neighbor);
+                    // Rejected nodes are still traversed, so a filter does not disconnect the graph.
+                    if (accept.test(node)) {
+                        results.add(neighbor);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        List<Neighbor> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble(Neighbor::similarity).reversed());
+        return sorted;
+    }
+
+    /**
+     * Keeps candidates that are closer to the base than to any already selected neighbor, which preserves
+     * links towards distinct regions, then fills up with the closest pruned candidates.
+     */
+    private List<Neighbor> selectNeighbors(List<Neighbor> candidates, int limit) {
+        List<Neighbor> selected = new ArrayList<>(limit);
+        List<Neighbor> pruned = new ArrayList<>();
+        for (Neighbor candidate : candidates) {
+            if (selected.size() >= limit) {
+                break;
+            }
+            boolean diverse = true;
+            for (Neighbor chosen : selected) {
+                if (similarity(candidate.node(), chosen.node()) > candidate.similarity()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : pruned).add(candidate);
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < limit; i++) {
+            selected.add(pruned.get(i));
+        }
+        return selected;
+    }
+
+    private void connect(int node, int neighbor, int level) {
+        int[] neighbors = links[node][level];
+        if (neighbors[0] < maxConnections(level)) {
+            append(node, level, neighbor);
+            return;
+        }
+        float[] base = vector(node);
+        List<Neighbor> candidates = new ArrayList<>(neighbors[0] + 1);
+        for (int i = 1; i <= neighbors[0]; i++) {
+            candidates.add(new Neighbor(neighbors[i], similarity(base, neighbors[i])));
+        }
+        candidates.add(new Neighbor(neighbor, similarity(base, neighbor)));
+        candidates.sort(Comparator.comparingDouble(Neighbor::similarity).reversed());
+        List<Neighbor> selected = selectNeighbors(candidates, maxConnections(level));
+        neighbors[0] = 0;
+        for (Neighbor chosen : selected) {
+            append(node, level, chosen.node());
+        }
+    }
+
+    private void append(int node, int level, int neighbor) {
+        int[] neighbors = links[node][level];
+        neighbors[++neighbors[0]] = neighbor;
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private float similarity(float[] query, int node) {
+        int offset = node * dimensions;
+        float sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += query[i] * vectors.get(offset + i);
+        }
+        return sum;
+    }
+
+    private float similarity(int a, int b) {
+        int offsetA = a * dimensions;
+        int offsetB = b * dimensions;
+        float sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += vectors.get(offsetA + i) * vectors.get(offsetB + i);
+        }
+        return sum;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= links.length) {
+            return;
+        }
+        int grown = Math.max(capacity, links.length * 2);
+        FloatBuffer resized = allocate(grown * dimensions);
+        resized.put(0, vectors, 0, size * dimensions);
+        vectors = resized;
+        links = Arrays.copyOf(links, grown);
+    }
+
+    private static FloatBuffer allocate(int floats) {
+        return ByteBuffer.allocateDirect(floats * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    /**
+     * Bytes needed by {@link #writeTo(ByteBuffer)}.
+     */
+    long serializedSize() {
+        long bytes = 6L * Integer.BYTES + (long) size * dimensions * Float.BYTES + size;
+        for (int node = 0; node < size; node++) {
+            bytes += Integer.BYTES;
+            for (int[] level : links[node]) {
+                bytes += (long) (level[0] + 1) * Integer.BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        buffer.putInt(dimensions).putInt(m).putInt(efConstruction)
+                .putInt(size).putInt(entryPoint).putInt(maxLevel);
+        for (int node = 0; node < size; node++) {
+            buffer.put((byte) (deleted.get(node) ? 1 : 0));
+            buffer.putInt(links[node].length);
+            for (int[] level : links[node]) {
+                for (int i = 0; i <= level[0]; i++) {
+                    buffer.putInt(level[i]);
+                }
+            }
+        }
+        FloatBuffer target = buffer.asFloatBuffer();
+        target.put(0, vectors, 0, size * dimensions);
+        buffer.position(buffer.position() + size * dimensions * Float.BYTES);
+    }
+
+    static HnswGraph readFrom(ByteBuffer buffer, int initialCapacity) {
+        int dimensions = buffer.getInt();
+        int m = buffer.getInt();
+        int efConstruction = buffer.getInt();
+        int size = buffer.getInt();
+        HnswGraph graph = new HnswGraph(dimensions, m, efConstruction, Math.max(initialCapacity, size));
+        graph.size = size;
+        graph.entryPoint = buffer.getInt();
+        graph.maxLevel = buffer.getInt();
+        for (int node = 0; node < size; node++) {
+            if (buffer.get() != 0) {
+                graph.deleted.set(node);
+                graph.deletedCount++;
+            }
+            int levels = buffer.getInt();
+            graph.links[node] = new int[levels][];
+            for (int l = 0; l < levels; l++) {
+                int[] neighbors = new int[graph.maxConnections(l) + 1];
+                neighbors[0] = buffer.getInt();
+                for (int i = 1; i <= neighbors[0]; i++) {
+                    neighbors[i] = buffer.getInt();
+                }
+                graph.links[node][l] = neighbors;
+            }
+        }
+        FloatBuffer source = buffer.asFloatBuffer();
+        graph.vectors.put(0, source, 0, size * dimensions);
+        buffer.position(buffer.position() + size * dimensions * Float.BYTES);
+        return graph;
+    }
+
+    record Neighbor(int node, float similarity) {
+    }
+}
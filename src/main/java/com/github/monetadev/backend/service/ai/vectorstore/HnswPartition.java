@@ -0,0 +1,335 @@
+package com.github.monetadev.backend.service.ai.vectorstore;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.monetadev.backend.config.prop.AiProperties;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * The chunks of a single owner: an {@link HnswGraph} plus the id, text and metadata of every node. Searches
+ * share a read lock, writes take the write lock of this partition only, so tenants never block each other.
+ */
+final class HnswPartition {
+    private static final int MAGIC = 0x484E5357;
+    private static final int VERSION = 1;
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AiProperties.Hnsw properties;
+    private HnswGraph graph;
+    private List<String> ids = new ArrayList<>();
+    private List<String> texts = new ArrayList<>();
+    private List<Map<String, Object>> metadata = new ArrayList<>();
+    private Map<String, Integer> nodeById = new HashMap<>();
+    private volatile boolean dirty;
+
+    HnswPartition(AiProperties.Hnsw properties) {
+        this.properties = properties;
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    int liveCount() {
+        lock.readLock().lock();
+        try {
+            return graph == null ? 0 : graph.liveCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void add(List<StoredChunk> chunks) {
+        lock.writeLock().lock();
+        try {
+            for (StoredChunk chunk : chunks) {
+                if (graph == null) {
+                    graph = new HnswGraph(chunk.vector().length, properties.getM(), properties.getEfConstruction(), properties.getInitialCapacity());
+                }
+                if (chunk.vector().length != graph.dimensions()) {
+                    throw new IllegalArgumentException("Expected embeddings of " + graph.dimensions() + " dimensions, got " + chunk.vector().length);
+                }
+                Integer existing = nodeById.get(chunk.id());
+                if (existing != null) {
+                    graph.markDeleted(existing);
+                }
+                int node = graph.add(normalize(chunk.vector()));
+                ids.add(chunk.id());
+                texts.add(chunk.text());
+                metadata.add(Collections.unmodifiableMap(new HashMap<>(chunk.metadata())));
+                nodeById.put(chunk.id(), node);
+            }
+            dirty = true;
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes the chunks with the given ids.
+     * @return The ids that were found in this partition.
+     */
+    List<String> delete(Collection<String> chunkIds) {
+        lock.writeLock().lock();
+        try {
+            List<String> deleted = new ArrayList<>();
+            for (String id : chunkIds) {
+                Integer node = nodeById.remove(id);
+                if (node != null) {
+                    graph.markDeleted(node);
+                    deleted.add(id);
+                }
+            }
+            if (!deleted.isEmpty()) {
+                dirty = true;
+                compactIfNeeded();
+            }
+            return deleted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes the chunks whose metadata matches a predicate.
+     * @return The ids of the deleted chunks.
+     */
+    List<String> deleteIf(Predicate<Map<String, Object>> matcher) {
+        return delete(find(matcher, Integer.MAX_VALUE).stream().map(StoredChunk::id).toList());
+    }
+
+    /**
+     * Deletes the chunks whose metadata matches a predicate and adds others in their place, without letting a
+     * search observe the partition in between.
+     * @return The number of deleted chunks, nothing is added if none matched.
+     */
+    int replace(Predicate<Map<String, Object>> matcher, List<StoredChunk> chunks) {
+        lock.writeLock().lock();
+        try {
+            List<String> deleted = deleteIf(matcher);
+            if (!deleted.isEmpty()) {
+                add(chunks);
+            }
+            return deleted.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds values to the metadata of the live chunks whose metadata matches a predicate.
+     * @return The number of updated chunks.
+     */
+    int updateMetadata(Predicate<Map<String, Object>> matcher, Map<String, Object> values) {
+        lock.writeLock().lock();
+        try {
+            int updated = 0;
+            for (int node = 0; graph != null && node < graph.size(); node++) {
+                if (!graph.isDeleted(node) && matcher.test(metadata.get(node))) {
+                    Map<String, Object> merged = new HashMap<>(metadata.get(node));
+                    merged.putAll(values);
+                    metadata.set(node, Collections.unmodifiableMap(merged));
+                    updated++;
+                }
+            }
+            if (updated > 0) {
+                dirty = true;
+            }
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Live chunks whose metadata matches a predicate, vectors included.
+     */
+    List<StoredChunk> find(Predicate<Map<String, Object>> matcher, int limit) {
+        lock.readLock().lock();
+        try {
+            List<StoredChunk> found = new ArrayList<>();
+            if (graph == null) {
+                return found;
+            }
+            for (int node = 0; node < graph.size() && found.size() < limit; node++) {
+                if (!graph.isDeleted(node) && matcher.test(metadata.get(node))) {
+                    found.add(new StoredChunk(ids.get(node), texts.get(node), metadata.get(node), graph.vector(node)));
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<SearchHit> search(float[] query, int topK, double similarityThreshold, Predicate<Map<String, Object>> matcher) {
+        lock.readLock().lock();
+        try {
+            if (graph == null || graph.liveCount() == 0) {
+                return List.of();
+            }
+            float[] unit = normalize(query);
+            List<HnswGraph.Neighbor> neighbors = graph.liveCount() <= properties.getExactSearchThreshold()
+                    ? graph.scan(unit, topK, node -> matcher.test(metadata.get(node)))
+                    : graph.search(unit, topK, properties.getEfSearch(), node -> matcher.test(metadata.get(node)));
+            List<SearchHit> hits = new ArrayList<>(neighbors.size());
+            for (HnswGraph.Neighbor neighbor : neighbors) {
+                if (neighbor.similarity() >= similarityThreshold) {
+                    int node = neighbor.node();
+                    hits.add(new SearchHit(ids.get(node), texts.get(node), metadata.get(node), neighbor.similarity()));
+                }
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Deleted nodes still cost traversal time and memory, rebuild the graph from the live ones once they
+     * make up a large share of it. Vectors are reinserted as stored, nothing is embedded again.
+     */
+    private void compactIfNeeded() {
+        if (graph.deletedCount() == 0 || graph.deletedCount() < graph.size() * properties.getCompactionRatio()) {
+            return;
+        }
+        HnswGraph compacted = new HnswGraph(graph.dimensions(), properties.getM(), properties.getEfConstruction(), Math.max(properties.getInitialCapacity(), graph.liveCount()));
+        List<String> liveIds = new ArrayList<>(graph.liveCount());
+        List<String> liveTexts = new ArrayList<>(graph.liveCount());
+        List<Map<String, Object>> liveMetadata = new ArrayList<>(graph.liveCount());
+        Map<String, Integer> liveNodes = new HashMap<>();
+        for (int node = 0; node < graph.size(); node++) {
+            if (graph.isDeleted(node)) {
+                continue;
+            }
+            int compactedNode = compacted.add(graph.vector(node));
+            liveIds.add(ids.get(node));
+            liveTexts.add(texts.get(node));
+            liveMetadata.add(metadata.get(node));
+            liveNodes.put(ids.get(node), compactedNode);
+        }
+        graph = compacted;
+        ids = liveIds;
+        texts = liveTexts;
+        metadata = liveMetadata;
+        nodeById = liveNodes;
+    }
+
+    /**
+     * Writes the partition to a memory-mapped file, replacing the previous snapshot atomically.
+     */
+    void snapshot(Path file, ObjectMapper objectMapper) {
+        lock.readLock().lock();
+        try {
+            if (graph == null) {
+                return;
+            }
+            byte[][] records = new byte[graph.size()][];
+            long size = 2L * Integer.BYTES + graph.serializedSize();
+            for (int node = 0; node < graph.size(); node++) {
+                records[node] = encode(ids.get(node), texts.get(node), objectMapper.writeValueAsString(metadata.get(node)));
+                size += records[node].length;
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Partition snapshot of " + size + " bytes exceeds a single mapping");
+            }
+
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC).putInt(VERSION);
+                graph.writeTo(buffer);
+                for (byte[] record : records) {
+                    buffer.put(record);
+                }
+                buffer.force();
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write vector store snapshot " + file, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static HnswPartition load(Path file, AiProperties.Hnsw properties, ObjectMapper objectMapper) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IllegalStateException("Unsupported vector store snapshot " + file);
+            }
+            HnswPartition partition = new HnswPartition(properties);
+            partition.graph = HnswGraph.readFrom(buffer, properties.getInitialCapacity());
+            for (int node = 0; node < partition.graph.size(); node++) {
+                String id = readString(buffer);
+                partition.ids.add(id);
+                partition.texts.add(readString(buffer));
+                partition.metadata.add(Collections.unmodifiableMap(objectMapper.readValue(readString(buffer), METADATA_TYPE)));
+                if (!partition.graph.isDeleted(node)) {
+                    partition.nodeById.put(id, node);
+                }
+            }
+            return partition;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read vector store snapshot " + file, e);
+        }
+    }
+
+    private static byte[] encode(String... values) {
+        byte[][] encoded = new byte[values.length][];
+        int length = 0;
+        for (int i = 0; i < values.length; i++) {
+            encoded[i] = values[i] == null ? new byte[0] : values[i].getBytes(StandardCharsets.UTF_8);
+            length += Integer.BYTES + encoded[i].length;
+        }
+        ByteBuffer record = ByteBuffer.allocate(length);
+        for (byte[] value : encoded) {
+            record.putInt(value.length).put(value);
+        }
+        return record.array();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] value = new byte[buffer.getInt()];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        float[] unit = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = norm == 0 ? 0 : (float) (vector[i] / norm);
+        }
+        return unit;
+    }
+
+    record StoredChunk(String id, String text, Map<String, Object> metadata, float[] vector) {
+    }
+
+    record SearchHit(String id, String text, Map<String, Object> metadata, float similarity) {
+    }
+}
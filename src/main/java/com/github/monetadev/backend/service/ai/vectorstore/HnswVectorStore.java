@@ -0,0 +1,319 @@
+package com.github.monetadev.backend.service.ai.vectorstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.config.prop.StorageProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.converter.SimpleVectorStoreFilterExpressionConverter;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * In-process {@link VectorStore} that keeps one HNSW graph per {@code userId}. Searches filtered on a user, which
+ * is nearly every search, only traverse that user's chunks, and small partitions are scanned exactly instead.
+ * <p>
+ * Partitions are snapshotted to memory-mapped files when they changed, periodically and on shutdown, and loaded
+ * again on startup. Without a snapshot directory the store is purely in memory, which suits tests and local
+ * development without Postgres.
+ */
+@Slf4j
+public class HnswVectorStore implements VectorStore {
+    private static final String USER_ID = "userId";
+    private static final String SHARED_PARTITION = "_shared";
+    private static final String SNAPSHOT_SUFFIX = ".hnsw";
+    // Covers user ids, anything else is hex-encoded into the file name.
+    private static final Pattern PLAIN_KEY = Pattern.compile("[0-9a-f-]+");
+
+    private final EmbeddingModel embeddingModel;
+    private final AiProperties.Hnsw properties;
+    private final ObjectMapper objectMapper;
+    private final Path snapshotDirectory;
+    private final BatchingStrategy batchingStrategy = new TokenCountBatchingStrategy();
+    private final SimpleVectorStoreFilterExpressionConverter filterConverter = new SimpleVectorStoreFilterExpressionConverter();
+    private final SpelExpressionParser expressionParser = new SpelExpressionParser();
+    private final Map<String, HnswPartition> partitions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("hnsw-snapshot-"));
+
+    public HnswVectorStore(EmbeddingModel embeddingModel, AiProperties aiProperties, StorageProperties storageProperties,
+                           ObjectMapper objectMapper) {
+        this.embeddingModel = embeddingModel;
+        this.properties = aiProperties.getHnsw();
+        this.objectMapper = objectMapper;
+        this.snapshotDirectory = StringUtils.hasText(properties.getSnapshotDirectory())
+                ? storageProperties.resolve(properties.getSnapshotDirectory())
+                : null;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        Path directory = snapshotDirectory;
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(file -> file.getFileName().toString().endsWith(SNAPSHOT_SUFFIX))
+                        .forEach(file -> partitions.put(partitionKeyOf(file), HnswPartition.load(file, properties, objectMapper)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load vector store snapshots from " + directory, e);
+        }
+        log.info("Loaded {} vector store partitions from {}", partitions.size(), directory);
+        long intervalMillis = properties.getSnapshotInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::snapshot, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            // A periodic snapshot still running would write the same files as the final one.
+            if (!scheduler.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Periodic vector store snapshot did not finish in time, taking the final snapshot anyway");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshot();
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        List<float[]> embeddings = embeddingModel.embed(documents, EmbeddingOptionsBuilder.builder().build(), batchingStrategy);
+        Map<String, List<HnswPartition.StoredChunk>> chunksByPartition = new HashMap<>();
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            chunksByPartition.computeIfAbsent(partitionKey(document.getMetadata()), key -> new ArrayList<>())
+                    .add(new HnswPartition.StoredChunk(document.getId(), document.getText(), document.getMetadata(), embeddings.get(i)));
+        }
+        chunksByPartition.forEach((key, chunks) -> partition(key).add(chunks));
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        partitions.values().forEach(partition -> partition.delete(idList));
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        Predicate<Map<String, Object>> matcher = matcher(filterExpression);
+        targetPartitions(filterExpression).forEach(partition -> partition.deleteIf(matcher));
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        Filter.Expression filterExpression = request.getFilterExpression();
+        Collection<HnswPartition> targets = targetPartitions(filterExpression);
+        if (targets.isEmpty()) {
+            return List.of();
+        }
+        float[] query = embeddingModel.embed(request.getQuery());
+        Predicate<Map<String, Object>> matcher = matcher(filterExpression);
+        return targets.stream()
+                .flatMap(partition -> partition.search(query, request.getTopK(), request.getSimilarityThreshold(), matcher).stream())
+                .sorted(Comparator.comparingDouble(HnswPartition.SearchHit::similarity).reversed())
+                .limit(request.getTopK())
+                .map(HnswVectorStore::toDocument)
+                .toList();
+    }
+
+    /**
+     * Metadata of any chunk whose metadata holds the given value.
+     */
+    public Optional<Map<String, Object>> findMetadata(String key, String value) {
+        return findMetadata(metadata -> value.equals(String.valueOf(metadata.get(key))));
+    }
+
+    /**
+     * Metadata of any chunk whose metadata matches a predicate.
+     */
+    public Optional<Map<String, Object>> findMetadata(Predicate<Map<String, Object>> matcher) {
+        return partitions.values().stream()
+                .flatMap(partition -> partition.find(matcher, 1).stream())
+                .map(HnswPartition.StoredChunk::metadata)
+                .findFirst();
+    }
+
+    /**
+     * Duplicates the chunks whose metadata holds the given value, reusing their vectors.
+     * @param expectedCount The number of chunks expected to match, nothing is copied if it differs.
+     * @param overrides Metadata replacing the values of the copies, including their owner.
+     * @return The number of copied chunks.
+     */
+    public int copy(String key, String value, int expectedCount, Map<String, Object> overrides) {
+        Predicate<Map<String, Object>> matcher = metadata -> value.equals(String.valueOf(metadata.get(key)));
+        List<HnswPartition.StoredChunk> copies = partitions.values().stream()
+                .flatMap(partition -> partition.find(matcher, Integer.MAX_VALUE).stream())
+                .map(chunk -> {
+                    Map<String, Object> metadata = new HashMap<>(chunk.metadata());
+                    metadata.putAll(overrides);
+                    return new HnswPartition.StoredChunk(UUID.randomUUID().toString(), chunk.text(), metadata, chunk.vector());
+                })
+                .toList();
+        if (copies.isEmpty() || copies.size() != expectedCount) {
+            return 0;
+        }
+        partition(partitionKey(overrides)).add(copies);
+        return copies.size();
+    }
+
+    /**
+     * Adds values to the metadata of the chunks whose metadata holds the given value.
+     * @return The number of updated chunks.
+     */
+    public int updateMetadata(String key, String value, Map<String, Object> values) {
+        Predicate<Map<String, Object>> matcher = metadata -> value.equals(String.valueOf(metadata.get(key)));
+        return partitions.values().stream()
+                .mapToInt(partition -> partition.updateMetadata(matcher, values))
+                .sum();
+    }
+
+    /**
+     * Replaces the chunks whose metadata holds the given value with documents embedded beforehand, in a single
+     * step for searches. The documents must belong to the partition of the replaced chunks.
+     * @return The number of stored documents, 0 if no chunk was replaced.
+     */
+    public int replace(String key, String value, List<Document> documents, List<float[]> embeddings) {
+        if (documents.isEmpty()) {
+            return 0;
+        }
+        HnswPartition partition = partitions.get(partitionKey(documents.get(0).getMetadata()));
+        if (partition == null) {
+            return 0;
+        }
+        List<HnswPartition.StoredChunk> chunks = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            chunks.add(new HnswPartition.StoredChunk(document.getId(), document.getText(), document.getMetadata(), embeddings.get(i)));
+        }
+        Predicate<Map<String, Object>> matcher = metadata -> value.equals(String.valueOf(metadata.get(key)));
+        return partition.replace(matcher, chunks) > 0 ? chunks.size() : 0;
+    }
+
+    private void snapshot() {
+        Path directory = snapshotDirectory;
+        if (directory == null) {
+            return;
+        }
+        partitions.forEach((key, partition) -> {
+            if (!partition.isDirty()) {
+                return;
+            }
+            try {
+                partition.snapshot(directory.resolve(fileNameOf(key)), objectMapper);
+            } catch (RuntimeException e) {
+                log.warn("Could not snapshot vector store partition {}, retrying with the next snapshot", key, e);
+            }
+        });
+    }
+
+    private HnswPartition partition(String key) {
+        return partitions.computeIfAbsent(key, ignored -> new HnswPartition(properties));
+    }
+
+    /**
+     * The partition a search or delete is confined to when its filter pins a single user, otherwise all.
+     */
+    private Collection<HnswPartition> targetPartitions(Filter.Expression filterExpression) {
+        String userId = pinnedUserId(filterExpression);
+        if (userId == null) {
+            return partitions.values();
+        }
+        HnswPartition partition = partitions.get(userId);
+        return partition == null ? List.of() : List.of(partition);
+    }
+
+    private static String pinnedUserId(Filter.Expression expression) {
+        if (expression == null) {
+            return null;
+        }
+        if (expression.type() == Filter.ExpressionType.EQ
+                && expression.left() instanceof Filter.Key key
+                && USER_ID.equals(key.key())
+                && expression.right() instanceof Filter.Value value) {
+            return String.valueOf(value.value());
+        }
+        if (expression.type() != Filter.ExpressionType.AND) {
+            return null;
+        }
+        if (expression.left() instanceof Filter.Expression left && pinnedUserId(left) != null) {
+            return pinnedUserId(left);
+        }
+        return expression.right() instanceof Filter.Expression right ? pinnedUserId(right) : null;
+    }
+
+    private Predicate<Map<String, Object>> matcher(Filter.Expression filterExpression) {
+        if (filterExpression == null) {
+            return metadata -> true;
+        }
+        Expression expression = expressionParser.parseExpression(filterConverter.convertExpression(filterExpression));
+        return metadata -> {
+            StandardEvaluationContext context = new StandardEvaluationContext();
+            context.setVariable("metadata", metadata);
+            return Boolean.TRUE.equals(expression.getValue(context, Boolean.class));
+        };
+    }
+
+    private static String partitionKey(Map<String, Object> metadata) {
+        Object userId = metadata.get(USER_ID);
+        return userId == null ? SHARED_PARTITION : userId.toString();
+    }
+
+    private static String fileNameOf(String key) {
+        String stem = PLAIN_KEY.matcher(key).matches()
+                ? key
+                : "x-" + HexFormat.of().formatHex(key.getBytes(StandardCharsets.UTF_8));
+        return stem + SNAPSHOT_SUFFIX;
+    }
+
+    private static String partitionKeyOf(Path file) {
+        String name = file.getFileName().toString();
+        String stem = name.substring(0, name.length() - SNAPSHOT_SUFFIX.length());
+        return stem.startsWith("x-")
+                ? new String(HexFormat.of().parseHex(stem.substring(2)), StandardCharsets.UTF_8)
+                : stem;
+    }
+
+    private static Document toDocument(HnswPartition.SearchHit hit) {
+        Map<String, Object> metadata = new HashMap<>(hit.metadata());
+        metadata.put("distance", 1 - hit.similarity());
+        return Document.builder()
+                .id(hit.id())
+                .text(hit.text())
+                .metadata(metadata)
+                .score((double) hit.similarity())
+                .build();
+    }
+}
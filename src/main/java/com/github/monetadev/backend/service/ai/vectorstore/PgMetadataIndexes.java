@@ -0,0 +1,90 @@
+package com.github.monetadev.backend.service.ai.vectorstore;
+
+import com.github.monetadev.backend.config.VectorStoreConfig;
+import com.github.monetadev.backend.config.prop.AiProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Indexes the chunk metadata of the pgvector table, which is otherwise scanned in full by every delete and
+ * filtered search.
+ * <p>
+ * The vector store translates filter expressions into JSON path predicates on {@code metadata::jsonb}, which a
+ * GIN index with {@code jsonb_path_ops} on exactly that expression serves. Queries written against the table
+ * directly compare single keys such as {@code metadata->>'userId'}, for which B-tree expression indexes exist.
+ * <p>
+ * The indexes are built concurrently, so uploads and deletes keep writing to the table while they are built.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = VectorStoreConfig.TYPE_PROPERTY, havingValue = VectorStoreConfig.PGVECTOR, matchIfMissing = true)
+public class PgMetadataIndexes {
+    private final JdbcTemplate jdbcTemplate;
+    private final AiProperties.Retrieval properties;
+    private final String schemaName;
+    private final String tableName;
+    private final Map<String, String> indexes = new LinkedHashMap<>();
+
+    public PgMetadataIndexes(JdbcTemplate jdbcTemplate,
+                             AiProperties aiProperties,
+                             @Value("${spring.ai.vectorstore.pgvector.schema-name:public}") String schemaName,
+                             @Value("${spring.ai.vectorstore.pgvector.table-name:vector_store}") String tableName) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = aiProperties.getRetrieval();
+        this.schemaName = schemaName;
+        this.tableName = schemaName + "." + tableName;
+        // Must match the expressions of the queries exactly for the planner to use the indexes.
+        indexes.put(tableName + "_metadata_path_idx", "USING GIN ((metadata::jsonb) jsonb_path_ops)");
+        indexes.put(tableName + "_metadata_user_id_idx", "((metadata->>'userId'))");
+        indexes.put(tableName + "_metadata_file_id_idx", "((metadata->>'id'))");
+        indexes.put(tableName + "_metadata_md5_sum_idx", "((metadata->>'md5Sum'))");
+    }
+
+    /**
+     * Creates the indexes once the vector store created its table.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeSchema() {
+        if (!properties.isInitializeSchema()) {
+            return;
+        }
+        indexes.forEach((name, definition) -> {
+            try {
+                createIndexConcurrently(jdbcTemplate, schemaName, name, tableName + " " + definition);
+            } catch (DataAccessException e) {
+                log.warn("Could not create metadata index {}, filtering chunks will scan the chunk table", name, e);
+            }
+        });
+    }
+
+    /**
+     * Creates an index without locking out writes to its table. Must not run inside a transaction. A build that
+     * failed before leaves an invalid index of the same name behind, which is dropped first to build it again.
+     * @param schemaName The schema of the table.
+     * @param indexName The name of the index, without schema.
+     * @param definition What follows {@code ON} in the statement, the table and the indexed expressions.
+     */
+    public static void createIndexConcurrently(JdbcTemplate jdbcTemplate, String schemaName, String indexName, String definition) {
+        Integer invalid = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_index i " +
+                        "JOIN pg_class c ON c.oid = i.indexrelid " +
+                        "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                        "WHERE n.nspname = ? AND c.relname = ? AND NOT i.indisvalid",
+                Integer.class,
+                schemaName,
+                indexName);
+        if (invalid != null && invalid > 0) {
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + schemaName + "." + indexName);
+        }
+        jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + indexName + " ON " + definition);
+    }
+}
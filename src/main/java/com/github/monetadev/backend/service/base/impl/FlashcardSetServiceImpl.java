@@ -7,6 +7,7 @@ import com.github.monetadev.backend.graphql.type.pagination.PaginatedFlashcardSe
 import com.github.monetadev.backend.model.Flashcard;
 import com.github.monetadev.backend.model.FlashcardSet;
 import com.github.monetadev.backend.repository.FlashcardSetRepository;
+import com.github.monetadev.backend.service.ai.FlashcardSetContextCache;
 import com.github.monetadev.backend.service.base.FlashcardSetService;
 import com.github.monetadev.backend.service.security.AuthenticationService;
 import org.jetbrains.annotations.NotNull;
@@ -22,10 +23,14 @@ import java.util.*;
 public class FlashcardSetServiceImpl implements FlashcardSetService {
     private final FlashcardSetRepository flashcardSetRepository;
     private final AuthenticationService authenticationService;
+    private final FlashcardSetContextCache setContextCache;
 
-    public FlashcardSetServiceImpl(FlashcardSetRepository flashcardSetRepository, AuthenticationService authenticationService) {
+    public FlashcardSetServiceImpl(FlashcardSetRepository flashcardSetRepository,
+                                   AuthenticationService authenticationService,
+                                   FlashcardSetContextCache setContextCache) {
         this.flashcardSetRepository = flashcardSetRepository;
         this.authenticationService = authenticationService;
+        this.setContextCache = setContextCache;
     }
 
     /**
@@ -98,6 +103,7 @@ public class FlashcardSetServiceImpl implements FlashcardSetService {
     public FlashcardSet updateFlashcardSet(UUID id, FlashcardSetInput flashcardSetInput) throws FlashcardSetNotFoundException {
         FlashcardSet flashcardSet = flashcardSetRepository.findById(id)
                 .orElseThrow(() -> new FlashcardSetNotFoundException("Couldn't find set with ID: " + id));
+        setContextCache.invalidate(id);
         return mapAndPersistFlashcardSet(flashcardSetInput, flashcardSet);
     }
 
@@ -157,6 +163,7 @@ public class FlashcardSetServiceImpl implements FlashcardSetService {
                 .orElseThrow(() -> new FlashcardSetNotFoundException("Cannot delete non-existent flashcard set with ID: " + id));
         String title = flashcardSet.getTitle();
         flashcardSetRepository.delete(flashcardSet);
+        setContextCache.invalidate(id);
         return title;
     }
 }
\ No newline at end of file
@@ -119,9 +119,10 @@ public class QuizAttemptServiceImpl implements QuizAttemptService {
 
         quizAttempt.setResponses(responses);
 
-        int totalQuestions = gradedQuiz.getQuestions().size();
-        long correctAnswers = gradedQuiz.getQuestions().stream()
-                .filter(GradedQuestion::isCorrectAnswer)
+        // Scored over the whole quiz, questions without a graded response count as incorrect.
+        int totalQuestions = quiz.getQuestions().size();
+        long correctAnswers = responses.stream()
+                .filter(response -> Boolean.TRUE.equals(response.getIsCorrect()))
                 .count();
 
         int score = totalQuestions > 0 ? (int) Math.round((double) correctAnswers / totalQuestions * 100) : 0;
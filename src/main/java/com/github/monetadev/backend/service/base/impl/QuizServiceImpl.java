@@ -84,7 +84,6 @@ public class QuizServiceImpl implements QuizService {
         quiz.setQuestions(new ArrayList<>());
 
         for (GeneratedQuestion generatedQuestion : generatedQuiz.getQuestions()) {
-            System.out.println("On question " + generatedQuestion.getPosition());
             Question question = mapQuestionTypes(generatedQuestion, quiz);
             quiz.getQuestions().add(question);
         }
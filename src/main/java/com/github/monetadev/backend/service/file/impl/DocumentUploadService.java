@@ -9,6 +9,7 @@ import com.github.monetadev.backend.model.File;
 import com.github.monetadev.backend.model.User;
 import com.github.monetadev.backend.repository.FileRepository;
 import com.github.monetadev.backend.service.ai.DocumentEmbedService;
+import com.github.monetadev.backend.service.ai.FlashcardSetGenerationCache;
 import com.github.monetadev.backend.service.file.FileTypeService;
 import com.github.monetadev.backend.service.file.PersistenceService;
 import com.github.monetadev.backend.service.security.AuthenticationService;
@@ -29,14 +30,16 @@ public class DocumentUploadService implements FileTypeService {
     private final PersistenceService persistenceService;
     private final FileRepository fileRepository;
     private final DocumentEmbedService documentEmbedService;
+    private final FlashcardSetGenerationCache flashcardSetGenerationCache;
 
     @Autowired
-    public DocumentUploadService(FileProperties fileProperties, AuthenticationService authenticationService, PersistenceService persistenceService, FileRepository fileRepository, DocumentEmbedService documentEmbedService) {
+    public DocumentUploadService(FileProperties fileProperties, AuthenticationService authenticationService, PersistenceService persistenceService, FileRepository fileRepository, DocumentEmbedService documentEmbedService, FlashcardSetGenerationCache flashcardSetGenerationCache) {
         this.fileProperties = fileProperties;
         this.authenticationService = authenticationService;
         this.persistenceService = persistenceService;
         this.fileRepository = fileRepository;
         this.documentEmbedService = documentEmbedService;
+        this.flashcardSetGenerationCache = flashcardSetGenerationCache;
     }
     /**
      * {@inheritDoc}
@@ -99,6 +102,7 @@ public class DocumentUploadService implements FileTypeService {
     public DocumentUploadResult uploadDocument(MultipartFile file) {
         File fileMetadata = processAndSaveFile(file);
         documentEmbedService.embedFile(fileMetadata);
+        flashcardSetGenerationCache.invalidateUser(fileMetadata.getUser().getId());
 
         return DocumentUploadResult.builder()
                 .filename(fileMetadata.getFilename())
@@ -115,6 +119,7 @@ public class DocumentUploadService implements FileTypeService {
             return false;
         }
         documentEmbedService.deleteEmbeddingById(document.getId());
+        flashcardSetGenerationCache.invalidateUser(document.getUser().getId());
 
         return persistenceService.deleteFile(document);
     }
@@ -22,8 +22,6 @@ import java.util.regex.Pattern;
 @Service
 public class PersistenceServiceImpl implements PersistenceService {
     private static final Pattern SAFE_PATH_PATTERN = Pattern.compile("^[a-zA-Z0-9_/\\-]+$");
-    private static final String DEFAULT_PROJECT_FOLDER = ".monetadev";
-
     private final Path dataDirectoryPath;
     private final FileRepository fileRepository;
     private final StorageProperties storageProperties;
@@ -34,7 +32,7 @@ public class PersistenceServiceImpl implements PersistenceService {
 
         String dataDir = storageProperties.getDataDirectory();
         if (dataDir == null || dataDir.isEmpty()) {
-            dataDir = Paths.get(System.getProperty("user.home"), DEFAULT_PROJECT_FOLDER).toString();
+            dataDir = Paths.get(System.getProperty("user.home"), StorageProperties.DEFAULT_PROJECT_FOLDER).toString();
             storageProperties.setDataDirectory(dataDir);
         }
 
@@ -0,0 +1,81 @@
+package com.github.monetadev.backend.service.ai;
+
+import com.github.monetadev.backend.graphql.type.ai.job.GenerationStage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+    private final SingleFlight<String, Object> singleFlight = new SingleFlight<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @Test
+    void concurrentCallersShareOneRun() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<GenerationStage> followerStages = new CopyOnWriteArrayList<>();
+
+        Future<Object> leader = executor.submit(() -> singleFlight.execute("key", GenerationProgressListener.NONE, progress -> {
+            runs.incrementAndGet();
+            progress.onStage(GenerationStage.GENERATING);
+            started.countDown();
+            await(release);
+            progress.onStage(GenerationStage.PERSISTING);
+            return new Object();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<Object> follower = executor.submit(() -> singleFlight.execute("key", followerStages::add, progress -> {
+            runs.incrementAndGet();
+            return new Object();
+        }));
+        while (followerStages.isEmpty()) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertSame(leader.get(5, TimeUnit.SECONDS), follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+        assertEquals(List.of(GenerationStage.GENERATING, GenerationStage.PERSISTING), followerStages);
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    void failuresReachEveryCallerAndAreNotRemembered() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<GenerationStage> followerStages = new CopyOnWriteArrayList<>();
+
+        Future<Object> leader = executor.submit(() -> singleFlight.execute("key", GenerationProgressListener.NONE, progress -> {
+            progress.onStage(GenerationStage.GENERATING);
+            started.countDown();
+            await(release);
+            throw new IllegalStateException("model unavailable");
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<Object> follower = executor.submit(() -> singleFlight.execute("key", followerStages::add, progress -> new Object()));
+        while (followerStages.isEmpty()) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        ExecutionException leaderFailure = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, leaderFailure.getCause());
+        ExecutionException followerFailure = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, followerFailure.getCause());
+        assertNotNull(singleFlight.execute("key", GenerationProgressListener.NONE, progress -> new Object()));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
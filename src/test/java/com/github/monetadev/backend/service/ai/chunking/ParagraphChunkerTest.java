@@ -0,0 +1,84 @@
+package com.github.monetadev.backend.service.ai.chunking;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParagraphChunkerTest {
+    private final List<Document> chunks = new ArrayList<>();
+
+    @Test
+    void headingsStartNewChunksAndNameTheirSection() {
+        ParagraphChunker chunker = new ParagraphChunker(new ChunkLimits(200, 0, 100), Map.of("id", "file"), chunks::add);
+
+        chunker.heading();
+        feed(chunker, "Cells");
+        feed(chunker, "Cells are the basic unit of life.");
+        chunker.heading();
+        feed(chunker, "Energy");
+        feed(chunker, "Mitochondria convert nutrients into energy.");
+        chunker.finish();
+
+        assertEquals(2, chunks.size());
+        assertEquals("Cells\n\nCells are the basic unit of life.", chunks.get(0).getText());
+        assertEquals("Cells", chunks.get(0).getMetadata().get(ParagraphChunker.SECTION));
+        assertEquals("Energy", chunks.get(1).getMetadata().get(ParagraphChunker.SECTION));
+        assertEquals("file", chunks.get(1).getMetadata().get("id"));
+    }
+
+    @Test
+    void packsWholeParagraphsUpToTheChunkSize() {
+        ParagraphChunker chunker = new ParagraphChunker(new ChunkLimits(100, 0, 100), Map.of(), chunks::add);
+        List<String> paragraphs = IntStream.range(0, 20)
+                .mapToObj(i -> "Paragraph " + i + " explains one idea of the lecture in a couple of plain words.")
+                .toList();
+
+        paragraphs.forEach(paragraph -> feed(chunker, paragraph));
+        chunker.finish();
+
+        assertTrue(chunks.size() > 1);
+        chunks.forEach(chunk -> assertTrue(Tokens.count(chunk.getText()) <= 100));
+        List<String> rejoined = chunks.stream()
+                .flatMap(chunk -> List.of(chunk.getText().split("\n\n")).stream())
+                .toList();
+        assertEquals(paragraphs, rejoined);
+    }
+
+    @Test
+    void splitsOversizedParagraphsAtSentenceEnds() {
+        ParagraphChunker chunker = new ParagraphChunker(new ChunkLimits(40, 0, 100), Map.of(), chunks::add);
+        String paragraph = IntStream.range(0, 30)
+                .mapToObj(i -> "Sentence number " + i + " is short.")
+                .collect(Collectors.joining(" "));
+
+        feed(chunker, paragraph);
+        chunker.finish();
+
+        assertTrue(chunks.size() > 1);
+        chunks.forEach(chunk -> assertTrue(chunk.getText().endsWith(".")));
+        assertEquals(paragraph, chunks.stream().map(Document::getText).collect(Collectors.joining(" ")));
+    }
+
+    @Test
+    void stopsAtTheChunkLimit() {
+        ParagraphChunker chunker = new ParagraphChunker(new ChunkLimits(20, 0, 2), Map.of(), chunks::add);
+
+        IntStream.range(0, 10).forEach(i -> feed(chunker, "A paragraph that fills most of one small chunk " + i + "."));
+        assertTrue(chunker.isFull());
+        chunker.finish();
+
+        assertEquals(2, chunks.size());
+    }
+
+    private static void feed(ParagraphChunker chunker, String text) {
+        chunker.text(text.toCharArray(), 0, text.length());
+        chunker.boundary();
+    }
+}
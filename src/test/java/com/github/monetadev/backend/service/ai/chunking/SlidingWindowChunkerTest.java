@@ -0,0 +1,55 @@
+package com.github.monetadev.backend.service.ai.chunking;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SlidingWindowChunkerTest {
+    private final List<Document> chunks = new ArrayList<>();
+
+    @Test
+    void consecutiveWindowsShareTheOverlap() {
+        SlidingWindowChunker chunker = new SlidingWindowChunker(new ChunkLimits(100, 20, 1000), Map.of(), chunks::add);
+        String text = IntStream.range(0, 3000)
+                .mapToObj(i -> "word" + i)
+                .collect(Collectors.joining(" "));
+
+        // Delivered in small pieces, as a parser would.
+        for (int start = 0; start < text.length(); start += 64) {
+            chunker.text(text.toCharArray(), start, Math.min(64, text.length() - start));
+        }
+        chunker.finish();
+
+        assertTrue(chunks.size() > 1);
+        for (int i = 0; i < chunks.size() - 1; i++) {
+            String[] words = chunks.get(i).getText().split(" ");
+            String lastWholeWord = words[words.length - 2];
+            assertTrue(chunks.get(i + 1).getText().contains(lastWholeWord + " "),
+                    "chunk " + (i + 1) + " does not overlap its predecessor");
+            assertTrue(Tokens.count(chunks.get(i).getText()) <= 100);
+        }
+        assertTrue(chunks.get(chunks.size() - 1).getText().endsWith("word2999"));
+    }
+
+    @Test
+    void doesNotRepeatATailAlreadyCoveredByTheOverlap() {
+        SlidingWindowChunker chunker = new SlidingWindowChunker(new ChunkLimits(50, 10, 1000), Map.of(), chunks::add);
+        String text = IntStream.range(0, 200)
+                .mapToObj(i -> "word" + i)
+                .collect(Collectors.joining(" "));
+        int tokens = Tokens.count(text);
+
+        chunker.text(text.toCharArray(), 0, text.length());
+        chunker.finish();
+
+        int expected = (int) Math.ceil((tokens - 10) / 40.0);
+        assertTrue(Math.abs(chunks.size() - expected) <= 1, chunks.size() + " chunks for " + tokens + " tokens");
+    }
+}
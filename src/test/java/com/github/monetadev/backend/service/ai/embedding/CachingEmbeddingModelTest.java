@@ -0,0 +1,85 @@
+package com.github.monetadev.backend.service.ai.embedding;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingEmbeddingModelTest {
+
+    @Test
+    void embedsNormalizedTextOnce() {
+        CountingEmbeddingModel delegate = new CountingEmbeddingModel(null);
+        CachingEmbeddingModel model = new CachingEmbeddingModel(delegate, new AiProperties.EmbeddingCache(), new SimpleMeterRegistry());
+
+        float[] first = model.embed("What is  mitochondria?");
+        first[0] = -1;
+        float[] second = model.embed(" What is mitochondria?\n");
+
+        assertEquals(1, delegate.calls.get());
+        assertEquals(1f, second[0]);
+    }
+
+    @Test
+    void concurrentMissesShareOneCall() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountingEmbeddingModel delegate = new CountingEmbeddingModel(release);
+        CachingEmbeddingModel model = new CachingEmbeddingModel(delegate, new AiProperties.EmbeddingCache(), new SimpleMeterRegistry());
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            List<Future<float[]>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> model.embed("ribosome")));
+            }
+            // Let every task reach the cache while the first call is still in flight.
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<float[]> result : results) {
+                assertEquals(1f, result.get(5, TimeUnit.SECONDS)[0]);
+            }
+        }
+        assertEquals(1, delegate.calls.get());
+    }
+
+    private static final class CountingEmbeddingModel implements EmbeddingModel {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final CountDownLatch release;
+
+        private CountingEmbeddingModel(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public float[] embed(String text) {
+            calls.incrementAndGet();
+            if (release != null) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new float[]{1f, 0f};
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
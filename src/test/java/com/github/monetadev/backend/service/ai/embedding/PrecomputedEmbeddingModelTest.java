@@ -0,0 +1,65 @@
+package com.github.monetadev.backend.service.ai.embedding;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrecomputedEmbeddingModelTest {
+
+    @Test
+    void answersPinnedTextWithoutTheDelegate() {
+        CountingEmbeddingModel delegate = new CountingEmbeddingModel();
+        PrecomputedEmbeddingModel model = new PrecomputedEmbeddingModel(delegate);
+
+        try (PrecomputedEmbeddingModel.Pin ignored = model.pin("cells", new float[]{0f, 1f})) {
+            float[] first = model.embed("cells");
+            first[1] = -1;
+            assertEquals(1f, model.embed("cells")[1]);
+            assertEquals(1f, model.embed("ribosome")[0]);
+        }
+
+        assertEquals(1, delegate.calls.get());
+    }
+
+    @Test
+    void keepsTextPinnedUntilEveryPinIsClosed() {
+        CountingEmbeddingModel delegate = new CountingEmbeddingModel();
+        PrecomputedEmbeddingModel model = new PrecomputedEmbeddingModel(delegate);
+
+        PrecomputedEmbeddingModel.Pin first = model.pin("cells", new float[]{0f, 1f});
+        PrecomputedEmbeddingModel.Pin second = model.pin("cells", new float[]{0f, 1f});
+        first.close();
+        assertEquals(1f, model.embed("cells")[1]);
+        assertEquals(0, delegate.calls.get());
+
+        second.close();
+        assertEquals(1f, model.embed("cells")[0]);
+        assertEquals(1, delegate.calls.get());
+    }
+
+    private static final class CountingEmbeddingModel implements EmbeddingModel {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public float[] embed(String text) {
+            calls.incrementAndGet();
+            return new float[]{1f, 0f};
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.monetadev.backend.service.ai.grading;
+
+import com.github.monetadev.backend.graphql.type.ai.quiz.grade.GradedQuestion;
+import com.github.monetadev.backend.graphql.type.input.quiz.OptionInput;
+import com.github.monetadev.backend.graphql.type.input.quiz.QuestionInput;
+import com.github.monetadev.backend.model.Option;
+import com.github.monetadev.backend.model.Question;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ObjectiveQuestionGraderTest {
+
+    @Test
+    void gradesSingleAnswerByPositionLetterOrContent() {
+        Question question = question(Question.QuestionType.MULTIPLE_CHOICE_SINGLE_ANSWER, "Mitosis", "Meiosis", "Osmosis");
+        question.getOptions().get(1).setIsCorrect(true);
+
+        for (String response : List.of("2", "b", " meiosis ")) {
+            GradedQuestion graded = ObjectiveQuestionGrader.grade(question, response(response)).orElseThrow();
+            assertTrue(graded.isCorrectAnswer(), response);
+            assertEquals("Meiosis", graded.getUserResponse());
+        }
+
+        GradedQuestion wrong = ObjectiveQuestionGrader.grade(question, response("1")).orElseThrow();
+        assertFalse(wrong.isCorrectAnswer());
+        assertEquals("Incorrect. The correct answer is: Meiosis.", wrong.getFeedback());
+    }
+
+    @Test
+    void requiresTheExactSetForMultipleAnswers() {
+        Question question = question(Question.QuestionType.MULTIPLE_CHOICE_MULTIPLE_ANSWER, "Red", "Green", "Blue");
+        question.getOptions().get(0).setIsCorrect(true);
+        question.getOptions().get(2).setIsCorrect(true);
+
+        assertTrue(ObjectiveQuestionGrader.grade(question, response("3, 1")).orElseThrow().isCorrectAnswer());
+        assertFalse(ObjectiveQuestionGrader.grade(question, response("1")).orElseThrow().isCorrectAnswer());
+        assertFalse(ObjectiveQuestionGrader.grade(question, response("1;2;3")).orElseThrow().isCorrectAnswer());
+    }
+
+    @Test
+    void fallsBackToSelectedResponseOptions() {
+        Question question = question(Question.QuestionType.TRUE_FALSE, "True", "False");
+        question.getOptions().get(0).setIsCorrect(true);
+
+        QuestionInput response = response(null);
+        OptionInput selected = new OptionInput();
+        selected.setPosition(1);
+        selected.setIsCorrect(true);
+        response.setOptions(List.of(selected));
+
+        assertTrue(ObjectiveQuestionGrader.grade(question, response).orElseThrow().isCorrectAnswer());
+    }
+
+    @Test
+    void leavesUngradableQuestionsToTheModel() {
+        Question shortAnswer = question(Question.QuestionType.SHORT_ANSWER, "Powerhouse of the cell");
+        shortAnswer.getOptions().getFirst().setIsCorrect(true);
+        assertEquals(Optional.empty(), ObjectiveQuestionGrader.grade(shortAnswer, response("Mitochondria")));
+
+        Question unmarked = question(Question.QuestionType.TRUE_FALSE, "True", "False");
+        assertEquals(Optional.empty(), ObjectiveQuestionGrader.grade(unmarked, response("True")));
+
+        Question marked = question(Question.QuestionType.MULTIPLE_CHOICE_SINGLE_ANSWER, "A cell", "A tissue");
+        marked.getOptions().getFirst().setIsCorrect(true);
+        assertEquals(Optional.empty(), ObjectiveQuestionGrader.grade(marked, response("an organ")));
+    }
+
+    private static Question question(Question.QuestionType type, String... options) {
+        Question question = new Question();
+        question.setContent("Question");
+        question.setPosition(1);
+        question.setQuestionType(type);
+        List<Option> stored = new ArrayList<>();
+        for (int i = 0; i < options.length; i++) {
+            Option option = new Option();
+            option.setContent(options[i]);
+            option.setPosition(i + 1);
+            option.setIsCorrect(false);
+            stored.add(option);
+        }
+        question.setOptions(stored);
+        return question;
+    }
+
+    private static QuestionInput response(String content) {
+        QuestionInput response = new QuestionInput();
+        response.setPosition(1);
+        response.setContent(content);
+        return response;
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.monetadev.backend.service.ai.impl;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.exception.EmbeddingIngestionException;
+import com.github.monetadev.backend.service.ai.EmbeddingIngestionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchedEmbeddingIngestionServiceTest {
+    private static final String FAILING_TEXT = "This chunk cannot be embedded.";
+
+    private final AiProperties aiProperties = new AiProperties();
+    private final FakeVectorStore vectorStore = new FakeVectorStore();
+    private BatchedEmbeddingIngestionService ingestionService;
+
+    @AfterEach
+    void shutdown() {
+        ingestionService.shutdown();
+    }
+
+    @Test
+    void storesChunksInTokenBoundedBatches() {
+        aiProperties.getIngestion().setMaxBatchTokens(50);
+        ingestionService = new BatchedEmbeddingIngestionService(vectorStore, aiProperties, new SimpleMeterRegistry());
+        List<Document> chunks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            chunks.add(chunk("Chunk " + i + " describes how mitochondria turn nutrients into energy for the cell."));
+        }
+
+        EmbeddingIngestionService.Session session = ingestionService.open("document");
+        chunks.forEach(session::add);
+
+        assertEquals(chunks.size(), session.complete());
+        assertEquals(chunks.size(), vectorStore.stored.size());
+        assertTrue(vectorStore.batches.size() > 1);
+        TokenCountEstimator estimator = new JTokkitTokenCountEstimator();
+        for (List<Document> batch : vectorStore.batches) {
+            int tokens = batch.stream().mapToInt(document -> estimator.estimate(document.getText())).sum();
+            assertTrue(batch.size() == 1 || tokens <= 50, "Batch of " + tokens + " tokens");
+        }
+    }
+
+    @Test
+    void deletesStoredChunksWhenABatchFails() {
+        // One chunk per batch, stored one after another.
+        aiProperties.getIngestion().setMaxBatchTokens(1);
+        aiProperties.getIngestion().setMaxConcurrency(1);
+        ingestionService = new BatchedEmbeddingIngestionService(vectorStore, aiProperties, new SimpleMeterRegistry());
+        Document first = chunk("Mitochondria produce energy.");
+        Document second = chunk("Ribosomes build proteins.");
+        Document failing = chunk(FAILING_TEXT);
+
+        EmbeddingIngestionService.Session session = ingestionService.open("document");
+        session.add(first);
+        session.add(second);
+        session.add(failing);
+
+        assertThrows(EmbeddingIngestionException.class, session::complete);
+        assertTrue(vectorStore.deleted.containsAll(List.of(first.getId(), second.getId())));
+        assertTrue(vectorStore.stored.isEmpty());
+    }
+
+    private static Document chunk(String text) {
+        return Document.builder().id(UUID.randomUUID().toString()).text(text).build();
+    }
+
+    /**
+     * Keeps added documents in memory, and fails to embed any batch holding {@value #FAILING_TEXT}.
+     */
+    private static final class FakeVectorStore implements VectorStore {
+        private final Map<String, Document> stored = Collections.synchronizedMap(new HashMap<>());
+        private final List<List<Document>> batches = new CopyOnWriteArrayList<>();
+        private final List<String> deleted = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void add(List<Document> documents) {
+            if (documents.stream().anyMatch(document -> FAILING_TEXT.equals(document.getText()))) {
+                throw new IllegalStateException("Embedding failed");
+            }
+            batches.add(List.copyOf(documents));
+            documents.forEach(document -> stored.put(document.getId(), document));
+        }
+
+        @Override
+        public void delete(List<String> idList) {
+            deleted.addAll(idList);
+            idList.forEach(stored::remove);
+        }
+
+        @Override
+        public void delete(Filter.Expression filterExpression) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
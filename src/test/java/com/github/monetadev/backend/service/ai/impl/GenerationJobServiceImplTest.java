@@ -0,0 +1,166 @@
+package com.github.monetadev.backend.service.ai.impl;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.exception.GenerationJobNotFoundException;
+import com.github.monetadev.backend.exception.GenerationJobRejectedException;
+import com.github.monetadev.backend.graphql.type.ai.job.GenerationJob;
+import com.github.monetadev.backend.graphql.type.ai.job.GenerationJobStatus;
+import com.github.monetadev.backend.graphql.type.ai.job.GenerationStage;
+import com.github.monetadev.backend.graphql.type.input.quiz.QuizGenOptions;
+import com.github.monetadev.backend.model.Quiz;
+import com.github.monetadev.backend.model.User;
+import com.github.monetadev.backend.service.ai.FlashcardSetGenerationService;
+import com.github.monetadev.backend.service.ai.GenerationProgressListener;
+import com.github.monetadev.backend.service.ai.QuizGenerationService;
+import com.github.monetadev.backend.service.security.AuthenticationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class GenerationJobServiceImplTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Mock
+    private AuthenticationService authenticationService;
+    @Mock
+    private QuizGenerationService quizGenerationService;
+    @Mock
+    private FlashcardSetGenerationService flashcardSetGenerationService;
+
+    private final AiProperties aiProperties = new AiProperties();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private GenerationJobServiceImpl jobService;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        when(authenticationService.getAuthenticatedUser()).thenReturn(user);
+    }
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        jobService.shutdown();
+    }
+
+    @Test
+    void rejectsJobsOnceTheQueueIsFull() {
+        aiProperties.getJob().setCorePoolSize(1);
+        aiProperties.getJob().setMaxPoolSize(1);
+        aiProperties.getJob().setQueueCapacity(1);
+        when(quizGenerationService.generateQuiz(any(), any())).thenAnswer(invocation -> {
+            release.await();
+            return new Quiz();
+        });
+        jobService = createJobService();
+
+        GenerationJob running = jobService.submitQuizGeneration(new QuizGenOptions());
+        GenerationJob queued = jobService.submitQuizGeneration(new QuizGenOptions());
+
+        assertThrows(GenerationJobRejectedException.class, () -> jobService.submitQuizGeneration(new QuizGenOptions()));
+        release.countDown();
+        assertEquals(GenerationJobStatus.COMPLETED, jobService.subscribeToJob(running.getId()).blockLast(TIMEOUT).getStatus());
+        assertEquals(GenerationJobStatus.COMPLETED, jobService.subscribeToJob(queued.getId()).blockLast(TIMEOUT).getStatus());
+    }
+
+    @Test
+    void failsJobsWithTheMessageOfTheirException() {
+        when(quizGenerationService.generateQuiz(any(), any())).thenThrow(new IllegalStateException("Model unavailable"));
+        jobService = createJobService();
+
+        GenerationJob job = jobService.submitQuizGeneration(new QuizGenOptions());
+        GenerationJob last = jobService.subscribeToJob(job.getId()).blockLast(TIMEOUT);
+
+        assertEquals(GenerationJobStatus.FAILED, last.getStatus());
+        assertEquals("Model unavailable", last.getError());
+    }
+
+    @Test
+    void failsJobsOnErrors() {
+        when(quizGenerationService.generateQuiz(any(), any())).thenThrow(new StackOverflowError());
+        jobService = createJobService();
+
+        GenerationJob job = jobService.submitQuizGeneration(new QuizGenOptions());
+        GenerationJob last = jobService.subscribeToJob(job.getId()).blockLast(TIMEOUT);
+
+        assertEquals(GenerationJobStatus.FAILED, last.getStatus());
+        assertEquals("StackOverflowError", last.getError());
+    }
+
+    @Test
+    void replaysTheCurrentStageToLateSubscribers() {
+        when(quizGenerationService.generateQuiz(any(), any())).thenAnswer(invocation -> {
+            GenerationProgressListener listener = invocation.getArgument(1);
+            listener.onStage(GenerationStage.RETRIEVING);
+            release.await();
+            return new Quiz();
+        });
+        jobService = createJobService();
+
+        GenerationJob job = jobService.submitQuizGeneration(new QuizGenOptions());
+        awaitUntil(() -> jobService.findJobById(job.getId()).getStage() == GenerationStage.RETRIEVING);
+
+        GenerationJob first = jobService.subscribeToJob(job.getId()).blockFirst(TIMEOUT);
+        assertEquals(GenerationStage.RETRIEVING, first.getStage());
+        assertEquals(GenerationJobStatus.RUNNING, first.getStatus());
+
+        release.countDown();
+        assertEquals(GenerationJobStatus.COMPLETED, jobService.subscribeToJob(job.getId()).blockLast(TIMEOUT).getStatus());
+    }
+
+    @Test
+    void evictsFinishedJobsAfterTheirRetention() {
+        aiProperties.getJob().setRetention(Duration.ofSeconds(1));
+        when(quizGenerationService.generateQuiz(any(), any())).thenReturn(new Quiz());
+        jobService = createJobService();
+        jobService.initialize();
+
+        GenerationJob job = jobService.submitQuizGeneration(new QuizGenOptions());
+        assertEquals(GenerationJobStatus.COMPLETED, jobService.subscribeToJob(job.getId()).blockLast(TIMEOUT).getStatus());
+        assertEquals(job.getId(), jobService.findJobById(job.getId()).getId());
+
+        // Evicted by the scheduled sweep, no other job is submitted.
+        awaitUntil(() -> {
+            try {
+                jobService.findJobById(job.getId());
+                return false;
+            } catch (GenerationJobNotFoundException e) {
+                return true;
+            }
+        });
+    }
+
+    private GenerationJobServiceImpl createJobService() {
+        return new GenerationJobServiceImpl(aiProperties, authenticationService, quizGenerationService, flashcardSetGenerationService);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met within " + TIMEOUT);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.monetadev.backend.service.ai.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.config.prop.StorageProperties;
+import com.github.monetadev.backend.model.File;
+import com.github.monetadev.backend.model.User;
+import com.github.monetadev.backend.service.ai.EmbeddingIngestionService;
+import com.github.monetadev.backend.service.ai.EmbeddingRegistry;
+import com.github.monetadev.backend.service.ai.chunking.ChunkingEngine;
+import com.github.monetadev.backend.service.ai.embedding.EmbeddingVersions;
+import com.github.monetadev.backend.service.ai.reader.Chunker;
+import com.github.monetadev.backend.service.ai.reader.ExtractedTextStore;
+import com.github.monetadev.backend.service.ai.vectorstore.HnswVectorStore;
+import com.github.monetadev.backend.service.file.FileService;
+import com.github.monetadev.backend.service.security.AuthenticationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Covers the rules deciding whether a file may reuse the chunks of identical content, which every
+ * {@link EmbeddingRegistry} shares.
+ */
+public class HnswEmbeddingRegistryTest {
+    private static final String MD5_SUM = "d41d8cd98f00b204e9800998ecf8427e";
+    private static final int CHUNKS = 3;
+
+    private final UUID owner = UUID.randomUUID();
+    private final UUID uploader = UUID.randomUUID();
+    private final File source = file("source.txt");
+    private HnswVectorStore vectorStore;
+    private HnswEmbeddingRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        AiProperties aiProperties = new AiProperties();
+        aiProperties.getHnsw().setSnapshotDirectory("");
+        vectorStore = new HnswVectorStore(new FakeEmbeddingModel(), aiProperties, new StorageProperties(), new ObjectMapper());
+        registry = new HnswEmbeddingRegistry(vectorStore);
+    }
+
+    @AfterEach
+    void shutdown() {
+        vectorStore.shutdown();
+    }
+
+    @Test
+    void reusesCompletelyEmbeddedSources() {
+        embedSource();
+        registry.markComplete(source.getId(), CHUNKS);
+        File target = file("target.txt");
+
+        assertEquals(source.getId(), registry.findEmbeddedFileByHash(MD5_SUM).orElseThrow());
+        assertEquals(CHUNKS, registry.copyEmbeddings(source.getId(), target, uploader));
+
+        List<Document> copies = chunksOf(target);
+        assertEquals(CHUNKS, copies.size());
+        for (Document copy : copies) {
+            assertEquals(target.getId().toString(), copy.getMetadata().get("id"));
+            assertEquals(uploader.toString(), copy.getMetadata().get("userId"));
+            assertEquals(target.getFilename(), copy.getMetadata().get("filename"));
+            assertEquals(target.getOriginalFilename(), copy.getMetadata().get("originalFilename"));
+        }
+        assertEquals(CHUNKS, chunksOf(source).size());
+    }
+
+    @Test
+    void ignoresSourcesNeverMarkedComplete() {
+        embedSource();
+
+        assertTrue(registry.findEmbeddedFileByHash(MD5_SUM).isEmpty());
+        assertEquals(0, registry.copyEmbeddings(source.getId(), file("target.txt"), uploader));
+    }
+
+    @Test
+    void rejectsSourcesMissingChunks() {
+        List<Document> chunks = embedSource();
+        registry.markComplete(source.getId(), CHUNKS);
+        vectorStore.delete(List.of(chunks.get(0).getId()));
+        File target = file("target.txt");
+
+        assertEquals(0, registry.copyEmbeddings(source.getId(), target, uploader));
+        assertTrue(chunksOf(target).isEmpty());
+    }
+
+    @Test
+    void reEmbedsFilesWhoseSourceIsPartial() {
+        List<Document> chunks = embedSource();
+        registry.markComplete(source.getId(), CHUNKS);
+        vectorStore.delete(List.of(chunks.get(0).getId()));
+        File target = file("target.txt");
+
+        User user = new User();
+        user.setId(uploader);
+        AuthenticationService authenticationService = mock(AuthenticationService.class);
+        when(authenticationService.getAuthenticatedUser()).thenReturn(user);
+        ChunkingEngine chunkingEngine = mock(ChunkingEngine.class);
+        when(chunkingEngine.openForStorage(anyString(), anyMap(), any())).thenReturn(mock(Chunker.class));
+        EmbeddingIngestionService.Session session = mock(EmbeddingIngestionService.Session.class);
+        when(session.complete()).thenReturn(CHUNKS);
+        EmbeddingIngestionService ingestionService = mock(EmbeddingIngestionService.class);
+        when(ingestionService.open(target.getId().toString())).thenReturn(session);
+        EmbeddingVersions embeddingVersions = mock(EmbeddingVersions.class);
+        when(embeddingVersions.current(anyString())).thenReturn("r1/token-800-160/test");
+        DocumentEmbedServiceImpl embedService = new DocumentEmbedServiceImpl(vectorStore, mock(FileService.class),
+                authenticationService, ingestionService, registry, mock(ExtractedTextStore.class), chunkingEngine,
+                embeddingVersions);
+
+        embedService.embedFile(target);
+
+        verify(session).complete();
+        assertTrue(chunksOf(target).isEmpty());
+    }
+
+    private List<Document> embedSource() {
+        List<Document> chunks = new ArrayList<>();
+        for (int i = 0; i < CHUNKS; i++) {
+            chunks.add(Document.builder()
+                    .id(UUID.randomUUID().toString())
+                    .text("Chunk " + i + " of the source")
+                    .metadata(Map.of(
+                            "id", source.getId().toString(),
+                            "userId", owner.toString(),
+                            "filename", source.getFilename(),
+                            "originalFilename", source.getOriginalFilename(),
+                            "md5Sum", MD5_SUM))
+                    .build());
+        }
+        vectorStore.add(chunks);
+        return chunks;
+    }
+
+    private List<Document> chunksOf(File file) {
+        return vectorStore.similaritySearch(SearchRequest.builder()
+                .query("source")
+                .topK(10)
+                .filterExpression("id == '" + file.getId() + "'")
+                .build());
+    }
+
+    private static File file(String originalFilename) {
+        File file = new File();
+        file.setId(UUID.randomUUID());
+        file.setFilename(UUID.randomUUID() + ".txt");
+        file.setOriginalFilename(originalFilename);
+        file.setContentType("text/plain");
+        file.setMd5Sum(MD5_SUM);
+        return file;
+    }
+
+    private static final class FakeEmbeddingModel implements EmbeddingModel {
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                embeddings.add(new Embedding(vector(request.getInstructions().get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(String text) {
+            return vector(text);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vector(document.getText());
+        }
+
+        private static float[] vector(String text) {
+            return new float[]{1f, text.length() % 7 + 1f};
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.monetadev.backend.service.ai.impl;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcChatMemoryTest {
+    private static final String CONVERSATION = "conversation";
+
+    @Test
+    void loadingAndClearingTheSameConversationDoNotDeadlock() {
+        JdbcChatMemory memory = new JdbcChatMemory(new SlowJdbcTemplate(), new AiProperties());
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+                for (int i = 0; i < 200; i++) {
+                    // Leaves a message pending and the conversation out of the hot tier, so the next read loads it.
+                    memory.add(CONVERSATION, List.of(new UserMessage("message " + i)));
+                    memory.clear(CONVERSATION);
+                    memory.add(CONVERSATION, List.of(new UserMessage("message " + i)));
+
+                    CountDownLatch start = new CountDownLatch(1);
+                    Future<List<Message>> read = executor.submit(() -> {
+                        start.await();
+                        return memory.get(CONVERSATION);
+                    });
+                    Future<?> clear = executor.submit(() -> {
+                        start.await();
+                        memory.clear(CONVERSATION);
+                        return null;
+                    });
+                    start.countDown();
+                    assertNotNull(read.get());
+                    clear.get();
+                }
+            }
+        });
+        memory.shutdown();
+    }
+
+    /**
+     * Stores nothing and takes a moment for every statement, which widens the window for the two calls to overlap.
+     */
+    private static final class SlowJdbcTemplate extends JdbcTemplate {
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            pause();
+            return List.of();
+        }
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize, ParameterizedPreparedStatementSetter<T> setter) {
+            pause();
+            return new int[0][];
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            return new int[0];
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            pause();
+            return 0;
+        }
+
+        private static void pause() {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.monetadev.backend.service.ai.impl;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MmrContextPackerTest {
+    private final MmrContextPacker packer = new MmrContextPacker(new AiProperties());
+
+    @Test
+    void dropsChunksContainedInSelectedChunks() {
+        Document full = document("Mitochondria produce ATP through cellular respiration in the inner membrane.", 0.9);
+        Document overlapping = document("Mitochondria produce ATP through cellular respiration.", 0.85);
+        Document other = document("Ribosomes synthesize proteins from messenger RNA.", 0.8);
+
+        List<Document> selected = packer.select(List.of(full, overlapping, other), 1000);
+
+        assertEquals(List.of(full, other), selected);
+    }
+
+    @Test
+    void staysWithinTheTokenBudget() {
+        String sentence = "The nucleus stores the genetic material of eukaryotic cells. ";
+        List<Document> candidates = List.of(
+                document(sentence.repeat(40), 0.9),
+                document("Chloroplasts perform photosynthesis in plant cells.", 0.8),
+                document("Lysosomes break down waste with digestive enzymes.", 0.7));
+
+        String packed = packer.pack(candidates, 120);
+
+        assertTrue(new JTokkitTokenCountEstimator().estimate(packed) <= 120);
+        assertFalse(packed.isEmpty());
+    }
+
+    private static Document document(String text, double score) {
+        return Document.builder()
+                .text(text)
+                .score(score)
+                .build();
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.monetadev.backend.service.ai.impl;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.graphql.type.ai.quiz.grade.GradedQuestion;
+import com.github.monetadev.backend.graphql.type.ai.quiz.grade.GradedQuiz;
+import com.github.monetadev.backend.graphql.type.input.quiz.QuestionInput;
+import com.github.monetadev.backend.graphql.type.input.quiz.QuizAttemptInput;
+import com.github.monetadev.backend.model.*;
+import com.github.monetadev.backend.repository.QuizAttemptRepository;
+import com.github.monetadev.backend.repository.QuizRepository;
+import com.github.monetadev.backend.service.ai.ContextPacker;
+import com.github.monetadev.backend.service.ai.PromptTemplateRegistry;
+import com.github.monetadev.backend.service.ai.embedding.FlashcardSetEmbeddings;
+import com.github.monetadev.backend.service.ai.retrieval.DocumentRetrieverFactory;
+import com.github.monetadev.backend.service.base.FlashcardSetService;
+import com.github.monetadev.backend.service.base.QuizService;
+import com.github.monetadev.backend.service.base.impl.QuizAttemptServiceImpl;
+import com.github.monetadev.backend.service.security.AuthenticationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.ai.chat.client.ChatClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class QuizGenerationServiceImplTest {
+    private static final int QUESTIONS = 10;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private ChatClient gradingChatClient;
+    @Mock
+    private DocumentRetrieverFactory retrieverFactory;
+    @Mock
+    private FlashcardSetEmbeddings flashcardSetEmbeddings;
+    @Mock
+    private AuthenticationService authenticationService;
+    @Mock
+    private PromptTemplateRegistry promptTemplates;
+    @Mock
+    private ContextPacker contextPacker;
+    @Mock
+    private FlashcardSetService flashcardSetService;
+    @Mock
+    private QuizService quizService;
+    @Mock
+    private QuizRepository quizRepository;
+    @Mock
+    private QuizAttemptRepository quizAttemptRepository;
+
+    private Quiz quiz;
+    private QuizGenerationServiceImpl quizGenerationService;
+
+    @BeforeEach
+    void setUp() {
+        quiz = new Quiz();
+        quiz.setId(UUID.randomUUID());
+        quiz.setTitle("Cells");
+        quiz.setFlashcardSet(new FlashcardSet());
+        quiz.setQuestions(new ArrayList<>());
+        for (int position = 1; position <= QUESTIONS; position++) {
+            quiz.getQuestions().add(trueFalseQuestion(position));
+        }
+
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        when(authenticationService.getAuthenticatedUser()).thenReturn(user);
+        when(quizRepository.findById(quiz.getId())).thenReturn(Optional.of(quiz));
+        when(quizAttemptRepository.save(any(QuizAttempt.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(flashcardSetEmbeddings.retrieve(any(), any())).thenReturn(List.of());
+        when(contextPacker.pack(any(), anyInt())).thenReturn("");
+        when(promptTemplates.render(anyString(), anyMap())).thenReturn("");
+
+        QuizAttemptServiceImpl quizAttemptService = new QuizAttemptServiceImpl(quizAttemptRepository, quizRepository, authenticationService);
+        quizGenerationService = new QuizGenerationServiceImpl(null, gradingChatClient, retrieverFactory, flashcardSetEmbeddings,
+                authenticationService, promptTemplates, contextPacker, new AiProperties(), flashcardSetService,
+                quizService, quizRepository, quizAttemptService);
+    }
+
+    @Test
+    void scoresUnansweredQuestionsAsIncorrect() {
+        QuizAttempt attempt = quizGenerationService.gradeQuizFromInput(attempt(response(1, "True")));
+
+        assertEquals(QUESTIONS, attempt.getResponses().size());
+        assertEquals((int) Math.round(100.0 / quiz.getQuestions().size()), attempt.getScore());
+    }
+
+    @Test
+    void scoresQuestionsWithoutModelVerdictAsIncorrect() {
+        Question shortAnswer = quiz.getQuestions().get(1);
+        shortAnswer.setQuestionType(Question.QuestionType.SHORT_ANSWER);
+        Question omitted = quiz.getQuestions().get(2);
+        omitted.setQuestionType(Question.QuestionType.SHORT_ANSWER);
+        GradedQuestion verdict = new GradedQuestion();
+        verdict.setPosition(shortAnswer.getPosition());
+        verdict.setCorrectAnswer(true);
+        GradedQuiz graded = new GradedQuiz();
+        graded.setQuestions(List.of(verdict));
+        when(gradingChatClient.prompt().system(anyString()).user(anyString()).call().entity(GradedQuiz.class)).thenReturn(graded);
+
+        QuizAttempt attempt = quizGenerationService.gradeQuizFromInput(attempt(
+                response(1, "True"), response(2, "Mitochondria"), response(3, "Ribosome")));
+
+        assertEquals(QUESTIONS, attempt.getResponses().size());
+        assertEquals((int) Math.round(200.0 / quiz.getQuestions().size()), attempt.getScore());
+        QuizAttemptUserQuestionResponse ungraded = attempt.getResponses().stream()
+                .filter(response -> response.getQuestion() == omitted)
+                .findFirst()
+                .orElseThrow();
+        assertFalse(ungraded.getIsCorrect());
+        assertEquals("", ungraded.getResponse());
+    }
+
+    private QuizAttemptInput attempt(QuestionInput... responses) {
+        QuizAttemptInput input = new QuizAttemptInput();
+        input.setQuizId(quiz.getId());
+        input.setResponses(List.of(responses));
+        return input;
+    }
+
+    private static QuestionInput response(int position, String content) {
+        QuestionInput response = new QuestionInput();
+        response.setPosition(position);
+        response.setContent(content);
+        return response;
+    }
+
+    private static Question trueFalseQuestion(int position) {
+        Question question = new Question();
+        question.setContent("Question " + position);
+        question.setPosition(position);
+        question.setQuestionType(Question.QuestionType.TRUE_FALSE);
+        List<Option> options = new ArrayList<>();
+        for (String content : List.of("True", "False")) {
+            Option option = new Option();
+            option.setContent(content);
+            option.setPosition(options.size() + 1);
+            option.setIsCorrect(content.equals("True"));
+            options.add(option);
+        }
+        question.setOptions(options);
+        return question;
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.monetadev.backend.service.ai.impl;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StPromptTemplateRegistryTest {
+    private final StPromptTemplateRegistry registry = new StPromptTemplateRegistry(new AiProperties());
+
+    @Test
+    void rendersTemplatesIgnoringExtraVariables() {
+        String rendered = registry.render("set/user.st", Map.of(
+                "query", "cell biology",
+                "document", "Mitochondria produce energy.",
+                "unused", "ignored"));
+
+        assertTrue(rendered.contains("cell biology"));
+        assertTrue(rendered.contains("Mitochondria produce energy."));
+        assertFalse(rendered.contains("ignored"));
+    }
+
+    @Test
+    void rejectsMissingVariables() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> registry.render("set/user.st", Map.of("query", "cell biology", "documents", "renamed")));
+
+        assertTrue(e.getMessage().contains("document"));
+    }
+
+    @Test
+    void rejectsResourcesThatAreNotTemplates() {
+        assertThrows(IllegalArgumentException.class, () -> registry.render("set/schema.json", Map.of()));
+    }
+}
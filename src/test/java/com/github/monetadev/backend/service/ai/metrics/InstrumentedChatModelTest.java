@@ -0,0 +1,88 @@
+package com.github.monetadev.backend.service.ai.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InstrumentedChatModelTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AiMetrics metrics = new AiMetrics(meterRegistry);
+
+    @Test
+    void recordsCallsWithTheirTokenUsage() {
+        ChatModel model = metrics.instrument(new StubChatModel(), AiUseCase.GRADE);
+
+        model.call(new Prompt("grade this"));
+
+        Timer calls = meterRegistry.get(AiMetrics.CALLS)
+                .tags("use_case", "grade", "model", "gpt-test", "outcome", "success")
+                .timer();
+        assertEquals(1, calls.count());
+        DistributionSummary completion = meterRegistry.get(AiMetrics.TOKENS)
+                .tags("use_case", "grade", "type", "completion")
+                .summary();
+        assertEquals(5, completion.totalAmount());
+    }
+
+    @Test
+    void recordsTimeToFirstTokenOfStreams() {
+        ChatModel model = metrics.instrument(new StubChatModel(), AiUseCase.CHAT);
+
+        List<ChatResponse> chunks = model.stream(new Prompt("hello")).collectList().block();
+
+        assertEquals(3, chunks.size());
+        assertEquals(1, meterRegistry.get(AiMetrics.FIRST_TOKEN).tags("use_case", "chat").timer().count());
+        assertEquals(1, meterRegistry.get(AiMetrics.CALLS).tags("use_case", "chat", "outcome", "success").timer().count());
+        assertEquals(10, meterRegistry.get(AiMetrics.TOKENS).tags("use_case", "chat", "type", "prompt").summary().totalAmount());
+    }
+
+    @Test
+    void recordsFailedCalls() {
+        ChatModel failing = new StubChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                throw new IllegalStateException("model unavailable");
+            }
+        };
+        ChatModel model = metrics.instrument(failing, AiUseCase.QUIZ_GENERATION);
+
+        assertThrows(IllegalStateException.class, () -> model.call(new Prompt("generate")));
+        assertEquals(1, meterRegistry.get(AiMetrics.CALLS).tags("use_case", "quiz-gen", "outcome", "error").timer().count());
+    }
+
+    private static class StubChatModel implements ChatModel {
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            return response("answer", new DefaultUsage(10, 5));
+        }
+
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            return Flux.just(
+                    response("", null),
+                    response("ans", null),
+                    response("wer", new DefaultUsage(10, 5)));
+        }
+
+        private static ChatResponse response(String text, DefaultUsage usage) {
+            ChatResponseMetadata.Builder metadata = ChatResponseMetadata.builder().model("gpt-test");
+            if (usage != null) {
+                metadata.usage(usage);
+            }
+            return new ChatResponse(List.of(new Generation(new AssistantMessage(text))), metadata.build());
+        }
+    }
+}
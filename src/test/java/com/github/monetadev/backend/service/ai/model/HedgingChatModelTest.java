@@ -0,0 +1,159 @@
+package com.github.monetadev.backend.service.ai.model;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HedgingChatModelTest {
+    private final AiProperties.Routing properties = new AiProperties().getRouting();
+    private HedgingChatModel model;
+
+    @BeforeEach
+    void setUp() {
+        properties.setExplorationRate(0);
+    }
+
+    @AfterEach
+    void shutdown() {
+        model.shutdown();
+    }
+
+    @Test
+    void hedgesSlowCallsOntoTheNextRoute() {
+        properties.setMinHedgeDelay(Duration.ofMillis(50));
+        properties.setMaxHedgeDelay(Duration.ofMillis(50));
+        model = hedging(stub(() -> {
+            sleep(2000);
+            return "slow";
+        }), stub(() -> "fast"));
+
+        long start = System.nanoTime();
+        assertEquals("fast", model.call(new Prompt("rewrite")).getResult().getOutput().getText());
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(1500).toNanos());
+    }
+
+    @Test
+    void failuresMoveOnWithoutWaitingForTheHedgeDelay() {
+        properties.setMaxHedgeDelay(Duration.ofSeconds(10));
+        AtomicInteger failures = new AtomicInteger();
+        model = hedging(stub(() -> {
+            failures.incrementAndGet();
+            throw new IllegalStateException("unavailable");
+        }), stub(() -> "fallback"));
+
+        long start = System.nanoTime();
+        assertEquals("fallback", model.call(new Prompt("rewrite")).getResult().getOutput().getText());
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+        assertEquals(1, failures.get());
+    }
+
+    @Test
+    void failsWhenEveryRouteFails() {
+        model = hedging(stub(() -> ""), stub(() -> {
+            throw new IllegalStateException("unavailable");
+        }));
+
+        assertThrows(IllegalStateException.class, () -> model.call(new Prompt("rewrite")));
+    }
+
+    @Test
+    void ranksTheHedgeWinnerFirstOnceBothRoutesAreMeasured() {
+        properties.setMinSamples(1);
+        properties.setMinHedgeDelay(Duration.ofMillis(50));
+        properties.setMaxHedgeDelay(Duration.ofMillis(50));
+        AtomicInteger slowCalls = new AtomicInteger();
+        model = hedging(stub(() -> {
+            slowCalls.incrementAndGet();
+            sleep(2000);
+            return "slow";
+        }), stub(() -> "fast"));
+
+        assertEquals("fast", model.call(new Prompt("rewrite")).getResult().getOutput().getText());
+        // The cancelled attempt counts as a sample of at least the hedge delay, so the ranking no longer waits for it.
+        assertEquals("fast", model.call(new Prompt("rewrite")).getResult().getOutput().getText());
+        assertEquals(1, slowCalls.get());
+    }
+
+    @Test
+    void exploresUnderSampledRoutes() {
+        properties.setExplorationRate(1);
+        properties.setMaxHedgeDelay(Duration.ofSeconds(10));
+        AtomicInteger preferredCalls = new AtomicInteger();
+        model = hedging(stub(() -> {
+            preferredCalls.incrementAndGet();
+            return "preferred";
+        }), stub(() -> "explored"));
+
+        assertEquals("explored", model.call(new Prompt("rewrite")).getResult().getOutput().getText());
+        assertEquals(0, preferredCalls.get());
+    }
+
+    @Test
+    void cancelledAttemptsGiveBackTheirSchedulerSlot() throws Exception {
+        properties.setMinHedgeDelay(Duration.ofMillis(20));
+        properties.setMaxHedgeDelay(Duration.ofMillis(20));
+        AiProperties aiProperties = new AiProperties();
+        aiProperties.getLlmScheduler().setMaxConcurrentCalls(1);
+        LlmCallScheduler scheduler = new LlmCallScheduler(aiProperties, new SimpleMeterRegistry());
+        try {
+            model = hedging(new SchedulingChatModel(stub(() -> {
+                sleep(2000);
+                return "scheduled";
+            }), scheduler), stub(() -> "fast"));
+
+            for (int i = 0; i < 20; i++) {
+                // The scheduled attempt is cancelled while waiting for the only slot, or while holding it.
+                LlmCallScheduler.Permit blocker = scheduler.admit("blocker", 10).get(5, TimeUnit.SECONDS);
+                Thread.ofVirtual().start(() -> {
+                    sleep(20);
+                    blocker.close();
+                });
+                assertEquals("fast", model.call(new Prompt("rewrite")).getResult().getOutput().getText());
+            }
+
+            scheduler.admit("other", 10).get(5, TimeUnit.SECONDS).close();
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private HedgingChatModel hedging(ChatModel first, ChatModel second) {
+        return new HedgingChatModel(List.of(
+                HedgingChatModel.route("first", first, properties),
+                HedgingChatModel.route("second", second, "local-model", properties)
+        ), properties, new SimpleMeterRegistry());
+    }
+
+    private static ChatModel stub(Supplier<String> answer) {
+        return new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                return new ChatResponse(List.of(new Generation(new AssistantMessage(answer.get()))));
+            }
+        };
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.monetadev.backend.service.ai.model;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.exception.LlmCallRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LlmCallSchedulerTest {
+    private LlmCallScheduler scheduler;
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void servesUsersInTurn() throws Exception {
+        AiProperties properties = new AiProperties();
+        properties.getLlmScheduler().setMaxConcurrentCalls(1);
+        scheduler = new LlmCallScheduler(properties, new SimpleMeterRegistry());
+
+        CompletableFuture<LlmCallScheduler.Permit> heavy1 = scheduler.admit("heavy", 10);
+        CompletableFuture<LlmCallScheduler.Permit> heavy2 = scheduler.admit("heavy", 10);
+        CompletableFuture<LlmCallScheduler.Permit> heavy3 = scheduler.admit("heavy", 10);
+        CompletableFuture<LlmCallScheduler.Permit> light = scheduler.admit("light", 10);
+
+        assertTrue(heavy1.isDone());
+        assertFalse(heavy2.isDone());
+        heavy1.get().close();
+        assertTrue(light.isDone());
+        assertFalse(heavy2.isDone());
+        light.get().close();
+        assertTrue(heavy2.isDone());
+        assertFalse(heavy3.isDone());
+    }
+
+    @Test
+    void rejectsCallsOnceTheirBucketStaysEmptyPastTheDeadline() throws Exception {
+        AiProperties properties = new AiProperties();
+        properties.getLlmScheduler().setBucketCapacity(100);
+        properties.getLlmScheduler().setRefillTokensPerSecond(1);
+        properties.getLlmScheduler().setMaxWait(Duration.ofMillis(200));
+        scheduler = new LlmCallScheduler(properties, new SimpleMeterRegistry());
+
+        scheduler.admit("user", 100).get().close();
+        CompletableFuture<LlmCallScheduler.Permit> starved = scheduler.admit("user", 100);
+        CompletableFuture<LlmCallScheduler.Permit> other = scheduler.admit("other", 100);
+
+        assertTrue(other.isDone());
+        ExecutionException e = assertThrows(ExecutionException.class, () -> starved.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(LlmCallRejectedException.class, e.getCause());
+    }
+
+    @Test
+    void releasesPermitsGrantedAsTheWaiterIsInterrupted() {
+        AiProperties properties = new AiProperties();
+        properties.getLlmScheduler().setMaxConcurrentCalls(1);
+        scheduler = new LlmCallScheduler(properties, new SimpleMeterRegistry()) {
+            @Override
+            public CompletableFuture<Permit> admit(String userKey, long estimatedTokens) {
+                CompletableFuture<Permit> admission = super.admit(userKey, estimatedTokens);
+                // The interrupt arrives just as the permit is granted, so the admission can no longer be cancelled.
+                return new CompletableFuture<>() {
+                    {
+                        admission.thenAccept(this::complete);
+                    }
+
+                    @Override
+                    public Permit get() throws InterruptedException {
+                        join();
+                        throw new InterruptedException();
+                    }
+                };
+            }
+        };
+        ChatModel model = new SchedulingChatModel(new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                return new ChatResponse(List.of(new Generation(new AssistantMessage("answer"))));
+            }
+        }, scheduler);
+
+        assertThrows(LlmCallRejectedException.class, () -> model.call(new Prompt("question")));
+        assertTrue(Thread.interrupted());
+
+        assertTrue(scheduler.admit("other", 10).isDone());
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.monetadev.backend.service.ai.parser;
+
+import com.github.monetadev.backend.exception.GenerationStreamException;
+import com.github.monetadev.backend.graphql.type.ai.set.GeneratedFlashcard;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalFlashcardParserTest {
+    private static final String DOCUMENT = """
+            {"title":"Cells","description":"Cell biology \\"basics\\"","generatedFlashcards":[\
+            {"term":"Mitochondria","definition":"Produces ATP, the cell's {energy} source.","position":1},\
+            {"term":"Ribosome","definition":"Synthesizes proteins [from mRNA].","position":2}]}""";
+
+    @Test
+    void emitsEachFlashcardAsSoonAsItsObjectCloses() {
+        IncrementalFlashcardParser parser = new IncrementalFlashcardParser();
+        int firstClose = DOCUMENT.indexOf('}', DOCUMENT.indexOf("Mitochondria")) + 1;
+
+        assertTrue(parser.feed(DOCUMENT.substring(0, firstClose - 1)).isEmpty());
+        List<GeneratedFlashcard> first = parser.feed(DOCUMENT.substring(firstClose - 1, firstClose));
+        assertEquals(1, first.size());
+        assertEquals("Mitochondria", first.getFirst().getTerm());
+        assertEquals("Produces ATP, the cell's {energy} source.", first.getFirst().getDefinition());
+        assertEquals(1, first.getFirst().getPosition());
+
+        List<GeneratedFlashcard> rest = parser.feed(DOCUMENT.substring(firstClose));
+        parser.finish();
+        assertEquals(1, rest.size());
+        assertEquals("Ribosome", rest.getFirst().getTerm());
+        assertEquals(2, rest.getFirst().getPosition());
+    }
+
+    @Test
+    void handlesFragmentsSplitInsideTokens() {
+        IncrementalFlashcardParser parser = new IncrementalFlashcardParser();
+        List<GeneratedFlashcard> flashcards = new ArrayList<>();
+        for (int i = 0; i < DOCUMENT.length(); i += 3) {
+            flashcards.addAll(parser.feed(DOCUMENT.substring(i, Math.min(DOCUMENT.length(), i + 3))));
+        }
+        parser.finish();
+
+        assertEquals(List.of("Mitochondria", "Ribosome"), flashcards.stream().map(GeneratedFlashcard::getTerm).toList());
+    }
+
+    @Test
+    void rejectsTruncatedDocument() {
+        IncrementalFlashcardParser parser = new IncrementalFlashcardParser();
+        parser.feed(DOCUMENT.substring(0, DOCUMENT.length() - 2));
+
+        assertThrows(GenerationStreamException.class, parser::finish);
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.monetadev.backend.service.ai.reader;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import com.github.monetadev.backend.config.prop.StorageProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExtractedTextStoreTest {
+    private static final String HASH = "0123456789abcdef0123456789abcdef";
+    private static final Resource RESOURCE = new ByteArrayResource(new byte[0]);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysStoredTextWithoutParsing() {
+        ScriptedReader reader = new ScriptedReader();
+        ExtractedTextStore store = store(reader, new AiProperties());
+
+        RecordingSink first = new RecordingSink(Integer.MAX_VALUE);
+        store.extract(HASH, RESOURCE, first);
+        RecordingSink second = new RecordingSink(Integer.MAX_VALUE);
+        store.extract(HASH, RESOURCE, second);
+
+        assertEquals(1, reader.parses);
+        assertEquals(ScriptedReader.EVENTS, String.join("", first.events));
+        assertEquals(ScriptedReader.EVENTS, String.join("", second.events));
+    }
+
+    @Test
+    void storesWholeTextWhenSinkFillsEarly() {
+        ScriptedReader reader = new ScriptedReader();
+        ExtractedTextStore store = store(reader, new AiProperties());
+
+        RecordingSink partial = new RecordingSink(2);
+        store.extract(HASH, RESOURCE, partial);
+        RecordingSink whole = new RecordingSink(Integer.MAX_VALUE);
+        store.extract(HASH, RESOURCE, whole);
+
+        assertEquals(1, reader.parses);
+        assertEquals("[heading]Cells|[boundary]", String.join("", partial.events));
+        assertEquals(ScriptedReader.EVENTS, String.join("", whole.events));
+    }
+
+    @Test
+    void skipsDocumentsBeyondTheCharacterLimit() {
+        ScriptedReader reader = new ScriptedReader();
+        AiProperties properties = new AiProperties();
+        properties.getExtractedTextCache().setMaxDocumentChars(4);
+        ExtractedTextStore store = store(reader, properties);
+
+        store.extract(HASH, RESOURCE, new RecordingSink(Integer.MAX_VALUE));
+        store.extract(HASH, RESOURCE, new RecordingSink(Integer.MAX_VALUE));
+
+        assertEquals(2, reader.parses);
+    }
+
+    private ExtractedTextStore store(StreamingTikaReader reader, AiProperties properties) {
+        properties.getExtractedTextCache().setDirectory(directory.toString());
+        ExtractedTextStore store = new ExtractedTextStore(reader, properties, new StorageProperties());
+        store.initialize();
+        return store;
+    }
+
+    /**
+     * Produces a fixed sequence of events, including a NUL character, and counts how often it was asked to.
+     */
+    private static final class ScriptedReader extends StreamingTikaReader {
+        private static final String EVENTS = "[heading]Cells|[boundary]Mito\0chondria|[boundary]";
+        private int parses;
+
+        @Override
+        public void extract(Resource resource, TextSink sink) {
+            parses++;
+            sink.heading();
+            text(sink, "Cells");
+            sink.boundary();
+            text(sink, "Mito\0chondria");
+            sink.boundary();
+        }
+
+        private static void text(TextSink sink, String text) {
+            if (!sink.isFull()) {
+                sink.text(text.toCharArray(), 0, text.length());
+            }
+        }
+    }
+
+    /**
+     * Writes events as text, joining consecutive runs of text into one event.
+     */
+    private static final class RecordingSink implements TextSink {
+        private final int capacity;
+        private final List<String> events = new ArrayList<>();
+        private final StringBuilder run = new StringBuilder();
+
+        private RecordingSink(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void text(char[] characters, int start, int length) {
+            run.append(characters, start, length);
+        }
+
+        @Override
+        public void boundary() {
+            flush();
+            events.add("[boundary]");
+        }
+
+        @Override
+        public void heading() {
+            flush();
+            events.add("[heading]");
+        }
+
+        @Override
+        public boolean isFull() {
+            return events.size() >= capacity;
+        }
+
+        private void flush() {
+            if (!run.isEmpty()) {
+                events.add(run + "|");
+                run.setLength(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.monetadev.backend.service.ai.retrieval;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.monetadev.backend.config.prop.AiProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HybridDocumentRetrieverTest {
+    private static final int RRF_K = 60;
+
+    @Test
+    void fusesBothRankingsByReciprocalRank() {
+        HybridDocumentRetriever retriever = retriever(List.of("a", "b", "c"), new StubJdbcTemplate(List.of("b", "d")), 3);
+
+        List<Document> fused = retriever.retrieve(new Query("mitochondria"));
+
+        // b is found by both queries, c ranks last and is cut by topK.
+        assertEquals(List.of("b", "a", "d"), ids(fused));
+        assertEquals((1.0 / 62 + 1.0 / 61) / (2.0 / 61), fused.get(0).getScore(), 1e-9);
+        assertEquals(0.5, fused.get(1).getScore(), 1e-9);
+    }
+
+    @Test
+    void scoresAChunkRankedFirstByBothQueriesOne() {
+        HybridDocumentRetriever retriever = retriever(List.of("a", "b"), new StubJdbcTemplate(List.of("a")), 5);
+
+        List<Document> fused = retriever.retrieve(new Query("mitochondria"));
+
+        assertEquals(List.of("a", "b"), ids(fused));
+        assertEquals(1.0, fused.get(0).getScore(), 1e-9);
+    }
+
+    @Test
+    void fallsBackToVectorResultsWhenFullTextSearchFails() {
+        HybridDocumentRetriever retriever = retriever(List.of("a", "b", "c"), new StubJdbcTemplate(null), 2);
+
+        List<Document> fused = retriever.retrieve(new Query("mitochondria"));
+
+        assertEquals(List.of("a", "b"), ids(fused));
+    }
+
+    private static HybridDocumentRetriever retriever(List<String> vectorRanking, JdbcTemplate jdbcTemplate, int topK) {
+        PgFullTextSearch fullTextSearch = new PgFullTextSearch(jdbcTemplate, new ObjectMapper(), new AiProperties(), "public", "vector_store");
+        return new HybridDocumentRetriever(query -> documents(vectorRanking), fullTextSearch, Runnable::run,
+                UUID.randomUUID(), topK, RRF_K);
+    }
+
+    private static List<Document> documents(List<String> ids) {
+        return ids.stream()
+                .map(id -> Document.builder().id(id).text("text of " + id).build())
+                .toList();
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).toList();
+    }
+
+    /**
+     * Answers the full-text query with a fixed ranking, or fails it when there is none.
+     */
+    private static final class StubJdbcTemplate extends JdbcTemplate {
+        private final List<String> ranking;
+
+        private StubJdbcTemplate(List<String> ranking) {
+            this.ranking = ranking;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            if (ranking == null) {
+                throw new DataAccessResourceFailureException("Database unavailable");
+            }
+            return (List<T>) documents(ranking);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.monetadev.backend.service.ai.vectorstore;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HnswGraphTest {
+    private static final int DIMENSIONS = 32;
+
+    @Test
+    void approximatesExactSearch() {
+        Random random = new Random(7);
+        HnswGraph graph = new HnswGraph(DIMENSIONS, 16, 128, 16);
+        for (int i = 0; i < 2000; i++) {
+            graph.add(unitVector(random));
+        }
+
+        int found = 0;
+        for (int query = 0; query < 50; query++) {
+            float[] vector = unitVector(random);
+            Set<Integer> exact = new HashSet<>();
+            graph.scan(vector, 10, node -> true).forEach(neighbor -> exact.add(neighbor.node()));
+            for (HnswGraph.Neighbor neighbor : graph.search(vector, 10, 64, node -> true)) {
+                if (exact.contains(neighbor.node())) {
+                    found++;
+                }
+            }
+        }
+        assertTrue(found / 500.0 >= 0.9, "recall@10 was " + found / 500.0);
+    }
+
+    @Test
+    void skipsDeletedAndRejectedNodes() {
+        Random random = new Random(11);
+        HnswGraph graph = new HnswGraph(DIMENSIONS, 8, 64, 16);
+        float[] first = unitVector(random);
+        graph.add(first);
+        for (int i = 1; i < 500; i++) {
+            graph.add(unitVector(random));
+        }
+        graph.markDeleted(0);
+
+        List<HnswGraph.Neighbor> results = graph.search(first, 20, 64, node -> node % 2 == 0);
+
+        assertFalse(results.isEmpty());
+        assertTrue(results.stream().allMatch(neighbor -> neighbor.node() != 0 && neighbor.node() % 2 == 0));
+        assertEquals(499, graph.liveCount());
+    }
+
+    @Test
+    void restoresFromSnapshot() {
+        Random random = new Random(13);
+        HnswGraph graph = new HnswGraph(DIMENSIONS, 8, 64, 16);
+        for (int i = 0; i < 300; i++) {
+            graph.add(unitVector(random));
+        }
+        graph.markDeleted(42);
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) graph.serializedSize());
+        graph.writeTo(buffer);
+        assertFalse(buffer.hasRemaining());
+        HnswGraph restored = HnswGraph.readFrom(buffer.flip(), 16);
+
+        float[] query = unitVector(random);
+        assertEquals(graph.search(query, 5, 32, node -> true), restored.search(query, 5, 32, node -> true));
+        assertTrue(restored.isDeleted(42));
+    }
+
+    private static float[] unitVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        double norm = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+}
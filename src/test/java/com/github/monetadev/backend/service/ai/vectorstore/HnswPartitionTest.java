@@ -0,0 +1,60 @@
+package com.github.monetadev.backend.service.ai.vectorstore;
+
+import com.github.monetadev.backend.config.prop.AiProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HnswPartitionTest {
+
+    @Test
+    void replacesOnlyMatchingChunks() {
+        HnswPartition partition = new HnswPartition(new AiProperties.Hnsw());
+        partition.add(List.of(
+                chunk("a1", "a", "v1", 1, 0),
+                chunk("a2", "a", "v1", 0, 1),
+                chunk("b1", "b", "v1", 1, 1)));
+
+        int replaced = partition.replace(metadata -> "a".equals(metadata.get("id")),
+                List.of(chunk("a3", "a", "v2", 1, 0)));
+
+        assertEquals(2, replaced);
+        List<HnswPartition.StoredChunk> remaining = partition.find(metadata -> true, Integer.MAX_VALUE);
+        assertEquals(List.of("a3", "b1"), remaining.stream().map(HnswPartition.StoredChunk::id).sorted().toList());
+        assertEquals("v2", partition.find(metadata -> "a".equals(metadata.get("id")), 1).get(0).metadata().get("version"));
+    }
+
+    @Test
+    void addsNothingWhenNoChunkMatched() {
+        HnswPartition partition = new HnswPartition(new AiProperties.Hnsw());
+        partition.add(List.of(chunk("b1", "b", "v1", 1, 1)));
+
+        int replaced = partition.replace(metadata -> "a".equals(metadata.get("id")),
+                List.of(chunk("a1", "a", "v2", 1, 0)));
+
+        assertEquals(0, replaced);
+        assertEquals(1, partition.liveCount());
+    }
+
+    @Test
+    void updatesMetadataOfMatchingChunks() {
+        HnswPartition partition = new HnswPartition(new AiProperties.Hnsw());
+        partition.add(List.of(
+                chunk("a1", "a", "v1", 1, 0),
+                chunk("a2", "a", "v1", 0, 1),
+                chunk("b1", "b", "v1", 1, 1)));
+
+        int updated = partition.updateMetadata(metadata -> "a".equals(metadata.get("id")), Map.of("chunkCount", 2));
+
+        assertEquals(2, updated);
+        assertEquals(2, partition.find(metadata -> metadata.containsKey("chunkCount"), Integer.MAX_VALUE).size());
+        assertEquals("v1", partition.find(metadata -> "a".equals(metadata.get("id")), 1).get(0).metadata().get("version"));
+    }
+
+    private static HnswPartition.StoredChunk chunk(String chunkId, String fileId, String version, float x, float y) {
+        return new HnswPartition.StoredChunk(chunkId, "text of " + chunkId, Map.of("id", fileId, "version", version), new float[]{x, y});
+    }
+}